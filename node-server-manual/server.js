@@ -18,6 +18,9 @@ const SETTING_FILE   = path.join(ROOT_DIR, "setting", "setting.json");
 //       stdin
 const clients = new Map();
 
+//   clientId -> ws:    O(1)   clients
+const clientsById = new Map();
+
 //  runtime-   ( acceptUserClients   )
 let acceptClients = false;
 
@@ -63,38 +66,77 @@ function buildPingPayloadBuffer(raw) {
     return buf.length > 125 ? buf.subarray(0, 125) : buf;
 }
 
-// ===== state:  clients[]  clients.json =====
+let pingSeq = 0;
 
-function loadState() {
-    try {
-        const txt = fs.readFileSync(STATE_FILE, "utf8");
-        const data = JSON.parse(txt);
-        if (!Array.isArray(data.clients)) data.clients = [];
-        //     acceptClients   
-        return { clients: data.clients };
-    } catch {
-        return { clients: [] };
+/**
+ *  ping,    pong.
+ *  pingTagSeq     payload (      ping),
+ *   : pong    ping.    .
+ */
+function matchPing(ws, pongText) {
+    const pending = ws._pings;
+    if (!pending || pending.length === 0) return null;
+
+    let idx = 0;
+    if (PING_TAG_SEQ) {
+        const m = /#(\d+)$/.exec(pongText || "");
+        const seq = m ? Number(m[1]) : NaN;
+        idx = pending.findIndex(p => p.seq === seq);
+        if (idx < 0) return null;
+    }
+    const ping = pending[idx];
+    pending.splice(0, idx + 1);
+    return ping;
+}
+
+// ===== clients.json:    clientsById =====
+//     .     ( 
+//   )      .
+
+const SNAPSHOT_DEBOUNCE_MS = 250;
+let snapshotTimer = null;
+let snapshotWriting = false;
+let snapshotAgain = false;
+
+function scheduleStateSnapshot() {
+    if (!SETTINGS.clientsSnapshot || snapshotTimer) return;
+    snapshotTimer = setTimeout(writeStateSnapshot, SNAPSHOT_DEBOUNCE_MS);
+}
+
+function writeStateSnapshot() {
+    snapshotTimer = null;
+    if (snapshotWriting) {
+        snapshotAgain = true;
+        return;
     }
+    snapshotWriting = true;
+
+    const out = { clients: Array.from(clientsById.keys(), id => ({ id })) };
+    const tmp = STATE_FILE + ".tmp";
+    fs.writeFile(tmp, JSON.stringify(out, null, 2), "utf8", (err) => {
+        const done = (e) => {
+            if (e) console.error("[MANUAL] failed to save clients.json:", e.message);
+            snapshotWriting = false;
+            if (snapshotAgain) {
+                snapshotAgain = false;
+                scheduleStateSnapshot();
+            }
+        };
+        if (err) return done(err);
+        fs.rename(tmp, STATE_FILE, done);
+    });
 }
 
-function saveState(state) {
+function ensureState() {
+    //    :     
     try {
         ensureDir(path.dirname(STATE_FILE));
-        const out = {
-            clients: Array.isArray(state.clients) ? state.clients : []
-        };
-        fs.writeFileSync(STATE_FILE, JSON.stringify(out, null, 2), "utf8");
+        fs.writeFileSync(STATE_FILE, JSON.stringify({ clients: [] }, null, 2), "utf8");
     } catch (e) {
         console.error("[MANUAL] failed to save clients.json:", e.message);
     }
 }
 
-function ensureState() {
-    const st = loadState();
-    if (!Array.isArray(st.clients)) st.clients = [];
-    saveState(st);
-}
-
 //  clientId   Java: UUID ->  8 
 function genClientId() {
     try {
@@ -113,7 +155,9 @@ function loadSettings() {
         port: 8080,
         rejectCode: 1013,
         rejectMessage: "Server is not accepting clients",
-        pingPayload: "" // ;  =  ping
+        pingPayload: "", // ;  =  ping
+        pingTagSeq: false, //   payload ping "#<seq>"  pong   ,    
+        clientsSnapshot: true //  clients.json (    )
     };
 
     try {
@@ -140,7 +184,17 @@ function loadSettings() {
                 ? data.pingPayload
                 : DEFAULT.pingPayload;
 
-        return { port, rejectCode, rejectMessage, pingPayload };
+        const pingTagSeq =
+            typeof data.pingTagSeq === "boolean"
+                ? data.pingTagSeq
+                : DEFAULT.pingTagSeq;
+
+        const clientsSnapshot =
+            typeof data.clientsSnapshot === "boolean"
+                ? data.clientsSnapshot
+                : DEFAULT.clientsSnapshot;
+
+        return { port, rejectCode, rejectMessage, pingPayload, pingTagSeq, clientsSnapshot };
     } catch (e) {
         console.error("[MANUAL] failed to read setting.json, using defaults:", e.message);
 
@@ -162,6 +216,8 @@ const PORT           = SETTINGS.port;
 const REJECT_CODE    = SETTINGS.rejectCode;
 const REJECT_MSG     = SETTINGS.rejectMessage;
 const PING_PAYLOAD   = SETTINGS.pingPayload;
+const PING_TAG_SEQ   = SETTINGS.pingTagSeq;
+const PING_PENDING_MAX = 64; //  ping  ;  
 
 // ===== check port availability =====
 
@@ -185,6 +241,85 @@ function checkPortInUse(port, cb) {
     server.listen(port, () => {});
 }
 
+// ===== IPC  Java:  [uint32 BE ][UTF-8 JSON]  localhost- =====
+//     Java (NodeIpcChannel)  .     stdin/stdout.
+// :  {e:"connected"|"disconnected"|"message"|"pong"|"sent"|"ping"|"rtt", id, payload, ...}
+//           pong/rtt  rttUs    ping  pong,   (process.hrtime)
+// :  {c:"accept", on} | {c:"send", ids:[...], payload} | {c:"broadcast", payload}
+//           | {c:"ping", ids:[...] | all:true, quiet}  quiet:  ping,      
+
+const IPC_PORT  = Number(process.env.NODE_IPC_PORT || 0);
+const IPC_TOKEN = process.env.NODE_IPC_TOKEN || "";
+const IPC_CONNECT_TIMEOUT_MS = 2000;
+
+let ipcSocket = null;
+let ipcOnCommand = null; //   startServer
+
+function ipcEmit(obj) {
+    if (!ipcSocket) return;
+    const body = Buffer.from(JSON.stringify(obj), "utf8");
+    const header = Buffer.allocUnsafe(4);
+    header.writeUInt32BE(body.length, 0);
+    ipcSocket.write(header);
+    ipcSocket.write(body);
+}
+
+function connectIpc(cb) {
+    if (!IPC_PORT) {
+        cb(false);
+        return;
+    }
+
+    let done = false;
+    const finish = (ok) => {
+        if (done) return;
+        done = true;
+        clearTimeout(timer);
+        cb(ok);
+    };
+    const timer = setTimeout(() => {
+        console.error("[MANUAL] IPC connect timeout, using stdin/stdout");
+        finish(false);
+    }, IPC_CONNECT_TIMEOUT_MS);
+
+    const sock = net.connect(IPC_PORT, "127.0.0.1");
+    let pending = Buffer.alloc(0);
+
+    sock.once("connect", () => {
+        sock.setNoDelay(true);
+        ipcSocket = sock;
+        ipcEmit({ e: "hello", token: IPC_TOKEN, pid: process.pid });
+        console.log(`[MANUAL] IPC connected port=${IPC_PORT}`);
+        finish(true);
+    });
+
+    sock.on("data", (chunk) => {
+        pending = pending.length ? Buffer.concat([pending, chunk]) : chunk;
+        while (pending.length >= 4) {
+            const len = pending.readUInt32BE(0);
+            if (pending.length < 4 + len) break;
+            const body = pending.subarray(4, 4 + len);
+            pending = pending.subarray(4 + len);
+            try {
+                const cmd = JSON.parse(body.toString("utf8"));
+                if (ipcOnCommand) ipcOnCommand(cmd);
+            } catch (e) {
+                console.error("[MANUAL] bad IPC frame:", e.message);
+            }
+        }
+    });
+
+    sock.on("close", () => {
+        if (ipcSocket === sock) ipcSocket = null;
+        console.log("[MANUAL] IPC closed");
+    });
+
+    sock.on("error", (err) => {
+        console.error("[MANUAL] IPC error:", err.message);
+        finish(false);
+    });
+}
+
 // ===== start ws server =====
 
 function startServer() {
@@ -205,33 +340,19 @@ function startServer() {
             return;
         }
 
-        //       
-        let state = loadState();
-
-        //  clientId
+        //  clientId (     ,   )
         let id = genClientId();
-        const existingIds = new Set(
-            (state.clients || [])
-                .map(c => (typeof c === "string" ? c : c && c.id).trim())
-                .filter(Boolean)
-        );
-        while (existingIds.has(id)) {
+        while (clientsById.has(id)) {
             id = genClientId();
         }
 
         ws._clientId = id;
         clients.set(ws, id);
-
-        //   state  
-        const newClients = (state.clients || []).filter(c => {
-            const cid = typeof c === "string" ? c : (c && c.id);
-            return cid && cid !== id;
-        });
-        newClients.push({ id });
-        state.clients = newClients;
-        saveState(state);
+        clientsById.set(id, ws);
+        scheduleStateSnapshot();
 
         console.log(`[MANUAL] CLIENT_CONNECTED id=${id}`);
+        ipcEmit({ e: "connected", id });
         appendLog(INCOMING_LOG, `${nowIso()} CONNECT id=${id} from=${req.socket.remoteAddress || "unknown"}`);
 
         ws.on("message", (data) => {
@@ -239,6 +360,7 @@ function startServer() {
             const cid  = ws._clientId || "unknown";
 
             console.log(`[MANUAL] CLIENT_MESSAGE id=${cid} payload=${truncate(text, 400)}`);
+            ipcEmit({ e: "message", id: cid, payload: text });
             appendLog(INCOMING_LOG, `${nowIso()} IN id=${cid} ${text}`);
 
             //   .
@@ -265,23 +387,29 @@ function startServer() {
                 ? `PONG hex=${hex}${text ? ` text="${text.replace(/\r/g, " ").replace(/\n/g, " ").trim()}"` : ""}`
                 : "PONG";
 
-            console.log(`[MANUAL] CLIENT_PONG id=${cid} payload=${payload}`);
-            appendLog(INCOMING_LOG, `${nowIso()} PONG id=${cid} ${payload}`);
+            const ping = matchPing(ws, text);
+            const rttUs = ping ? Number((process.hrtime.bigint() - ping.t) / 1000n) : -1;
+
+            if (ping && ping.quiet) {
+                //  ping:  ,    
+                if (ipcSocket) ipcEmit({ e: "rtt", id: cid, rttUs });
+                else console.log(`[MANUAL] CLIENT_RTT id=${cid} rtt_us=${rttUs}`);
+                return;
+            }
+
+            console.log(`[MANUAL] CLIENT_PONG id=${cid} rtt_us=${rttUs} payload=${payload}`);
+            ipcEmit({ e: "pong", id: cid, payload, rttUs });
+            appendLog(INCOMING_LOG, `${nowIso()} PONG id=${cid} rtt_us=${rttUs} ${payload}`);
         });
 
         ws.on("close", (code, reason) => {
             const cid = ws._clientId || "unknown";
 
-            //  state:    
-            let st = loadState();
-            st.clients = (st.clients || []).filter(c => {
-                const cid2 = typeof c === "string" ? c : (c && c.id);
-                return cid2 && cid2 !== cid;
-            });
-            saveState(st);
-
             clients.delete(ws);
+            if (clientsById.get(cid) === ws) clientsById.delete(cid);
+            scheduleStateSnapshot();
             console.log(`[MANUAL] CLIENT_DISCONNECTED id=${cid} code=${code}`);
+            ipcEmit({ e: "disconnected", id: cid, code });
             appendLog(INCOMING_LOG, `${nowIso()} CLOSE id=${cid} code=${code} reason=${reason || ""}`);
         });
 
@@ -300,12 +428,108 @@ function startServer() {
         console.error("[MANUAL] server error:", err.message);
     });
 
-    // ===== stdin:   Java (WebSocketManualController) =====
-    // :
+    // =====   Java (WebSocketManualController): stdin  IPC =====
+    // stdin :
     //   ACCEPT on
     //   ACCEPT off
     //   SEND id=<clientId> { ...json... }
+    //   SEND ids=<id1>,<id2>,... { ...json... }     payload  
+    //   BROADCAST { ...json... }                     
     //   PING id=<clientId>
+    //   PING ids=<id1>,<id2>,...
+    //   PING all [quiet]                            ; quiet    RTT
+
+    function findOpenClient(clientId) {
+        const ws = clientsById.get(clientId);
+        return ws && ws.readyState === WebSocket.OPEN ? ws : null;
+    }
+
+    // payload   UTF-8       
+    function sendToMany(targets, payload, label) {
+        const buf = Buffer.from(payload, "utf8");
+        const sentIds = [];
+
+        for (const [clientId, ws] of targets) {
+            if (!ws || ws.readyState !== WebSocket.OPEN) {
+                console.error("[MANUAL] SEND failed, client not found or not open:", clientId);
+                continue;
+            }
+            try {
+                ws.send(buf, { binary: false });
+                sentIds.push(clientId);
+            } catch (e) {
+                console.error("[MANUAL] SEND error for", clientId, ":", e.message);
+            }
+        }
+
+        //          ,     
+        console.log(`[MANUAL] SERVER_SEND_MULTI target=${label} count=${sentIds.length} payload=${truncate(payload, 400)}`);
+        ipcEmit({ e: "sent", target: label, count: sentIds.length, payload });
+        appendLog(OUTGOING_LOG, `${nowIso()} OUT ids=${sentIds.join(",")} ${payload}`);
+    }
+
+    function sendOne(clientId, payload) {
+        const target = findOpenClient(clientId);
+        if (!target) {
+            console.error("[MANUAL] SEND failed, client not found or not open:", clientId);
+            return;
+        }
+
+        try {
+            target.send(payload);
+            console.log(`[MANUAL] SERVER_SEND id=${clientId} payload=${truncate(payload, 400)}`);
+            ipcEmit({ e: "sent", target: "id", id: clientId, count: 1, payload });
+            appendLog(OUTGOING_LOG, `${nowIso()} OUT id=${clientId} ${payload}`);
+        } catch (e) {
+            console.error("[MANUAL] SEND error for", clientId, ":", e.message);
+        }
+    }
+
+    function pingIds(ids, quiet) {
+        for (const clientId of ids) {
+            const target = findOpenClient(clientId);
+            if (!target) {
+                if (!quiet) console.error("[MANUAL] PING failed, client not found or not open:", clientId);
+                continue;
+            }
+            pingOne(clientId, target, quiet);
+        }
+    }
+
+    function pingAll(quiet) {
+        for (const [clientId, target] of clientsById.entries()) {
+            if (target.readyState === WebSocket.OPEN) pingOne(clientId, target, quiet);
+        }
+    }
+
+    function setAccept(on) {
+        acceptClients = on;
+        console.log(on ? "[MANUAL] ACCEPT_ON" : "[MANUAL] ACCEPT_OFF");
+    }
+
+    function pingOne(clientId, target, quiet) {
+        try {
+            // :   WebSocket Ping frame (opcode 0x9)
+            // Payload      UTF-8  pingPayload ( 125 ).
+            const seq = ++pingSeq;
+            const payloadBuf = buildPingPayloadBuffer(PING_TAG_SEQ ? `${PING_PAYLOAD}#${seq}` : PING_PAYLOAD);
+
+            const pending = target._pings || (target._pings = []);
+            if (pending.length >= PING_PENDING_MAX) pending.shift();
+            pending.push({ seq, t: process.hrtime.bigint(), quiet: !!quiet });
+            target.ping(payloadBuf);
+            if (quiet) return;
+
+            console.log(`[MANUAL] SERVER_PING id=${clientId}`);
+            ipcEmit({ e: "ping", id: clientId, t: Date.now() });
+            appendLog(
+                OUTGOING_LOG,
+                `${nowIso()} OUT id=${clientId} (PING) payloadText="${String(PING_PAYLOAD).trim()}" payloadHex=${payloadBuf.toString("hex")}`
+            );
+        } catch (e) {
+            console.error("[MANUAL] PING error for", clientId, ":", e.message);
+        }
+    }
 
     const rl = readline.createInterface({
         input: process.stdin,
@@ -320,55 +544,53 @@ function startServer() {
         const upper = line.toUpperCase();
 
         if (upper === "ACCEPT ON") {
-            acceptClients = true;
-            console.log("[MANUAL] ACCEPT_ON");
+            setAccept(true);
             return;
         }
 
         if (upper === "ACCEPT OFF") {
-            acceptClients = false;
-            console.log("[MANUAL] ACCEPT_OFF");
+            setAccept(false);
             return;
         }
 
-        // PING id=<clientId>
+        // PING id=<clientId> | PING ids=<id1>,<id2>,... | PING all [quiet]
         if (line.startsWith("PING ")) {
-            const m = /^PING\s+id=([^\s]+)(?:\s+.*)?$/.exec(line);
+            const all = /^PING\s+all(\s+quiet)?\s*$/.exec(line);
+            if (all) {
+                pingAll(!!all[1]);
+                return;
+            }
+            const many = /^PING\s+ids=([^\s]+)/.exec(line);
+            const m = many || /^PING\s+id=([^\s]+)(?:\s+.*)?$/.exec(line);
             if (!m) {
                 console.error("[MANUAL] bad PING command:", line);
                 return;
             }
 
-            const clientId = m[1];
-
-            //  ws  clientId
-            let target = null;
-            for (const [ws, cid] of clients.entries()) {
-                if (cid === clientId) {
-                    target = ws;
-                    break;
-                }
-            }
+            pingIds(many ? m[1].split(",").filter(Boolean) : [m[1]]);
+            return;
+        }
 
-            if (!target || target.readyState !== WebSocket.OPEN) {
-                console.error("[MANUAL] PING failed, client not found or not open:", clientId);
+        // BROADCAST <payload>
+        if (line.startsWith("BROADCAST ")) {
+            const payload = line.slice("BROADCAST ".length).trim();
+            if (!payload) {
+                console.error("[MANUAL] bad BROADCAST command: empty payload");
                 return;
             }
+            sendToMany(clientsById.entries(), payload, "all");
+            return;
+        }
 
-            try {
-                // :   WebSocket Ping frame (opcode 0x9)
-                // Payload      UTF-8  pingPayload ( 125 ).
-                const payloadBuf = buildPingPayloadBuffer(PING_PAYLOAD);
-                target.ping(payloadBuf);
-
-                console.log(`[MANUAL] SERVER_PING id=${clientId}`);
-                appendLog(
-                    OUTGOING_LOG,
-                    `${nowIso()} OUT id=${clientId} (PING) payloadText="${String(PING_PAYLOAD).trim()}" payloadHex=${payloadBuf.toString("hex")}`
-                );
-            } catch (e) {
-                console.error("[MANUAL] PING error for", clientId, ":", e.message);
+        // SEND ids=<id1>,<id2>,... <payload>
+        if (line.startsWith("SEND ids=")) {
+            const mm = /^SEND\s+ids=([^\s]+)\s+(.+)$/.exec(line);
+            if (!mm) {
+                console.error("[MANUAL] bad SEND command:", line);
+                return;
             }
+            const ids = mm[1].split(",").filter(Boolean);
+            sendToMany(ids.map(id => [id, clientsById.get(id)]), mm[2], "ids");
             return;
         }
 
@@ -384,35 +606,39 @@ function startServer() {
             return;
         }
 
-        const clientId = m[1];
-        const payload  = m[2];
-
-        //  ws  clientId
-        let target = null;
-        for (const [ws, cid] of clients.entries()) {
-            if (cid === clientId) {
-                target = ws;
-                break;
-            }
-        }
-
-        if (!target || target.readyState !== WebSocket.OPEN) {
-            console.error("[MANUAL] SEND failed, client not found or not open:", clientId);
-            return;
-        }
-
-        try {
-            target.send(payload);
-            console.log(`[MANUAL] SERVER_SEND id=${clientId} payload=${truncate(payload, 400)}`);
-            appendLog(OUTGOING_LOG, `${nowIso()} OUT id=${clientId} ${payload}`);
-        } catch (e) {
-            console.error("[MANUAL] SEND error for", clientId, ":", e.message);
-        }
+        sendOne(m[1], m[2]);
     });
 
     rl.on("close", () => {
         console.log("[MANUAL] stdin closed, no more SEND commands.");
     });
+
+    //     IPC: payload  ,     
+    ipcOnCommand = (cmd) => {
+        if (!cmd || typeof cmd.c !== "string") return;
+        const payload = cmd.payload == null ? "" : String(cmd.payload);
+        const ids = Array.isArray(cmd.ids) ? cmd.ids.map(String) : [];
+
+        switch (cmd.c) {
+            case "accept":
+                setAccept(!!cmd.on);
+                break;
+            case "broadcast":
+                if (payload) sendToMany(clientsById.entries(), payload, "all");
+                break;
+            case "send":
+                if (!payload) break;
+                if (ids.length === 1) sendOne(ids[0], payload);
+                else if (ids.length > 1) sendToMany(ids.map(id => [id, clientsById.get(id)]), payload, "ids");
+                break;
+            case "ping":
+                if (cmd.all) pingAll(!!cmd.quiet);
+                else pingIds(ids, !!cmd.quiet);
+                break;
+            default:
+                console.error("[MANUAL] unknown IPC command:", cmd.c);
+        }
+    };
 }
 
 // ===== entry point =====
@@ -431,6 +657,7 @@ checkPortInUse(PORT, (inUse) => {
         // :    EADDRINUSE,  .
         process.exit(0);
     } else {
-        startServer();
+        // IPC    ws-,         
+        connectIpc(() => startServer());
     }
 });
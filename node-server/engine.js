@@ -23,6 +23,8 @@ class Engine {
 
         this.PORT = 8080;
         this.portOverride = cfg.portOverride ?? null;
+        //  :    ,  setting.json  
+        this.scenarioOverride = cfg.scenarioOverride ?? null;
 
         // ===== State =====
         this.wsConfig = null;
@@ -367,7 +369,7 @@ class Engine {
         });
     }
 
-    currentScenarioId() { return this.wsConfig.current_scenario || "default"; }
+    currentScenarioId() { return this.scenarioOverride || this.wsConfig.current_scenario || "default"; }
     listScenarioIds()   { return Object.keys((this.wsConfig && this.wsConfig.scenarios) || {}); }
     applyScenarioAndPersist(newScenarioId) {
         const scenarios = (this.wsConfig && this.wsConfig.scenarios) || {};
@@ -379,6 +381,13 @@ class Engine {
                 throw new Error(` : ${newScenarioId}`);
             }
         }
+        if (this.scenarioOverride) {
+            if (this.scenarioOverride !== newScenarioId) {
+                this.scenarioOverride = newScenarioId;
+                console.log("[EVENT] scenario changed (instance):", newScenarioId);
+            }
+            return;
+        }
         if (this.wsConfig.current_scenario !== newScenarioId) {
             this.wsConfig.current_scenario = newScenarioId;
             this.writeJsonPretty(this.WS_CONFIG, this.wsConfig);
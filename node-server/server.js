@@ -2,7 +2,9 @@
 const path = require("path");
 const { Engine } = require("./engine");
 
-(async () => {
+// Тёплый режим (NODE_WARM=1): модули загружены, процесс ждёт в stdin строку
+// "GO {json-окружение}" и только тогда стартует движок. См. NodeWarmPool в Java.
+function launch() {
     const ROOT_DIR    = __dirname;
     const SETTING_DIR = path.join(ROOT_DIR, "setting");
     const WS_CONFIG   = path.join(ROOT_DIR, "setting", "setting.json");// сценарии/heartbeat здесь
@@ -11,8 +13,25 @@ const { Engine } = require("./engine");
         rootDir: ROOT_DIR,
         settingDir: SETTING_DIR,
         wsConfigFile: WS_CONFIG,
-        portOverride: null // можно задать порт руками при необходимости
+        // экземпляры группы (NodeServerGroup) получают порт и сценарий через окружение
+        portOverride: Number(process.env.ENGINE_PORT) || null,
+        scenarioOverride: process.env.ENGINE_SCENARIO || null
     });
 
-    await engine.start();
-})();
+    return engine.start();
+}
+
+if (process.env.NODE_WARM === "1") {
+    const rl = require("readline").createInterface({ input: process.stdin });
+    let started = false;
+    rl.on("line", (line) => {
+        if (started || !line.startsWith("GO")) return;
+        started = true;
+        try { Object.assign(process.env, JSON.parse(line.slice(2).trim() || "{}")); } catch {}
+        launch();
+    });
+    // Java ушла, не передав процесс, — ждать больше некого
+    rl.on("close", () => { if (!started) process.exit(0); });
+} else {
+    launch();
+}
@@ -2,6 +2,7 @@
 package app;
 
 import app.core.node.AppShutdown;
+import app.products.websocket.LoadGenerator;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -21,11 +22,15 @@ public class MainApp extends Application {
     @Override
     public void stop() throws Exception {
         // перед выходом гасим все зарегистрированные фоновые ресурсы (Node-сервера и т.п.)
-        AppShutdown.runAll();
+        AppShutdown.runAtExit();
         super.stop();
     }
 
     public static void main(String[] args) {
+        // headless-режим генератора нагрузки: без JavaFX-окна
+        if (LoadGenerator.isRequested(args)) {
+            System.exit(LoadGenerator.run(args));
+        }
         launch(args);
     }
 }
@@ -14,6 +14,10 @@ public final class AppShutdown {
     private static final Set<Runnable> STOPPERS =
             Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+    // только для выхода: runAll вызывается и при переключении серверов, эти ресурсы он не трогает
+    private static final Set<Runnable> EXIT_STOPPERS =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+
     private AppShutdown() {
         // utility
     }
@@ -37,10 +41,39 @@ public final class AppShutdown {
     }
 
     /**
-     * Вызывается из MainApp.stop(): пытается аккуратно остановить все ресурсы.
+     * Пытается аккуратно остановить все ресурсы, зарегистрированные через {@link #register}.
+     * Вызывается и перед запуском сервера, чтобы освободить порт.
      */
     public static void runAll() {
-        for (Runnable stopper : STOPPERS.toArray(new Runnable[0])) {
+        runEach(STOPPERS);
+    }
+
+    /**
+     * Обработчик, который вызывается только при закрытии приложения, но не из {@link #runAll()}
+     * (например, группа экземпляров движка со своими портами).
+     */
+    public static void registerOnExit(Runnable stopper) {
+        if (stopper != null) {
+            EXIT_STOPPERS.add(stopper);
+        }
+    }
+
+    public static void unregisterOnExit(Runnable stopper) {
+        if (stopper != null) {
+            EXIT_STOPPERS.remove(stopper);
+        }
+    }
+
+    /**
+     * Вызывается из MainApp.stop(): всё из {@link #runAll()} и обработчики выхода.
+     */
+    public static void runAtExit() {
+        runAll();
+        runEach(EXIT_STOPPERS);
+    }
+
+    private static void runEach(Set<Runnable> stoppers) {
+        for (Runnable stopper : stoppers.toArray(new Runnable[0])) {
             try {
                 stopper.run();
             } catch (Exception ignored) {
@@ -0,0 +1,168 @@
+// FILE: src/main/java/app/core/node/NodeIpcChannel.java
+package app.core.node;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Канал Java ↔ Node поверх localhost-сокета: кадры "4 байта длины (big-endian) + UTF-8 JSON".
+ *
+ * Java слушает эфемерный порт на loopback и передаёт его процессу в окружении
+ * ({@link #ENV_PORT}, {@link #ENV_TOKEN}). Node подключается сам и первым кадром
+ * шлёт {"e":"hello","token":...}; соединение с чужим токеном закрывается.
+ * Payload внутри JSON не требует экранирования переводов строк и не обрезается.
+ * stdout процесса при этом остаётся только для человекочитаемых логов.
+ */
+public final class NodeIpcChannel {
+
+    public static final String ENV_PORT  = "NODE_IPC_PORT";
+    public static final String ENV_TOKEN = "NODE_IPC_TOKEN";
+
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private final String name;
+    private final Consumer<JsonNode> onFrame;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ServerSocket server;
+    private volatile Socket socket;
+    private OutputStream out;
+    private String token;
+    private volatile Runnable onConnectionChange = () -> {};
+
+    /**
+     * @param onFrame вызывается в потоке чтения канала для каждого кадра после hello
+     */
+    public NodeIpcChannel(String name, Consumer<JsonNode> onFrame) {
+        this.name = name;
+        this.onFrame = onFrame;
+    }
+
+    /** Вызывается при подключении и отключении Node (в потоке канала). */
+    public void setOnConnectionChange(Runnable r) {
+        this.onConnectionChange = r == null ? () -> {} : r;
+    }
+
+    /**
+     * Открыть порт для следующего процесса (предыдущее соединение закрывается).
+     * @return переменные окружения для ProcessBuilder
+     */
+    public synchronized Map<String, String> open() throws IOException {
+        closeQuietly();
+        token = UUID.randomUUID().toString();
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+
+        ServerSocket ss = server;
+        String expected = token;
+        Thread t = new Thread(() -> acceptLoop(ss, expected), "node-ipc-" + name);
+        t.setDaemon(true);
+        t.start();
+
+        return Map.of(ENV_PORT, Integer.toString(ss.getLocalPort()), ENV_TOKEN, expected);
+    }
+
+    public boolean isConnected() {
+        Socket s = socket;
+        return s != null && !s.isClosed();
+    }
+
+    /** Один кадр; false — канал не подключён или запись не удалась. */
+    public boolean send(Object message) {
+        return sendAll(List.of(message));
+    }
+
+    /** Несколько кадров одной записью в сокет (один flush на пачку). */
+    public synchronized boolean sendAll(List<?> messages) {
+        if (out == null || !isConnected()) return false;
+        try {
+            for (Object m : messages) {
+                byte[] body = mapper.writeValueAsBytes(m);
+                out.write(body.length >>> 24);
+                out.write(body.length >>> 16);
+                out.write(body.length >>> 8);
+                out.write(body.length);
+                out.write(body);
+            }
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            closeQuietly();
+            return false;
+        }
+    }
+
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    // ===== Чтение =====
+
+    private void acceptLoop(ServerSocket ss, String expectedToken) {
+        try (Socket s = ss.accept()) {
+            // одно соединение на запуск процесса — дальше порт не нужен
+            try { ss.close(); } catch (IOException ignore) {}
+            s.setTcpNoDelay(true);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+            JsonNode hello = readFrame(in);
+            if (!"hello".equals(hello.path("e").asText()) || !expectedToken.equals(hello.path("token").asText())) {
+                return;
+            }
+
+            synchronized (this) {
+                if (server != ss) return; // за это время канал переоткрыли
+                socket = s;
+                out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+            }
+            onConnectionChange.run();
+
+            while (true) {
+                onFrame.accept(readFrame(in));
+            }
+        } catch (EOFException ignore) {
+            // процесс закрыл канал
+        } catch (IOException ignore) {
+            // сокет закрыт при остановке
+        } finally {
+            boolean wasOurs;
+            synchronized (this) {
+                wasOurs = server == ss && socket != null;
+                if (wasOurs) {
+                    socket = null;
+                    out = null;
+                }
+            }
+            if (wasOurs) onConnectionChange.run();
+        }
+    }
+
+    private JsonNode readFrame(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > MAX_FRAME_BYTES) throw new IOException("IPC frame too large: " + len);
+        byte[] body = new byte[len];
+        in.readFully(body);
+        return mapper.readTree(body);
+    }
+
+    private void closeQuietly() {
+        try { if (socket != null) socket.close(); } catch (IOException ignore) {}
+        try { if (server != null) server.close(); } catch (IOException ignore) {}
+        socket = null;
+        out = null;
+        server = null;
+    }
+}
@@ -0,0 +1,260 @@
+package app.core.node;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Маршрутизация строк вывода Node по тегу ("[EVENT] ...", "[DEBUG] ...", "[ERR] ...").
+ *
+ * Тег определяется без аллокаций: таблица правил по первому символу после '[',
+ * затем startsWith по нескольким кандидатам. Каждое правило решает, куда идёт строка:
+ * UI, файл, только счётчики, — и может ограничивать темп в UI (строк в секунду)
+ * и прореживать (каждая N-я). Отброшенное лимитом сводится в одну строку
+ * "подавлено N" перед следующей пропущенной строкой тега или при закрытии.
+ *
+ * Вызывается из одного потока (доставка {@link NodePipeReaders}); stats() можно читать
+ * из любого, значения приблизительные.
+ */
+public final class NodeLogRouter {
+
+    public enum Sink { UI, FILE, METRICS }
+
+    /**
+     * @param tag         с квадратными скобками; null — правило для строк без известного тега
+     * @param ratePerSec  лимит строк в UI, 0 — без лимита
+     * @param sampleEvery в UI идёт каждая N-я строка, 1 — все
+     */
+    public record Rule(String tag, EnumSet<Sink> sinks, int ratePerSec, int sampleEvery) {
+        public Rule {
+            sinks = sinks == null ? EnumSet.noneOf(Sink.class) : EnumSet.copyOf(sinks);
+            ratePerSec = Math.max(0, ratePerSec);
+            sampleEvery = Math.max(1, sampleEvery);
+        }
+    }
+
+    /** Счётчики тега: всего, ушло в UI, отброшено лимитом, отброшено прореживанием. */
+    public record TagStats(String tag, long lines, long toUi, long limited, long sampledOut) {}
+
+    private static final long FILE_FLUSH_NANOS = 1_000_000_000L;
+    private static final String OTHER = "(прочее)";
+
+    private final Route[][] byFirstChar = new Route[128][];
+    private final Route fallback;
+    private final List<Route> routes = new ArrayList<>();
+    private final Consumer<String> ui;
+    private final Path filePath;
+
+    private BufferedWriter file;
+    private boolean fileFailed;
+    private long lastFlush;
+
+    public NodeLogRouter(List<Rule> rules, Consumer<String> ui, Path filePath) {
+        this.ui = ui == null ? s -> {} : ui;
+        this.filePath = filePath;
+
+        Route other = null;
+        Map<Character, List<Route>> grouped = new LinkedHashMap<>();
+        for (Rule r : rules) {
+            Route route = new Route(r);
+            routes.add(route);
+            if (r.tag() == null) {
+                other = route;
+                continue;
+            }
+            if (r.tag().length() < 2 || r.tag().charAt(0) != '[' || r.tag().charAt(1) >= 128) {
+                throw new IllegalArgumentException("Тег должен начинаться с '[' и ASCII-символа: " + r.tag());
+            }
+            grouped.computeIfAbsent(r.tag().charAt(1), c -> new ArrayList<>()).add(route);
+        }
+        for (Map.Entry<Character, List<Route>> e : grouped.entrySet()) {
+            // при общем префиксе более длинный тег проверяется раньше
+            List<Route> list = e.getValue();
+            list.sort((a, b) -> b.tag.length() - a.tag.length());
+            byFirstChar[e.getKey()] = list.toArray(new Route[0]);
+        }
+        if (other == null) {
+            other = new Route(new Rule(null, EnumSet.of(Sink.UI, Sink.METRICS), 0, 1));
+            routes.add(other);
+        }
+        fallback = other;
+    }
+
+    /**
+     * Правила по умолчанию: служебные теги движка — в файл и счётчики (в UI их не было и раньше),
+     * [DEBUG] — в UI не чаще 20 строк/с, остальное (в т.ч. [MANUAL], которые разбираются
+     * как события) — в UI без ограничений.
+     */
+    public static List<Rule> defaultRules() {
+        EnumSet<Sink> quiet = EnumSet.of(Sink.FILE, Sink.METRICS);
+        EnumSet<Sink> all = EnumSet.allOf(Sink.class);
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new Rule("[EVENT]", quiet, 0, 1));
+        rules.add(new Rule("[CONTROL]", quiet, 0, 1));
+        rules.add(new Rule("[CONNECT]", quiet, 0, 1));
+        rules.add(new Rule("[CLOSE]", quiet, 0, 1));
+        rules.add(new Rule("[DEBUG]", all, 20, 1));
+        rules.add(new Rule("[ERR]", all, 0, 1));
+        rules.add(new Rule(null, EnumSet.of(Sink.UI, Sink.METRICS), 0, 1));
+        return rules;
+    }
+
+    /**
+     * Правила по умолчанию, поверх которых накладывается необязательный раздел "logRouting"
+     * из setting.json: { "[EVENT]": { "sinks": ["ui","file"], "ratePerSec": 50, "sample": 10 } }.
+     * Ключ "*" — строки без известного тега.
+     */
+    public static NodeLogRouter fromSettings(Path settingJson, Consumer<String> ui, Path filePath) {
+        Map<String, Rule> byTag = new LinkedHashMap<>();
+        for (Rule r : defaultRules()) byTag.put(r.tag() == null ? "*" : r.tag(), r);
+        try {
+            if (settingJson != null && Files.exists(settingJson)) {
+                JsonNode cfg = new ObjectMapper().readTree(settingJson.toFile()).path("logRouting");
+                for (Iterator<Map.Entry<String, JsonNode>> it = cfg.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> e = it.next();
+                    Rule base = byTag.get(e.getKey());
+                    JsonNode n = e.getValue();
+                    EnumSet<Sink> sinks = base != null ? EnumSet.copyOf(base.sinks()) : EnumSet.of(Sink.UI, Sink.METRICS);
+                    if (n.path("sinks").isArray()) {
+                        sinks = EnumSet.noneOf(Sink.class);
+                        for (JsonNode s : n.path("sinks")) sinks.add(Sink.valueOf(s.asText().toUpperCase(Locale.ROOT)));
+                    }
+                    String tag = "*".equals(e.getKey()) ? null : e.getKey();
+                    byTag.put(e.getKey(), new Rule(tag, sinks,
+                            n.path("ratePerSec").asInt(base != null ? base.ratePerSec() : 0),
+                            n.path("sample").asInt(base != null ? base.sampleEvery() : 1)));
+                }
+            }
+        } catch (Exception e) {
+            ui.accept("[WARN] logRouting в setting.json не применён: " + e.getMessage());
+        }
+        return new NodeLogRouter(new ArrayList<>(byTag.values()), ui, filePath);
+    }
+
+    public void accept(String line) {
+        if (line == null) return;
+        Route r = route(line);
+        r.lines++;
+        if (r.toFile) writeFile(line);
+        if (r.toUi) r.offerUi(line);
+    }
+
+    /** Сводки подавленного и сброс файла; вызывать после последней строки. */
+    public void close() {
+        for (Route r : routes) r.reportSuppressed();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignore) {
+            }
+            file = null;
+        }
+    }
+
+    public List<TagStats> stats() {
+        List<TagStats> out = new ArrayList<>(routes.size());
+        for (Route r : routes) {
+            if (r.lines > 0) out.add(new TagStats(r.tag == null ? OTHER : r.tag, r.lines, r.toUiCount, r.limited, r.sampledOut));
+        }
+        return out;
+    }
+
+    private Route route(String line) {
+        if (line.length() < 2 || line.charAt(0) != '[') return fallback;
+        char c = line.charAt(1);
+        if (c >= 128) return fallback;
+        Route[] candidates = byFirstChar[c];
+        if (candidates == null) return fallback;
+        for (Route r : candidates) {
+            if (line.startsWith(r.tag)) return r;
+        }
+        return fallback;
+    }
+
+    private void writeFile(String line) {
+        if (fileFailed || filePath == null) return;
+        try {
+            if (file == null) {
+                Files.createDirectories(filePath.getParent());
+                file = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                lastFlush = System.nanoTime();
+            }
+            file.write(line);
+            file.newLine();
+            long now = System.nanoTime();
+            if (now - lastFlush >= FILE_FLUSH_NANOS) {
+                file.flush();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            fileFailed = true;
+            ui.accept("[WARN] Запись лога Node в " + filePath + " отключена: " + e.getMessage());
+        }
+    }
+
+    // ===== Правило с состоянием лимита =====
+    private final class Route {
+        final String tag;
+        final boolean toUi, toFile;
+        final int ratePerSec, sampleEvery;
+
+        long lines, toUiCount, limited, sampledOut;
+        long sampleCounter;
+        double tokens;
+        long lastRefill;
+        long suppressedSinceReport;
+
+        Route(Rule r) {
+            tag = r.tag();
+            toUi = r.sinks().contains(Sink.UI);
+            toFile = r.sinks().contains(Sink.FILE);
+            ratePerSec = r.ratePerSec();
+            sampleEvery = r.sampleEvery();
+            tokens = ratePerSec;
+            lastRefill = System.nanoTime();
+        }
+
+        void offerUi(String line) {
+            if (sampleEvery > 1 && (sampleCounter++ % sampleEvery) != 0) {
+                sampledOut++;
+                return;
+            }
+            if (ratePerSec > 0) {
+                long now = System.nanoTime();
+                tokens = Math.min(ratePerSec, tokens + (now - lastRefill) * ratePerSec / 1_000_000_000.0);
+                lastRefill = now;
+                if (tokens < 1) {
+                    limited++;
+                    suppressedSinceReport++;
+                    return;
+                }
+                tokens -= 1;
+            }
+            reportSuppressed();
+            toUiCount++;
+            ui.accept(line);
+        }
+
+        void reportSuppressed() {
+            if (suppressedSinceReport == 0) return;
+            ui.accept((tag == null ? OTHER : tag) + " … подавлено " + suppressedSinceReport
+                    + " строк (лимит " + ratePerSec + "/с)");
+            suppressedSinceReport = 0;
+        }
+    }
+}
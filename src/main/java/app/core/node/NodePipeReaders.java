@@ -0,0 +1,195 @@
+package app.core.node;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Чтение stdout/stderr Node-процессов.
+ *
+ * Один общий исполнитель на виртуальных потоках на всё приложение: на запуск процесса —
+ * две задачи чтения и одна доставки ({@link Session}). Они заканчиваются вместе с процессом:
+ * EOF пайпа, а если пайп держит кто-то ещё (дочерний процесс Node) — принудительное закрытие
+ * потоков через {@link #EXIT_GRACE_MS} после {@code onExit()}. Между перезапусками ничего не копится.
+ *
+ * Строки идут через ограниченную очередь: если потребитель не успевает, читатель ждёт
+ * (Node упирается в буфер пайпа), память не растёт; такие ожидания видны в метриках.
+ * Исполнитель в {@link AppShutdown} не регистрируется: runAll вызывается и при переключении
+ * серверов, а виртуальные потоки не держат JVM.
+ */
+final class NodePipeReaders {
+
+    static final int QUEUE_CAPACITY = 8192;
+    static final long EXIT_GRACE_MS = 500;
+
+    private static final ExecutorService EXEC =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("node-pipe-", 0).factory());
+
+    // конец потока строк; сравнивается по ссылке
+    private static final String EOF = new String("<eof>");
+
+    private NodePipeReaders() {}
+
+    /** Тот же исполнитель — для коротких служебных задач жизненного цикла процесса. */
+    static Executor executor() {
+        return EXEC;
+    }
+
+    /** Метрики одного запуска процесса. bytes — сырые байты пайпов (stdout + stderr). */
+    record Metrics(long lines, long bytes, long elapsedNanos, int queued, int maxQueued,
+                   long stalls, boolean finished) {
+
+        double linesPerSec() {
+            return elapsedNanos > 0 ? lines / (elapsedNanos / 1_000_000_000.0) : 0;
+        }
+
+        double bytesPerSec() {
+            return elapsedNanos > 0 ? bytes / (elapsedNanos / 1_000_000_000.0) : 0;
+        }
+
+        String describe() {
+            return String.format("%d строк, %d КБ за %.1f с (%.0f строк/с, %.1f КБ/с), очередь %d/%d (пик %d), ожиданий %d",
+                    lines, bytes / 1024, elapsedNanos / 1_000_000_000.0, linesPerSec(), bytesPerSec() / 1024,
+                    queued, QUEUE_CAPACITY, maxQueued, stalls);
+        }
+    }
+
+    /**
+     * Начать чтение пайпов процесса.
+     * @param skipStdout строки stdout, которые не доставляются (но считаются)
+     * @param sink       вызывается в потоке доставки, строки stderr — с префиксом "[ERR] "
+     */
+    static Session start(Process process, Predicate<String> skipStdout, Consumer<String> sink) {
+        Session s = new Session(process, skipStdout, sink);
+        EXEC.execute(() -> s.read(process.getInputStream(), false));
+        EXEC.execute(() -> s.read(process.getErrorStream(), true));
+        EXEC.execute(s::deliver);
+        process.onExit().thenRunAsync(s::closePipes,
+                CompletableFuture.delayedExecutor(EXIT_GRACE_MS, TimeUnit.MILLISECONDS, EXEC));
+        return s;
+    }
+
+    // ===== Один запуск процесса =====
+    static final class Session {
+        private final Process process;
+        private final Predicate<String> skipStdout;
+        private final Consumer<String> sink;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicInteger openReaders = new AtomicInteger(2);
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong stalls = new AtomicLong();
+        private final CompletableFuture<Metrics> done = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private volatile int maxQueued;
+        private volatile long endNanos;
+
+        private Session(Process process, Predicate<String> skipStdout, Consumer<String> sink) {
+            this.process = process;
+            this.skipStdout = skipStdout;
+            this.sink = sink;
+        }
+
+        /** Завершится, когда оба пайпа закрыты и очередь доставлена. */
+        CompletableFuture<Metrics> done() {
+            return done;
+        }
+
+        Metrics metrics() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return new Metrics(lines.get(), bytes.get(), end - startNanos, queue.size(), maxQueued,
+                    stalls.get(), done.isDone());
+        }
+
+        private void read(InputStream raw, boolean err) {
+            InputStream counted = new FilterInputStream(raw) {
+                @Override public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) bytes.incrementAndGet();
+                    return b;
+                }
+
+                @Override public int read(byte[] buf, int off, int len) throws IOException {
+                    int n = super.read(buf, off, len);
+                    if (n > 0) bytes.addAndGet(n);
+                    return n;
+                }
+            };
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(counted, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lines.incrementAndGet();
+                    if (!err && skipStdout != null && skipStdout.test(line)) continue;
+                    enqueue(err ? "[ERR] " + line : line);
+                }
+            } catch (IOException ignore) {
+                // процесс завершается или пайп закрыт по таймауту — тишина
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (openReaders.decrementAndGet() == 0) {
+                    try {
+                        queue.put(EOF);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private void enqueue(String line) throws InterruptedException {
+            if (!queue.offer(line)) {
+                stalls.incrementAndGet();
+                queue.put(line);
+            }
+            int size = queue.size();
+            if (size > maxQueued) maxQueued = size;
+        }
+
+        private void deliver() {
+            try {
+                while (true) {
+                    String line = queue.take();
+                    if (line == EOF) break;
+                    try {
+                        sink.accept(line);
+                    } catch (RuntimeException ignore) {
+                        // ошибка потребителя не должна останавливать чтение
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                endNanos = System.nanoTime();
+                done.complete(metrics());
+            }
+        }
+
+        // после выхода процесса: если EOF так и не пришёл — закрываем пайпы сами
+        private void closePipes() {
+            if (openReaders.get() == 0) return;
+            try {
+                process.getInputStream().close();
+            } catch (IOException ignore) {
+            }
+            try {
+                process.getErrorStream().close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
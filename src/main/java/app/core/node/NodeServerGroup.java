@@ -0,0 +1,145 @@
+package app.core.node;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Группа экземпляров движка из одного каталога на подряд идущих портах.
+ * Node однопоточный: нагрузочному стенду на несколько ядер нужно несколько процессов.
+ *
+ * Экземпляр получает порт и сценарий через окружение ({@link #ENV_PORT}, {@link #ENV_SCENARIO},
+ * см. node-server/server.js) и держит сценарий в памяти — общий setting.json не переписывается.
+ * Лог у каждого свой: строки в UI с префиксом "[:порт]", файл log/node-output-&lt;порт&gt;.log.
+ * Надзор ({@link NodeSupervisor}) тоже свой: упавший экземпляр перезапускается один.
+ *
+ * Процессы группы не регистрируются в {@link AppShutdown#runAll()} — переключение одиночного
+ * сервера их не гасит; на выходе из приложения группа останавливается через registerOnExit.
+ */
+public final class NodeServerGroup {
+
+    public static final String ENV_PORT = "ENGINE_PORT";
+    public static final String ENV_SCENARIO = "ENGINE_SCENARIO";
+    public static final int MAX_INSTANCES = 32;
+
+    public record Instance(int index, int port, String scenario, NodeServerLauncher launcher, NodeSupervisor supervisor) {}
+
+    private final Path serverDir;
+    private final Consumer<String> onLog;
+    private final NodeSupervisor.Policy policy;
+    private final IntFunction<NodeSupervisor.HealthProbe> probeForPort;
+    private final BiConsumer<Instance, NodeSupervisor.Status> onStatus;
+    private final Runnable exitHook = this::stop;
+
+    private List<Instance> instances = List.of();
+
+    /**
+     * @param probeForPort проба для экземпляра на порту; null или null-результат — без проб
+     * @param onStatus     смена состояния экземпляра (из служебного потока)
+     */
+    public NodeServerGroup(Path serverDir, Consumer<String> onLog, NodeSupervisor.Policy policy,
+                           IntFunction<NodeSupervisor.HealthProbe> probeForPort,
+                           BiConsumer<Instance, NodeSupervisor.Status> onStatus) {
+        this.serverDir = Objects.requireNonNull(serverDir);
+        this.onLog = onLog == null ? s -> {} : onLog;
+        this.policy = policy;
+        this.probeForPort = probeForPort;
+        this.onStatus = onStatus == null ? (i, s) -> {} : onStatus;
+    }
+
+    /**
+     * Запустить по экземпляру на сценарий: порты basePort, basePort+1, ...
+     * Занятый порт — ошибка до старта первого процесса; если не поднялся какой-то из
+     * экземпляров, уже запущенные гасятся.
+     */
+    public synchronized List<Instance> start(int basePort, List<String> scenarios) throws IOException {
+        if (!instances.isEmpty()) throw new IllegalStateException("Группа уже запущена");
+        int n = scenarios.size();
+        if (n == 0 || n > MAX_INSTANCES) {
+            throw new IllegalArgumentException("Экземпляров должно быть от 1 до " + MAX_INSTANCES + ": " + n);
+        }
+        if (basePort <= 0 || basePort + n - 1 > 65535) {
+            throw new IllegalArgumentException("Порты вне диапазона: " + basePort + ".." + (basePort + n - 1));
+        }
+        for (int i = 0; i < n; i++) {
+            if (!isPortFree(basePort + i)) throw new IOException("Порт " + (basePort + i) + " занят");
+        }
+
+        List<Instance> started = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                int port = basePort + i;
+                String scenario = scenarios.get(i);
+                String prefix = "[:" + port + "] ";
+                NodeServerLauncher launcher = new NodeServerLauncher(serverDir, s -> onLog.accept(prefix + s));
+                launcher.detachFromShutdown();
+                launcher.setInstance(Map.of(ENV_PORT, String.valueOf(port), ENV_SCENARIO, scenario),
+                        "node-output-" + port + ".log");
+
+                Instance[] self = new Instance[1];
+                NodeSupervisor.HealthProbe probe = probeForPort == null ? null : probeForPort.apply(port);
+                NodeSupervisor supervisor = new NodeSupervisor(launcher, policy, probe,
+                        s -> onLog.accept(prefix + s), st -> onStatus.accept(self[0], st));
+                self[0] = new Instance(i, port, scenario, launcher, supervisor);
+                started.add(self[0]);
+                supervisor.start();
+            }
+        } catch (IOException | RuntimeException e) {
+            stopAll(started);
+            throw e;
+        }
+        instances = List.copyOf(started);
+        AppShutdown.registerOnExit(exitHook);
+        onLog.accept("[group] запущено " + n + " экз. на портах " + basePort + ".." + (basePort + n - 1));
+        return instances;
+    }
+
+    /** Остановить все экземпляры (параллельно — каждый ждёт выхода до 700 мс). */
+    public void stop() {
+        List<Instance> list;
+        synchronized (this) {
+            list = instances;
+            instances = List.of();
+        }
+        if (list.isEmpty()) return;
+        AppShutdown.unregisterOnExit(exitHook);
+        stopAll(list);
+        onLog.accept("[group] остановлено экземпляров: " + list.size());
+    }
+
+    public synchronized boolean isRunning() {
+        return !instances.isEmpty();
+    }
+
+    public synchronized List<Instance> instances() {
+        return instances;
+    }
+
+    private static void stopAll(List<Instance> list) {
+        CompletableFuture<?>[] stops = new CompletableFuture<?>[list.size()];
+        for (int i = 0; i < stops.length; i++) {
+            NodeServerLauncher l = list.get(i).launcher();
+            stops[i] = CompletableFuture.runAsync(l::stopIfRunning, NodePipeReaders.executor());
+        }
+        CompletableFuture.allOf(stops).join();
+    }
+
+    private static boolean isPortFree(int port) {
+        try (ServerSocket s = new ServerSocket()) {
+            s.setReuseAddress(false);
+            s.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
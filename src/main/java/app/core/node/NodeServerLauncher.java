@@ -3,40 +3,105 @@ package app.core.node;
 
 import javafx.application.Platform;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 public final class NodeServerLauncher {
     private static final String NODE_BIN = "node";
+    private static final int STDERR_TAIL_LINES = 20;
+    private static final long STDERR_WAIT_MS = 200;
+    // строка движка о поднятом порте — по ней меряется время до готовности
+    private static final String READY_MARKER = "[EVENT] listening";
+
+    /**
+     * Завершение процесса.
+     * @param requested   остановлен через {@link #stopIfRunning()}, а не упал сам
+     * @param stderrTail  последние строки stderr (с префиксом "[ERR] ")
+     */
+    public record Exit(int code, long uptimeMs, List<String> stderrTail, boolean requested) {}
 
     private final Path serverDir;
     private final Consumer<String> onLog;
+    private final boolean deliverOnFx;
+    private NodeIpcChannel ipc;
     private Process process;
+    private NodePipeReaders.Session pipes;
+    private NodeLogRouter router;
+    private volatile Consumer<Exit> onExit;
+    private volatile long stopRequests;
+    private Map<String, String> environment = Map.of();
+    private String logFileName = "node-output.log";
+    private boolean warmPool;
+    private final Runnable shutdownHook = this::stopIfRunning;
 
-    // теги, которые считаем «служебными» и не показываем в UI
-    private static final Set<String> SILENT_PREFIXES = Set.of(
-            "[EVENT]", "[CONTROL]", "[CONNECT]", "[CLOSE]"
-    );
+    // строки для FX-потока копятся и уходят одним runLater, а не по одному на строку
+    private final ConcurrentLinkedQueue<String> fxPending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fxScheduled = new AtomicBoolean();
 
     public NodeServerLauncher(Path serverDir, Consumer<String> onLog) {
+        this(serverDir, onLog, true);
+    }
+
+    /**
+     * @param deliverOnFx false — onLog вызывается прямо из потока чтения пайпа
+     *                    (потребитель сам решает, как и когда попасть в FX-поток)
+     */
+    public NodeServerLauncher(Path serverDir, Consumer<String> onLog, boolean deliverOnFx) {
         this.serverDir = Objects.requireNonNull(serverDir);
         this.onLog = onLog == null ? s -> {} : onLog;
+        this.deliverOnFx = deliverOnFx;
 
         // Регистрируем стоппер в центральном менеджере завершения приложения
-        AppShutdown.register(this::stopIfRunning);
+        AppShutdown.register(shutdownHook);
+    }
+
+    /**
+     * Процессом управляет владелец (группа): runAll при переключении серверов его не гасит,
+     * остановка на выходе из приложения — на владельце.
+     */
+    void detachFromShutdown() {
+        AppShutdown.unregister(shutdownHook);
+    }
+
+    /** Дополнительные переменные окружения и имя файла в log/ для следующих запусков. */
+    public synchronized void setInstance(Map<String, String> environment, String logFileName) {
+        this.environment = environment == null ? Map.of() : Map.copyOf(environment);
+        if (logFileName != null && !logFileName.isBlank()) this.logFileName = logFileName;
+    }
+
+    /** Канал для следующих запусков: порт и токен передаются процессу через окружение. */
+    public synchronized void setIpcChannel(NodeIpcChannel ipc) {
+        this.ipc = ipc;
+    }
+
+    /** Вызывается из служебного потока после выхода процесса и доставки его вывода. */
+    public void setOnExit(Consumer<Exit> onExit) {
+        this.onExit = onExit;
+    }
+
+    /**
+     * Держать для каталога заранее запущенный Node ({@link NodeWarmPool}): старт забирает его
+     * и не ждёт загрузки модулей. Нужна поддержка NODE_WARM в server.js.
+     */
+    public synchronized void setWarmPool(boolean enabled) {
+        warmPool = enabled;
+        if (enabled) NodeWarmPool.refill(serverDir, command(), this::warmFailed);
+        else NodeWarmPool.discard(serverDir);
     }
 
     public synchronized boolean isRunning() {
@@ -58,18 +123,114 @@ public final class NodeServerLauncher {
             throw new IllegalStateException("Missing file: " + settingJson.toAbsolutePath());
         }
 
-        // Стартуем Node-процесс
-        ProcessBuilder pb = new ProcessBuilder()
-                .directory(serverDir.toFile())
-                .command(nodeExec(), "server.js");
+        long startNanos = System.nanoTime();
+        Map<String, String> env = new HashMap<>(environment);
+        if (ipc != null) env.putAll(ipc.open());
+
+        // тёплый процесс из пула получает окружение строкой в stdin, иначе — обычный запуск
+        Process warmProcess = warmPool ? NodeWarmPool.take(serverDir) : null;
+        if (warmProcess != null) {
+            try {
+                NodeWarmPool.handOver(warmProcess, env);
+            } catch (IOException e) {
+                warmProcess.destroyForcibly();
+                warmProcess = null;
+            }
+        }
+        boolean warm = warmProcess != null;
+        Process p;
+        if (warm) {
+            p = warmProcess;
+        } else {
+            ProcessBuilder pb = new ProcessBuilder()
+                    .directory(serverDir.toFile())
+                    .command(command());
+            pb.environment().putAll(env);
+            p = pb.start();
+        }
+        process = p;
+        if (warmPool) NodeWarmPool.refill(serverDir, command(), this::warmFailed);
+        String how = warm ? "тёплый процесс" : "холодный старт";
+        boolean[] ready = {false};
+
+        // чтение пайпов — на общем исполнителе, сессия заканчивается вместе с процессом;
+        // строки раскладываются по тегам: UI / файл log/node-output.log / счётчики
+        NodeLogRouter lineRouter = NodeLogRouter.fromSettings(settingJson, this::log,
+                serverDir.resolve("log").resolve(logFileName));
+        ArrayDeque<String> errTail = new ArrayDeque<>(STDERR_TAIL_LINES);
+        NodePipeReaders.Session session = NodePipeReaders.start(p, null, line -> {
+            if (!ready[0] && line.startsWith(READY_MARKER)) {
+                ready[0] = true;
+                log(String.format("[node] порт поднят через %.1f мс после запуска (%s)",
+                        (System.nanoTime() - startNanos) / 1e6, how));
+            }
+            if (line.startsWith("[ERR] ")) {
+                synchronized (errTail) {
+                    if (errTail.size() == STDERR_TAIL_LINES) errTail.removeFirst();
+                    errTail.addLast(line);
+                }
+            }
+            lineRouter.accept(line);
+        });
+        router = lineRouter;
+        pipes = session;
+        session.done().thenAccept(m -> {
+            lineRouter.close(); // поток доставки уже закончил — закрываем в нём же
+            if (m.stalls() > 0) log("[node] потребитель не успевал за выводом: " + m.describe());
+        });
+
+        // о выходе сообщаем, когда stderr дочитан (обычно сразу), но не позже STDERR_WAIT_MS
+        p.onExit()
+                .thenCompose(x -> session.done().handle((m, e) -> (Void) null)
+                        .completeOnTimeout(null, STDERR_WAIT_MS, TimeUnit.MILLISECONDS))
+                .thenRunAsync(() -> reportExit(p, startNanos, errTail), NodePipeReaders.executor());
+    }
+
+    private void reportExit(Process p, long startNanos, ArrayDeque<String> errTail) {
+        boolean requested;
+        synchronized (this) {
+            // stopIfRunning обнуляет process до того, как мы сюда попадём
+            requested = process != p;
+            if (!requested) {
+                process = null;
+                if (ipc != null) ipc.close();
+            }
+        }
+        List<String> tail;
+        synchronized (errTail) {
+            tail = List.copyOf(errTail);
+        }
+        Consumer<Exit> l = onExit;
+        if (l != null) {
+            l.accept(new Exit(p.exitValue(), (System.nanoTime() - startNanos) / 1_000_000, tail, requested));
+        }
+    }
+
+    /** Счётчики строк по тегам текущего (или последнего) процесса. */
+    public synchronized List<NodeLogRouter.TagStats> logStats() {
+        return router == null ? List.of() : router.stats();
+    }
 
-        process = pb.start();
+    /** Метрики чтения вывода текущего (или последнего) процесса; null — ещё не запускался. */
+    public synchronized String pipeStats() {
+        return pipes == null ? null : pipes.metrics().describe();
+    }
 
-        startPipeReader(process.getInputStream(), false);
-        startPipeReader(process.getErrorStream(), true);
+    /**
+     * Сколько раз вызывался {@link #stopIfRunning()} — в том числе когда процесс уже не работал.
+     * Надзор сверяет счётчик, чтобы не перезапустить то, что пользователь только что остановил.
+     */
+    long stopRequests() {
+        return stopRequests;
+    }
+
+    /** Убить процесс без пометки "остановлен": для надзора это падение. */
+    synchronized void kill() {
+        if (isRunning()) process.destroyForcibly();
     }
 
     public synchronized void stopIfRunning() {
+        stopRequests++;
         if (!isRunning()) return;
 
         try {
@@ -81,33 +242,24 @@ public final class NodeServerLauncher {
             log("Ошибка остановки Node: " + e.getMessage());
         } finally {
             process = null;
+            if (ipc != null) ipc.close();
         }
     }
 
-    private void startPipeReader(InputStream is, boolean err) {
-        var exec = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, err ? "node-stderr" : "node-stdout");
-            t.setDaemon(true);
-            return t;
-        });
-        exec.submit(() -> {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    if (!err) {
-                        boolean silent = SILENT_PREFIXES.stream().anyMatch(line::startsWith);
-                        if (silent) continue; // гасим шумные системные логи
-                    }
-                    log((err ? "[ERR] " : "") + line);
-                }
-            } catch (IOException ignore) {
-                // процесс завершается — тишина
-            }
-        });
+    private void log(String s) {
+        if (!deliverOnFx) {
+            onLog.accept(s);
+            return;
+        }
+        fxPending.add(s);
+        if (fxScheduled.compareAndSet(false, true)) Platform.runLater(this::drainFx);
     }
 
-    private void log(String s) {
-        Platform.runLater(() -> onLog.accept(s));
+    private void drainFx() {
+        // флаг снимается до разбора: строка, пришедшая во время разбора, запланирует новый проход
+        fxScheduled.set(false);
+        String s;
+        while ((s = fxPending.poll()) != null) onLog.accept(s);
     }
 
     /**
@@ -148,6 +300,14 @@ public final class NodeServerLauncher {
         }
     }
 
+    private List<String> command() {
+        return List.of(nodeExec(), "server.js");
+    }
+
+    private void warmFailed() {
+        log("[WARN] Не удалось заранее запустить Node для " + serverDir + " — старт будет обычным");
+    }
+
     private String nodeExec() {
         return NODE_BIN;
     }
@@ -0,0 +1,413 @@
+package app.core.node;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Надзор за Node-процессом {@link NodeServerLauncher}.
+ *
+ * Падение замечается сразу по {@code Process.onExit()}, а не при следующем опросе isRunning():
+ * код выхода и хвост stderr сохраняются, процесс перезапускается с задержкой, которая удваивается
+ * на каждом падении подряд. Зависший процесс (жив, но не отвечает) ловит проба по control-каналу:
+ * после {@link Policy#probeFailures()} неудач подряд он убивается, дальше — обычный перезапуск.
+ *
+ * Остановка через launcher (stopIfRunning, в т.ч. из AppShutdown.runAll) падением не считается
+ * и отменяет запланированный перезапуск. Слушатель состояния вызывается из служебного потока.
+ */
+public final class NodeSupervisor {
+
+    public enum State { STOPPED, RUNNING, RESTARTING, FAILED }
+
+    /** Проверка живости по control-каналу процесса. */
+    public interface HealthProbe {
+        /** Успешное завершение — процесс ответил; таймаут ставит надзор. */
+        CompletableFuture<?> check();
+
+        /** Процесс завершился: соединение пробы больше не годится. */
+        default void reset() {}
+    }
+
+    /**
+     * @param maxRestarts     перезапусков подряд без стабильной работы между ними; 0 — не перезапускать
+     * @param backoffMs       задержка перед первым перезапуском, дальше удваивается до maxBackoffMs
+     * @param stableMs        проработав столько, процесс считается стабильным: серия падений обнуляется
+     * @param probeIntervalMs период проб, 0 — без проб
+     * @param probeGraceMs    первая проба после старта — не раньше (Node ещё поднимает порт)
+     */
+    public record Policy(int maxRestarts, long backoffMs, long maxBackoffMs, long stableMs,
+                         long probeIntervalMs, long probeTimeoutMs, int probeFailures, long probeGraceMs) {
+
+        public Policy {
+            maxRestarts = Math.max(0, maxRestarts);
+            backoffMs = Math.max(0, backoffMs);
+            maxBackoffMs = Math.max(backoffMs, maxBackoffMs);
+            probeIntervalMs = Math.max(0, probeIntervalMs);
+            probeTimeoutMs = Math.max(1, probeTimeoutMs);
+            probeFailures = Math.max(1, probeFailures);
+            probeGraceMs = Math.max(0, probeGraceMs);
+        }
+
+        public static Policy defaults() {
+            return new Policy(5, 100, 5_000, 30_000, 1_000, 1_500, 3, 2_000);
+        }
+
+        /**
+         * Значения по умолчанию, поверх которых — необязательный раздел "supervisor" из setting.json:
+         * { "autoRestart": true, "maxRestarts": 5, "backoffMs": 100, "maxBackoffMs": 5000, "stableMs": 30000,
+         *   "probeIntervalMs": 1000, "probeTimeoutMs": 1500, "probeFailures": 3, "probeGraceMs": 2000 }.
+         */
+        public static Policy fromSettings(Path settingJson, Consumer<String> log) {
+            Policy d = defaults();
+            try {
+                if (settingJson == null || !Files.exists(settingJson)) return d;
+                JsonNode n = new ObjectMapper().readTree(settingJson.toFile()).path("supervisor");
+                if (n.isMissingNode()) return d;
+                int max = n.path("autoRestart").asBoolean(true) ? n.path("maxRestarts").asInt(d.maxRestarts) : 0;
+                return new Policy(max,
+                        n.path("backoffMs").asLong(d.backoffMs),
+                        n.path("maxBackoffMs").asLong(d.maxBackoffMs),
+                        n.path("stableMs").asLong(d.stableMs),
+                        n.path("probeIntervalMs").asLong(d.probeIntervalMs),
+                        n.path("probeTimeoutMs").asLong(d.probeTimeoutMs),
+                        n.path("probeFailures").asInt(d.probeFailures),
+                        n.path("probeGraceMs").asLong(d.probeGraceMs));
+            } catch (IOException | RuntimeException e) {
+                if (log != null) log.accept("[WARN] supervisor в setting.json не применён: " + e.getMessage());
+                return d;
+            }
+        }
+
+        /** Задержка перед attempt-м перезапуском серии (с 1). */
+        long backoffFor(int attempt) {
+            int shift = Math.min(30, Math.max(0, attempt - 1));
+            return Math.min(maxBackoffMs, backoffMs << shift);
+        }
+    }
+
+    /**
+     * Снимок для UI.
+     * @param restarts     перезапусков с момента {@link #start()}
+     * @param uptimeMs     текущего процесса, 0 — не работает
+     * @param responding   последняя проба прошла (false и при выключенных пробах)
+     * @param lastExitCode последнего падения; null — процесс не падал (штатная остановка не в счёт)
+     */
+    public record Status(State state, int restarts, long uptimeMs, boolean responding, long probeMs,
+                         Integer lastExitCode, List<String> lastStderr, String reason) {
+
+        /** Короткая строка для панели: "работает 0:12:34 · перезапусков 2". */
+        public String describe() {
+            return switch (state) {
+                case STOPPED -> lastExitCode == null ? "" : "остановлен · последнее падение: код " + lastExitCode;
+                case RUNNING -> "работает " + formatUptime(uptimeMs)
+                        + (restarts > 0 ? " · перезапусков " + restarts : "")
+                        + (responding && probeMs >= 0 ? " · отклик " + probeMs + " мс" : "");
+                case RESTARTING -> "перезапуск… " + (reason == null ? "" : reason);
+                case FAILED -> "не поднимается: " + (reason == null ? "" : reason);
+            };
+        }
+
+        /** Подробности последнего падения: код, причина, хвост stderr. */
+        public String details() {
+            if (lastExitCode == null && reason == null) return "Падений не было";
+            StringBuilder sb = new StringBuilder();
+            if (lastExitCode != null) sb.append("Код выхода: ").append(lastExitCode).append('\n');
+            if (reason != null) sb.append(reason).append('\n');
+            if (lastStderr.isEmpty()) sb.append("stderr пуст");
+            else sb.append(String.join("\n", lastStderr));
+            return sb.toString();
+        }
+    }
+
+    private static final ExecutorService EXEC =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("node-supervisor-", 0).factory());
+
+    private final NodeServerLauncher launcher;
+    private final Policy policy;
+    private final HealthProbe probe;
+    private final Consumer<String> onLog;
+    private final Consumer<Status> onChange;
+
+    // всё ниже — под this
+    private State state = State.STOPPED;
+    private long generation;            // меняется на каждом старте/выходе: старые пробы и перезапуски отбрасываются
+    private long stopMark;              // launcher.stopRequests() на момент старта
+    private int restarts;
+    private int streak;                 // падений подряд
+    private long startedNanos;
+    private boolean responding;
+    private long probeMs = -1;
+    private int probeFails;
+    private boolean killedByProbe;
+    private Integer lastExitCode;
+    private List<String> lastStderr = List.of();
+    private String reason;
+
+    /**
+     * @param probe    null — без проб, только onExit
+     * @param onChange вызывается при смене состояния и после проб, меняющих responding
+     */
+    public NodeSupervisor(NodeServerLauncher launcher, Policy policy, HealthProbe probe,
+                          Consumer<String> onLog, Consumer<Status> onChange) {
+        this.launcher = Objects.requireNonNull(launcher);
+        this.policy = policy == null ? Policy.defaults() : policy;
+        this.probe = probe;
+        this.onLog = onLog == null ? s -> {} : onLog;
+        this.onChange = onChange == null ? s -> {} : onChange;
+        launcher.setOnExit(this::onExit);
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+
+    /** Запуск по команде пользователя: счётчики серии сбрасываются. */
+    public void start() throws IOException {
+        long gen;
+        synchronized (this) {
+            gen = ++generation;
+            stopMark = launcher.stopRequests();
+            restarts = 0;
+            streak = 0;
+            lastExitCode = null;
+            lastStderr = List.of();
+            reason = null;
+            state = State.RUNNING; // выход процесса сразу после старта тоже должен считаться падением
+            startedNanos = System.nanoTime();
+        }
+        try {
+            launcher.startIfNeeded();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (gen == generation) state = State.STOPPED;
+            }
+            throw e;
+        }
+        running(gen);
+    }
+
+    /** Процесс работает или ждёт перезапуска — для кнопки "Server Off". */
+    public synchronized boolean isActive() {
+        State s = current();
+        return s == State.RUNNING || s == State.RESTARTING;
+    }
+
+    public synchronized Status status() {
+        State s = current();
+        long uptime = s == State.RUNNING ? (System.nanoTime() - startedNanos) / 1_000_000 : 0;
+        return new Status(s, restarts, uptime, responding, probeMs, lastExitCode, lastStderr, reason);
+    }
+
+    // остановка во время ожидания перезапуска видна сразу, не дожидаясь таймера
+    private State current() {
+        if (state == State.RESTARTING && launcher.stopRequests() != stopMark) state = State.STOPPED;
+        return state;
+    }
+
+    // ===== Жизненный цикл =====
+
+    private void running(long gen) {
+        synchronized (this) {
+            if (gen != generation) return;
+            state = State.RUNNING;
+            startedNanos = System.nanoTime();
+            responding = false;
+            probeMs = -1;
+            probeFails = 0;
+            killedByProbe = false;
+        }
+        notifyChange();
+        scheduleProbe(gen, policy.probeGraceMs());
+    }
+
+    private void onExit(NodeServerLauncher.Exit exit) {
+        if (probe != null) probe.reset();
+        long gen;
+        long delay;
+        int attempt;
+        synchronized (this) {
+            gen = ++generation;
+            responding = false;
+            if (state == State.STOPPED || state == State.FAILED) return; // не наш запуск
+            if (exit.requested() || launcher.stopRequests() != stopMark) {
+                state = State.STOPPED;
+                reason = null;
+                gen = -1;
+            } else {
+                lastExitCode = exit.code();
+                lastStderr = exit.stderrTail();
+                reason = killedByProbe
+                        ? "не отвечал на пробы, убит (код " + exit.code() + ")"
+                        : "упал с кодом " + exit.code() + " через " + formatUptime(exit.uptimeMs());
+                if (exit.uptimeMs() >= policy.stableMs()) streak = 0;
+                streak++;
+                if (streak > policy.maxRestarts()) {
+                    state = State.FAILED;
+                    gen = -1;
+                } else {
+                    state = State.RESTARTING;
+                }
+            }
+            attempt = streak;
+            delay = policy.backoffFor(attempt);
+        }
+
+        if (gen < 0) {
+            Status st = status();
+            if (st.state() == State.FAILED) {
+                onLog.accept("[node] " + st.reason() + "; перезапуски исчерпаны ("
+                        + policy.maxRestarts() + " подряд)");
+            }
+            notifyChange();
+            return;
+        }
+
+        onLog.accept("[node] " + reasonNow() + "; перезапуск через " + delay + " мс (попытка "
+                + attempt + "/" + policy.maxRestarts() + ")");
+        notifyChange();
+        long g = gen;
+        after(delay).execute(() -> restart(g));
+    }
+
+    private void restart(long gen) {
+        synchronized (this) {
+            if (gen != generation || state != State.RESTARTING) return;
+            if (launcher.stopRequests() != stopMark) {
+                state = State.STOPPED;
+                gen = -1;
+            }
+        }
+        if (gen < 0) {
+            notifyChange();
+            return;
+        }
+
+        try {
+            launcher.startIfNeeded();
+        } catch (Exception e) {
+            failedStart(gen, e);
+            return;
+        }
+        synchronized (this) {
+            if (gen != generation) return; // за время старта пришёл выход или новый start()
+            restarts++;
+        }
+        // остановили, пока поднимали — гасим то, что успели запустить
+        if (launcher.stopRequests() != stopMark) {
+            launcher.stopIfRunning();
+            return;
+        }
+        onLog.accept("[node] перезапущен (всего перезапусков: " + status().restarts() + ")");
+        running(gen);
+    }
+
+    private void failedStart(long gen, Exception e) {
+        long delay;
+        int attempt;
+        synchronized (this) {
+            if (gen != generation) return;
+            reason = "не стартует: " + e.getMessage();
+            streak++;
+            attempt = streak;
+            if (streak > policy.maxRestarts()) {
+                state = State.FAILED;
+                gen = -1;
+            }
+            delay = policy.backoffFor(attempt);
+        }
+        onLog.accept("[node] " + reasonNow() + (gen < 0 ? "; перезапуски исчерпаны" : "; повтор через " + delay + " мс"));
+        notifyChange();
+        if (gen < 0) return;
+        long g = gen;
+        after(delay).execute(() -> restart(g));
+    }
+
+    // ===== Пробы =====
+
+    private void scheduleProbe(long gen, long delayMs) {
+        if (probe == null || policy.probeIntervalMs() == 0) return;
+        after(delayMs).execute(() -> runProbe(gen));
+    }
+
+    private void runProbe(long gen) {
+        synchronized (this) {
+            if (gen != generation || state != State.RUNNING) return;
+        }
+        long t0 = System.nanoTime();
+        CompletableFuture<?> f;
+        try {
+            f = probe.check();
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        f.thenApply(x -> Boolean.TRUE)
+                .orTimeout(policy.probeTimeoutMs(), TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((ok, ex) -> onProbe(gen, ex, (System.nanoTime() - t0) / 1_000_000), EXEC);
+    }
+
+    private void onProbe(long gen, Throwable ex, long elapsedMs) {
+        boolean changed;
+        boolean kill = false;
+        int fails;
+        synchronized (this) {
+            if (gen != generation || state != State.RUNNING) return;
+            boolean was = responding;
+            if (ex == null) {
+                responding = true;
+                probeMs = elapsedMs;
+                probeFails = 0;
+            } else {
+                responding = false;
+                probeFails++;
+                if (probeFails >= policy.probeFailures()) {
+                    killedByProbe = true;
+                    kill = true;
+                }
+            }
+            fails = probeFails;
+            changed = was != responding;
+        }
+        if (changed) notifyChange();
+        if (kill) {
+            onLog.accept("[node] нет ответа на " + fails + " проб(ы) подряд — процесс будет убит");
+            launcher.kill(); // дальше — onExit и перезапуск по политике
+            return;
+        }
+        scheduleProbe(gen, policy.probeIntervalMs());
+    }
+
+    // ===== Вспомогательное =====
+
+    private static Executor after(long delayMs) {
+        return delayMs <= 0 ? EXEC : CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, EXEC);
+    }
+
+    private synchronized String reasonNow() {
+        return reason;
+    }
+
+    private void notifyChange() {
+        try {
+            onChange.accept(status());
+        } catch (RuntimeException e) {
+            onLog.accept("[node] ошибка обработчика состояния: " + e.getMessage());
+        }
+    }
+
+    static String formatUptime(long ms) {
+        long s = ms / 1000;
+        if (s < 60) return s + "." + (ms % 1000) / 100 + " с";
+        return String.format("%d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+    }
+}
@@ -0,0 +1,115 @@
+package app.core.node;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Тёплые Node-процессы: по одному заранее запущенному на каталог сервера.
+ *
+ * Процесс стартует с {@link #ENV_WARM}=1, загружает модули и ждёт в stdin строку
+ * "GO {окружение}" (см. node-server/server.js). Запуск сервера забирает готовый процесс
+ * и передаёт ему окружение запуска — остаётся только поднять порт; замена готовится в фоне.
+ * Процесс, запущенный до изменения *.js в каталоге, не выдаётся — код мог поменяться.
+ *
+ * Простаивающие процессы гасятся только на выходе из приложения ({@link AppShutdown#registerOnExit}):
+ * runAll перед каждым запуском сервера иначе убивал бы их. Если JVM упадёт, Node выйдет сам
+ * по закрытию stdin.
+ */
+final class NodeWarmPool {
+
+    static final String ENV_WARM = "NODE_WARM";
+
+    private record Idle(Process process, long codeStamp) {}
+
+    private static final Map<Path, Idle> IDLE = new ConcurrentHashMap<>();
+    private static final Map<Path, Boolean> REFILLING = new ConcurrentHashMap<>();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        AppShutdown.registerOnExit(NodeWarmPool::clear);
+    }
+
+    private NodeWarmPool() {}
+
+    /** Готовый процесс для каталога или null (пула нет, процесс умер или код устарел). */
+    static Process take(Path serverDir) {
+        Idle idle = IDLE.remove(key(serverDir));
+        if (idle == null) return null;
+        if (!idle.process().isAlive() || idle.codeStamp() != codeStamp(serverDir)) {
+            idle.process().destroy();
+            return null;
+        }
+        return idle.process();
+    }
+
+    /** Передать процессу окружение запуска; после этого он стартует движок. */
+    static void handOver(Process process, Map<String, String> environment) throws IOException {
+        String env;
+        try {
+            env = MAPPER.writeValueAsString(environment);
+        } catch (JsonProcessingException e) {
+            throw new IOException("Окружение для тёплого процесса не сериализуется", e);
+        }
+        OutputStream os = process.getOutputStream();
+        os.write(("GO " + env + "\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    /** Подготовить замену в фоне, если для каталога её ещё нет. */
+    static void refill(Path serverDir, List<String> command, Runnable onFailure) {
+        Path key = key(serverDir);
+        if (IDLE.containsKey(key) || REFILLING.putIfAbsent(key, Boolean.TRUE) != null) return;
+        NodePipeReaders.executor().execute(() -> {
+            try {
+                long stamp = codeStamp(serverDir);
+                ProcessBuilder pb = new ProcessBuilder(command).directory(serverDir.toFile());
+                pb.environment().put(ENV_WARM, "1");
+                Process p = pb.start();
+                Idle prev = IDLE.put(key, new Idle(p, stamp));
+                if (prev != null) prev.process().destroy();
+            } catch (IOException | RuntimeException e) {
+                if (onFailure != null) onFailure.run();
+            } finally {
+                REFILLING.remove(key);
+            }
+        });
+    }
+
+    /** Убрать простаивающий процесс каталога (пул выключен). */
+    static void discard(Path serverDir) {
+        Idle idle = IDLE.remove(key(serverDir));
+        if (idle != null) idle.process().destroy();
+    }
+
+    static void clear() {
+        for (Path key : IDLE.keySet()) {
+            Idle idle = IDLE.remove(key);
+            if (idle != null) idle.process().destroy();
+        }
+    }
+
+    private static Path key(Path serverDir) {
+        return serverDir.toAbsolutePath().normalize();
+    }
+
+    // максимальное время изменения *.js в каталоге (без подкаталогов)
+    private static long codeStamp(Path serverDir) {
+        try (Stream<Path> files = Files.list(serverDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".js"))
+                    .mapToLong(f -> f.toFile().lastModified())
+                    .max().orElse(0);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package app.products.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Потоковый разбор больших наборов уровней для manualQuote в {@link QuoteBuffer}.
+ *
+ * Поддерживаемые форматы (определяются по первому значащему символу):
+ * <ul>
+ *   <li>CSV: {@code side,price,volume} или {@code price,volume} (отрицательная цена — ask);
+ *       разделитель — запятая, точка с запятой или TAB; строка-заголовок пропускается;</li>
+ *   <li>JSON-массив: {@code [{"side":"bid","price":1.5,"volume":10}, {"p":-1.6,"v":5}, ...]};</li>
+ *   <li>JSON-объект стакана: {@code {"bid":[{"p":..,"v":..}], "ask":[...]}} — как subscribe_upd.json.</li>
+ * </ul>
+ * Некорректные и неположительные уровни пропускаются и считаются в {@link Result#skipped()}.
+ */
+public final class BulkQuoteLoader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private BulkQuoteLoader() {}
+
+    public record Result(QuoteBuffer levels, int skipped) {}
+
+    public static Result parse(String text) throws IOException {
+        return parse(new StringReader(text == null ? "" : text));
+    }
+
+    public static Result parse(Path file) throws IOException {
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(r);
+        }
+    }
+
+    public static Result parse(Reader reader) throws IOException {
+        BufferedReader r = (reader instanceof BufferedReader br) ? br : new BufferedReader(reader, 1 << 16);
+        int c;
+        do {
+            r.mark(1);
+            c = r.read();
+        } while (c == 0xFEFF || (c >= 0 && Character.isWhitespace(c)));
+        if (c < 0) return new Result(new QuoteBuffer(), 0);
+        r.reset();
+
+        Acc acc = new Acc();
+        if (c == '[' || c == '{') parseJson(r, acc);
+        else parseCsv(r, acc);
+        return new Result(acc.buf, acc.skipped);
+    }
+
+    // ===== CSV =====
+
+    private static void parseCsv(BufferedReader r, Acc acc) throws IOException {
+        String line;
+        boolean first = true;
+        while ((line = r.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            int f1 = nextSep(line, 0);
+            int f2 = f1 < 0 ? -1 : nextSep(line, f1 + 1);
+            try {
+                if (f1 < 0) {
+                    acc.skipped++;
+                } else if (f2 < 0) {
+                    // price,volume
+                    double price = parseNum(line, 0, f1);
+                    acc.add(price < 0, price, parseNum(line, f1 + 1, line.length()));
+                } else {
+                    // side,price,volume[,...]
+                    Boolean ask = side(line, 0, f1);
+                    int f3 = nextSep(line, f2 + 1);
+                    double price = parseNum(line, f1 + 1, f2);
+                    double vol = parseNum(line, f2 + 1, f3 < 0 ? line.length() : f3);
+                    if (ask == null) acc.skipped++;
+                    else acc.add(ask, price, vol);
+                }
+            } catch (NumberFormatException e) {
+                // первая нечисловая строка — заголовок
+                if (!first) acc.skipped++;
+            }
+            first = false;
+        }
+    }
+
+    private static int nextSep(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == ',' || ch == ';' || ch == '\t') return i;
+        }
+        return -1;
+    }
+
+    private static double parseNum(String s, int from, int to) {
+        return Double.parseDouble(s.substring(from, to).trim());
+    }
+
+    private static Boolean side(String s, int from, int to) {
+        String v = s.substring(from, to).trim();
+        if (v.equalsIgnoreCase("bid") || v.equalsIgnoreCase("b") || v.equalsIgnoreCase("buy")) return false;
+        if (v.equalsIgnoreCase("ask") || v.equalsIgnoreCase("a") || v.equalsIgnoreCase("sell")) return true;
+        return null;
+    }
+
+    // ===== JSON =====
+
+    private static void parseJson(Reader r, Acc acc) throws IOException {
+        try (JsonParser p = JSON.createParser(r)) {
+            JsonToken tok = p.nextToken();
+            if (tok == JsonToken.START_ARRAY) {
+                readLevels(p, null, acc);
+            } else if (tok == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if (v == JsonToken.START_ARRAY && ("bid".equals(field) || "ask".equals(field) || "ops".equals(field))) {
+                        readLevels(p, "ops".equals(field) ? null : "ask".equals(field), acc);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Массив уровней; forceAsk == null — сторона из поля side или по знаку цены. */
+    private static void readLevels(JsonParser p, Boolean forceAsk, Acc acc) throws IOException {
+        JsonToken tok;
+        while ((tok = p.nextToken()) != JsonToken.END_ARRAY && tok != null) {
+            if (tok != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                acc.skipped++;
+                continue;
+            }
+            double price = Double.NaN, vol = Double.NaN;
+            Boolean ask = forceAsk;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String f = p.currentName();
+                JsonToken v = p.nextToken();
+                switch (f) {
+                    case "p", "price"  -> price = p.getValueAsDouble(Double.NaN);
+                    case "v", "volume" -> vol = p.getValueAsDouble(Double.NaN);
+                    case "side" -> {
+                        if (forceAsk == null && v == JsonToken.VALUE_STRING) {
+                            String s = p.getText();
+                            ask = side(s, 0, s.length());
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            if (Double.isNaN(price) || Double.isNaN(vol)) {
+                acc.skipped++;
+                continue;
+            }
+            acc.add(ask != null ? ask : price < 0, price, vol);
+        }
+    }
+
+    // ===== Накопитель =====
+    private static final class Acc {
+        final QuoteBuffer buf = new QuoteBuffer(1024);
+        int skipped;
+
+        void add(boolean ask, double price, double vol) {
+            long ticks = OrderBookModel.toTicks(price);
+            long v = Math.round(vol);
+            // движок (sendManualQuoteToAll) сам отбрасывает такие уровни — не гоняем их по сети
+            if (ticks <= 0 || v <= 0 || !Double.isFinite(price) || !Double.isFinite(vol)) {
+                skipped++;
+                return;
+            }
+            buf.add(ask, ticks, v);
+        }
+    }
+}
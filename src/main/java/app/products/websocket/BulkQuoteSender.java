@@ -0,0 +1,92 @@
+package app.products.websocket;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Отправка большого набора уровней пачками manualQuote с ограничением размера пачки.
+ *
+ * Каждая пачка на сервере — отдельная транзакция sendManualQuoteToAll (снимок всем пользователям),
+ * поэтому пачки крупные, но ограничены по байтам, чтобы не упираться в лимит фрейма.
+ * Пачки уходят строго по очереди через цепочку ControlClient.sendRawAsync.
+ * Закрытое соединение или неудачная пачка обрывает цепочку: future завершается ошибкой
+ * с числом уже отправленных пачек, прогресс дальше не идёт.
+ */
+public final class BulkQuoteSender {
+
+    /** Размер пачки по умолчанию (оценка JSON в байтах). */
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+
+    public record Progress(int chunksSent, int chunksTotal, int levelsSent, int levelsTotal) {}
+
+    private BulkQuoteSender() {}
+
+    /**
+     * @param recorder если идёт запись макроса — каждая пачка пишется отдельным шагом (может быть null)
+     * @return future с числом отправленных пачек
+     */
+    public static CompletableFuture<Integer> send(ControlClient client, QuoteBuffer levels, boolean replaceCurrent,
+                                                  int maxChunkBytes, MacroRecorder recorder,
+                                                  Consumer<Progress> onProgress) {
+        int[] bounds = chunkBounds(levels, Math.max(1024, maxChunkBytes));
+        int chunks = bounds.length - 1;
+        int total = levels.size();
+
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int c = 0; c < chunks; c++) {
+            final int from = bounds[c], to = bounds[c + 1], sent = c + 1;
+            chain = chain
+                    .thenCompose(v -> {
+                        if (!client.isOpen()) {
+                            return CompletableFuture.failedFuture(new IllegalStateException(
+                                    "соединение закрыто, отправлено пачек " + (sent - 1) + "/" + chunks));
+                        }
+                        if (recorder != null && recorder.isRecording()) {
+                            recorder.recordManualQuote(levels.toOps(from, to), replaceCurrent);
+                        }
+                        return client.sendManualQuoteAsync(levels, from, to, replaceCurrent);
+                    })
+                    .thenRun(() -> {
+                        if (onProgress != null) onProgress.accept(new Progress(sent, chunks, to, total));
+                    });
+        }
+        return chain.thenApply(v -> chunks);
+    }
+
+    /** Границы пачек: bounds[k]..bounds[k+1]; считается один раз по оценке длины JSON каждого уровня. */
+    static int[] chunkBounds(QuoteBuffer levels, int maxChunkBytes) {
+        int n = levels.size();
+        int[] tmp = new int[n + 2];
+        int count = 0;
+        tmp[count++] = 0;
+
+        int bytes = 0;
+        for (int i = 0; i < n; i++) {
+            int op = estimateOpBytes(levels.ticks(i), levels.volume(i));
+            if (bytes > 0 && bytes + op > maxChunkBytes) {
+                tmp[count++] = i;
+                bytes = 0;
+            }
+            bytes += op;
+        }
+        if (n > 0) tmp[count++] = n;
+
+        int[] out = new int[count];
+        System.arraycopy(tmp, 0, out, 0, count);
+        return out;
+    }
+
+    // {"side":"bid","price":<цена>,"volume":<объём>}, + запас на обёртку протокола
+    private static int estimateOpBytes(long ticks, long volume) {
+        return 40 + digits(ticks) + 1 + digits(volume);
+    }
+
+    private static int digits(long v) {
+        int d = 1;
+        while (v >= 10) {
+            v /= 10;
+            d++;
+        }
+        return d;
+    }
+}
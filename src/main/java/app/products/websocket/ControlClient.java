@@ -24,6 +24,18 @@ public class ControlClient implements WebSocket.Listener {
     // Признак, что канал реально открыт (onOpen прошёл)
     private final AtomicBoolean open = new AtomicBoolean(false);
 
+    // Хвост цепочки отправок (см. sendRawAsync)
+    private CompletableFuture<Void> sendChain = CompletableFuture.completedFuture(null);
+
+    /** Наблюдатель за исходящими командами стакана (зеркало для сверки и т.п.). */
+    public interface CommandObserver {
+        void onControl(String cmd);
+
+        void onManualQuote(QuoteBuffer levels, int from, int to, boolean replaceCurrent);
+    }
+
+    private volatile CommandObserver observer;
+
     /** Старый режим (без протокола): полная обратная совместимость. */
     public ControlClient(Consumer<String> onMessage) {
         this(null, onMessage);
@@ -138,25 +150,54 @@ public class ControlClient implements WebSocket.Listener {
     // ===== API для контроллера (с сохранением прежних имён) =====
 
     public void sendRaw(String json) {
+        sendRawAsync(json);
+    }
+
+    /**
+     * Отправка с ожиданием: java.net.http.WebSocket не допускает новый sendText,
+     * пока не завершён предыдущий, поэтому все отправки выстраиваются в одну цепочку.
+     * Без соединения future сразу завершается ошибкой — сообщение никуда не ушло.
+     */
+    public synchronized CompletableFuture<Void> sendRawAsync(String json) {
         WebSocket w = ws;
-        if (w != null) w.sendText(json, true);
+        if (w == null) return CompletableFuture.failedFuture(new IllegalStateException("Нет соединения с сервером"));
+
+        CompletableFuture<Void> next = sendChain
+                .handle((v, ex) -> null)
+                .thenCompose(v -> w.sendText(json, true))
+                .thenApply(x -> (Void) null);
+        sendChain = next;
+        return next;
+    }
+
+    /** Уведомление приходит до отправки, чтобы наблюдатель успел ждать ответ сервера. */
+    public void setCommandObserver(CommandObserver observer) {
+        this.observer = observer;
     }
 
     public void sendControl(String cmd) {
+        sendControlAsync(cmd);
+    }
+
+    public CompletableFuture<Void> sendControlAsync(String cmd) {
+        CommandObserver o = observer;
+        if (o != null) o.onControl(cmd);
         if (protocol != null) {
             // Используем протокол для построения сообщения
-            sendRaw(protocol.build("control", Map.of("cmd", cmd)));
-        } else {
-            sendRaw("{\"t\":\"Control\",\"cmd\":\"" + escape(cmd) + "\"}");
+            return sendRawAsync(protocol.build("control", Map.of("cmd", cmd)));
         }
+        return sendRawAsync("{\"t\":\"Control\",\"cmd\":\"" + escape(cmd) + "\"}");
     }
 
     public void setScenario(String scenario) {
+        setScenarioAsync(scenario);
+    }
+
+    public CompletableFuture<Void> setScenarioAsync(String scenario) {
         if (protocol != null) {
-            sendRaw(protocol.build("scenario.set", Map.of("scenario", scenario)));
-        } else {
-            sendRaw("{\"t\":\"SetScenario\",\"scenario\":\"" + escape(scenario) + "\"}");
+            return sendRawAsync(protocol.build("scenario.set", Map.of("scenario", scenario)));
         }
+        return sendRawAsync("{\"t\":\"SetScenario\",\"scenario\":\"" + escape(scenario) + "\"}");
     }
 
     public void sendGetStatus() {
@@ -177,25 +218,58 @@ public class ControlClient implements WebSocket.Listener {
 
     // Новый метод для отправки manual quote через протокол
     public void sendManualQuote(List<Map<String, Object>> ops, boolean replaceCurrent) {
+        sendManualQuoteAsync(ops, replaceCurrent);
+    }
+
+    public CompletableFuture<Void> sendManualQuoteAsync(List<Map<String, Object>> ops, boolean replaceCurrent) {
+        CommandObserver o = observer;
+        if (o != null) {
+            QuoteBuffer levels = QuoteBuffer.fromOps(ops);
+            o.onManualQuote(levels, 0, levels.size(), replaceCurrent);
+        }
+        return sendManualQuoteOps(ops, replaceCurrent);
+    }
+
+    private CompletableFuture<Void> sendManualQuoteOps(List<Map<String, Object>> ops, boolean replaceCurrent) {
         if (protocol != null) {
-            sendRaw(protocol.build("manual.quote", Map.of(
+            return sendRawAsync(protocol.build("manual.quote", Map.of(
                     "ops", ops,
                     "replaceCurrent", replaceCurrent
             )));
-        } else {
-            // Старый режим - формируем JSON вручную
-            StringBuilder sb = new StringBuilder();
-            sb.append("{\"t\":\"Control\",\"cmd\":\"manualQuote\",\"ops\":[");
-            for (int i = 0; i < ops.size(); i++) {
-                Map<String, Object> op = ops.get(i);
-                if (i > 0) sb.append(',');
-                sb.append("{\"side\":\"").append(op.get("side")).append("\",");
-                sb.append("\"price\":").append(op.get("price")).append(",");
-                sb.append("\"volume\":").append(op.get("volume")).append("}");
-            }
-            sb.append("],\"replaceCurrent\":").append(replaceCurrent).append("}");
-            sendRaw(sb.toString());
         }
+        // Старый режим - формируем JSON вручную
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"t\":\"Control\",\"cmd\":\"manualQuote\",\"ops\":[");
+        for (int i = 0; i < ops.size(); i++) {
+            Map<String, Object> op = ops.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"side\":\"").append(op.get("side")).append("\",");
+            sb.append("\"price\":").append(op.get("price")).append(",");
+            sb.append("\"volume\":").append(op.get("volume")).append("}");
+        }
+        sb.append("],\"replaceCurrent\":").append(replaceCurrent).append("}");
+        return sendRawAsync(sb.toString());
+    }
+
+    /**
+     * manualQuote по срезу [from, to) буфера уровней. В старом режиме JSON пишется прямо из
+     * примитивного буфера; с протоколом срез переводится в ops (шаблону нужны Map).
+     */
+    public CompletableFuture<Void> sendManualQuoteAsync(QuoteBuffer levels, int from, int to, boolean replaceCurrent) {
+        CommandObserver o = observer;
+        if (o != null) o.onManualQuote(levels, from, to, replaceCurrent);
+        if (protocol != null) return sendManualQuoteOps(levels.toOps(from, to), replaceCurrent);
+
+        StringBuilder sb = new StringBuilder(64 + (to - from) * 48);
+        sb.append("{\"t\":\"Control\",\"cmd\":\"manualQuote\",\"ops\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) sb.append(',');
+            sb.append("{\"side\":\"").append(levels.isAsk(i) ? "ask" : "bid").append("\",");
+            sb.append("\"price\":").append(OrderBookModel.fromTicks(levels.ticks(i))).append(",");
+            sb.append("\"volume\":").append(levels.volume(i)).append("}");
+        }
+        sb.append("],\"replaceCurrent\":").append(replaceCurrent).append("}");
+        return sendRawAsync(sb.toString());
     }
 
     private String escape(String s) { return s == null ? "" : s.replace("\"", "\\\""); }
@@ -0,0 +1,103 @@
+package app.products.websocket;
+
+import app.core.node.NodeSupervisor;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Проба живости движка для {@link NodeSupervisor}: отдельное control-соединение
+ * (без ControlHello — оно включает приём клиентов) и GetStatus на каждую проверку.
+ * Успех — любой пришедший после запроса Status. Соединение держится между пробами
+ * и переоткрывается после выхода процесса или обрыва.
+ */
+public final class EngineControlProbe implements NodeSupervisor.HealthProbe, WebSocket.Listener {
+
+    private static final String GET_STATUS = "{\"t\":\"GetStatus\"}";
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private volatile String url;
+    private volatile CompletableFuture<WebSocket> ws;
+    private volatile CompletableFuture<Void> pending;
+    private final StringBuilder partial = new StringBuilder();
+
+    /** Адрес control-сокета, например ws://localhost:8080/control?control=1. */
+    public void setUrl(String url) {
+        this.url = url;
+        reset();
+    }
+
+    @Override
+    public CompletableFuture<?> check() {
+        String u = url;
+        if (u == null) return CompletableFuture.failedFuture(new IllegalStateException("адрес пробы не задан"));
+        CompletableFuture<Void> answer = new CompletableFuture<>();
+        pending = answer;
+        connection(u)
+                .thenCompose(w -> w.sendText(GET_STATUS, true))
+                .whenComplete((w, ex) -> {
+                    if (ex != null) {
+                        reset();
+                        answer.completeExceptionally(ex);
+                    }
+                });
+        return answer;
+    }
+
+    @Override
+    public synchronized void reset() {
+        CompletableFuture<WebSocket> cur = ws;
+        ws = null;
+        if (cur != null) cur.thenAccept(WebSocket::abort);
+    }
+
+    private synchronized CompletableFuture<WebSocket> connection(String u) {
+        CompletableFuture<WebSocket> cur = ws;
+        if (cur == null || cur.isCompletedExceptionally()
+                || (cur.isDone() && (cur.join().isInputClosed() || cur.join().isOutputClosed()))) {
+            String full = u.contains("control=1") ? u : u + (u.contains("?") ? "&" : "?") + "control=1";
+            cur = http.newWebSocketBuilder().buildAsync(URI.create(full), this);
+            ws = cur;
+        }
+        return cur;
+    }
+
+    // ===== WebSocket.Listener =====
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            // ответ короткий — достаточно найти тип, без разбора JSON
+            if (partial.indexOf("\"t\":\"Status\"") >= 0) {
+                CompletableFuture<Void> p = pending;
+                if (p != null) p.complete(null);
+            }
+            partial.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        dropIfCurrent(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        dropIfCurrent(webSocket);
+        CompletableFuture<Void> p = pending;
+        if (p != null) p.completeExceptionally(error);
+    }
+
+    private synchronized void dropIfCurrent(WebSocket w) {
+        CompletableFuture<WebSocket> cur = ws;
+        if (cur != null && cur.isDone() && !cur.isCompletedExceptionally() && cur.join() == w) ws = null;
+    }
+}
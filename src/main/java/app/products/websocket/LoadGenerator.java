@@ -0,0 +1,353 @@
+package app.products.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless-генератор нагрузки на движок node-server: N пользовательских подключений
+ * (Hello + Subscribe), проверка непрерывности id, пропускная способность и задержка по каждому клиенту.
+ *
+ * Запуск: {@code --loadgen [--clients=50] [--duration=30] [--instrument=LOADGEN] [--url=ws://...]
+ * [--cmd=quoteAddBoth1,quoteDelBoth1] [--every=200] [--report=1]}.
+ * Задержка считается как (время приёма − поле t элемента котировки), т.е. от штампа движка до клиента.
+ */
+public final class LoadGenerator {
+
+    public static final String FLAG = "--loadgen";
+
+    private static final ObjectMapper M = new ObjectMapper();
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final PrintStream OUT = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+
+    private LoadGenerator() {}
+
+    public static boolean isRequested(String[] args) {
+        for (String a : args) if (FLAG.equals(a)) return true;
+        return false;
+    }
+
+    /** Точка входа headless-режима; возвращает код выхода (0 — без пропусков и обрывов). */
+    public static int run(String[] args) {
+        Map<String, String> opt = parseArgs(args);
+        Path serverDir = Paths.get(System.getProperty("user.dir"), "node-server");
+
+        int clients       = Integer.parseInt(opt.getOrDefault("clients", "10"));
+        int durationSec   = Integer.parseInt(opt.getOrDefault("duration", "30"));
+        int reportSec     = Math.max(1, Integer.parseInt(opt.getOrDefault("report", "1")));
+        long everyMs      = Long.parseLong(opt.getOrDefault("every", "200"));
+        String instrument = opt.getOrDefault("instrument", "LOADGEN");
+        String[] cmds     = opt.containsKey("cmd") ? opt.get("cmd").split(",") : new String[0];
+
+        JsonNode cfg = readSettings(serverDir);
+        String url = opt.getOrDefault("url", cfg.path("url").asText("ws://localhost:8080"));
+        String controlUrl = opt.getOrDefault("control-url",
+                url.replaceAll("/+$", "") + normalizePath(cfg.path("urlControlPath").asText("")));
+
+        SubscriberClient.Handshake hs;
+        try {
+            hs = SubscriberClient.Handshake.load(SubscriberClient.resolveProtocolFile(serverDir), instrument);
+        } catch (IOException e) {
+            OUT.println("[LOADGEN] Не удалось прочитать протокол: " + e.getMessage());
+            return 2;
+        }
+
+        OUT.printf("[LOADGEN] url=%s clients=%d duration=%ds instrument=%s cmd=%s every=%dms%n",
+                url, clients, durationSec, instrument, cmds.length == 0 ? "-" : String.join(",", cmds), everyMs);
+
+        // колбэки всех сокетов — на виртуальных потоках: тысячи подключений не требуют тысяч платформенных
+        ExecutorService vexec = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient http = HttpClient.newBuilder().executor(vexec).build();
+
+        List<ClientStats> stats = new ArrayList<>(clients);
+        List<SubscriberClient> conns = new ArrayList<>(clients);
+        List<CompletableFuture<Void>> connecting = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            ClientStats s = new ClientStats(i);
+            SubscriberClient c = new SubscriberClient(hs, s);
+            stats.add(s);
+            conns.add(c);
+            connecting.add(c.connect(http, url).whenComplete((v, ex) -> {
+                if (ex != null) s.connectError = String.valueOf(ex.getMessage());
+            }));
+        }
+        try {
+            CompletableFuture.allOf(connecting.toArray(CompletableFuture[]::new)).get(15, TimeUnit.SECONDS);
+        } catch (Exception ignore) {
+            // ошибки по отдельным клиентам уже записаны в connectError
+        }
+
+        long connected = stats.stream().filter(s -> s.connectError == null).count();
+        OUT.printf("[LOADGEN] connected %d/%d%n", connected, clients);
+
+        // ===== Драйвер команд через control-сокет =====
+        ControlClient control = null;
+        ScheduledExecutorService driver = null;
+        AtomicLong cmdsSent = new AtomicLong();
+        if (cmds.length > 0) {
+            control = new ControlClient(msg -> {});
+            try {
+                control.connect(controlUrl).get(5, TimeUnit.SECONDS);
+                final ControlClient cc = control;
+                driver = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "loadgen-driver");
+                    t.setDaemon(true);
+                    return t;
+                });
+                driver.scheduleAtFixedRate(() -> {
+                    long n = cmdsSent.getAndIncrement();
+                    cc.sendControl(cmds[(int) (n % cmds.length)].trim());
+                }, everyMs, Math.max(1, everyMs), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                OUT.println("[LOADGEN] control не подключился (" + controlUrl + "): " + e.getMessage());
+            }
+        }
+
+        // ===== Периодический отчёт =====
+        long startNanos = System.nanoTime();
+        long prevMsgs = 0, prevItems = 0;
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSec);
+        while (System.nanoTime() < endNanos) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(reportSec));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long msgs = 0, items = 0, gaps = 0, reorders = 0;
+            int open = 0;
+            for (int i = 0; i < clients; i++) {
+                ClientStats s = stats.get(i);
+                msgs += s.messages;
+                items += s.items;
+                gaps += s.gaps;
+                reorders += s.reorders;
+                if (conns.get(i).isOpen()) open++;
+            }
+            OUT.printf("[LOADGEN] t=%ds open=%d/%d msg/s=%.0f items/s=%.0f gaps=%d reorder=%d cmds=%d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), open, clients,
+                    (msgs - prevMsgs) / (double) reportSec, (items - prevItems) / (double) reportSec,
+                    gaps, reorders, cmdsSent.get());
+            prevMsgs = msgs;
+            prevItems = items;
+        }
+        double elapsedSec = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+
+        // ===== Остановка =====
+        if (driver != null) driver.shutdownNow();
+        if (control != null) control.close().join();
+        CompletableFuture.allOf(conns.stream().map(SubscriberClient::close).toArray(CompletableFuture[]::new)).join();
+        vexec.shutdown();
+
+        return printSummary(stats, elapsedSec);
+    }
+
+    private static int printSummary(List<ClientStats> stats, double elapsedSec) {
+        LatencyHistogram total = new LatencyHistogram();
+        long gaps = 0, reorders = 0, failed = 0;
+
+        OUT.println("[LOADGEN] ---- per client ----");
+        OUT.println("[LOADGEN]   #    msgs    msg/s    items  gaps  reord  p50ms  p99ms  maxms  close");
+        for (ClientStats s : stats) {
+            total.merge(s.latency);
+            gaps += s.gaps;
+            reorders += s.reorders;
+            if (s.connectError != null) {
+                failed++;
+                OUT.printf("[LOADGEN] %3d  connect failed: %s%n", s.index, s.connectError);
+                continue;
+            }
+            OUT.printf("[LOADGEN] %3d %7d %8.1f %8d %5d %6d %6d %6d %6d  %s%n",
+                    s.index, s.messages, s.messages / elapsedSec, s.items, s.gaps, s.reorders,
+                    s.latency.percentile(0.50), s.latency.percentile(0.99), s.latency.max(),
+                    s.closeInfo == null ? "-" : s.closeInfo);
+        }
+        OUT.printf("[LOADGEN] total: clients=%d failed=%d gaps=%d reorder=%d latency p50=%dms p99=%dms max=%dms (samples=%d)%n",
+                stats.size(), failed, gaps, reorders,
+                total.percentile(0.50), total.percentile(0.99), total.max(), total.count());
+
+        return (failed == 0 && gaps == 0 && reorders == 0) ? 0 : 1;
+    }
+
+    // ===== Статистика одного клиента (пишет только listener своего сокета) =====
+    private static final class ClientStats implements SubscriberClient.Sink {
+        final int index;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        volatile long messages;
+        volatile long items;
+        volatile long gaps;
+        volatile long reorders;
+        volatile String connectError;
+        volatile String closeInfo;
+
+        private long lastId = -1;
+
+        ClientStats(int index) { this.index = index; }
+
+        @Override public void onMessage(String text, long receivedAtMs) {
+            messages++;
+            try (JsonParser p = JSON.createParser(text)) {
+                if (p.nextToken() != JsonToken.START_OBJECT) return;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("id".equals(field)) {
+                        checkSequence(p.getValueAsString());
+                    } else if ("p".equals(field) && v == JsonToken.START_ARRAY) {
+                        readItems(p, receivedAtMs);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } catch (IOException ignore) {
+                // не-JSON сообщение просто считаем
+            }
+        }
+
+        @Override public void onClosed(int code, String reason) {
+            closeInfo = code + (reason == null || reason.isBlank() ? "" : " " + reason);
+        }
+
+        // id у движка — счётчик на сокет (nextId), ожидаем строго +1; служебные id (Date.now) пропускаем
+        private void checkSequence(String id) {
+            if (id == null) return;
+            long n;
+            try {
+                n = Long.parseLong(id);
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (n > 1_000_000_000L) return;
+            if (lastId >= 0) {
+                if (n > lastId + 1) gaps += n - lastId - 1;
+                else if (n <= lastId) reorders++;
+            }
+            if (n > lastId) lastId = n;
+        }
+
+        private void readItems(JsonParser p, long receivedAtMs) throws IOException {
+            JsonToken tok;
+            while ((tok = p.nextToken()) != JsonToken.END_ARRAY && tok != null) {
+                if (tok != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                    continue;
+                }
+                items++;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("t".equals(field) && v.isNumeric()) {
+                        long lat = receivedAtMs - p.getLongValue();
+                        // штамп из шаблона может быть произвольным — берём только правдоподобные значения
+                        if (lat >= 0 && lat < 3_600_000L) latency.record(lat);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    // ===== Гистограмма задержек: до 16 мс с шагом 1 мс, дальше 4 бакета на удвоение =====
+    // 54 слота на клиента вместо мс-шкалы: тысячи клиентов не тратят сотни МБ на бакеты.
+    // Ширина бакета выше 16 мс — до 25% значения; перцентиль — верхняя граница бакета (не больше max).
+    private static final class LatencyHistogram {
+        private static final int LIMIT_MS = 10_000;
+        private static final int LINEAR = 16;
+        private static final int SUB = 4;
+        private static final int OVERFLOW = index(LIMIT_MS) + 1;
+
+        private final long[] buckets = new long[OVERFLOW + 1];
+        private long count;
+        private long max;
+
+        void record(long ms) {
+            buckets[ms > LIMIT_MS ? OVERFLOW : index(ms)]++;
+            count++;
+            if (ms > max) max = ms;
+        }
+
+        void merge(LatencyHistogram o) {
+            for (int i = 0; i < buckets.length; i++) buckets[i] += o.buckets[i];
+            count += o.count;
+            max = Math.max(max, o.max);
+        }
+
+        long percentile(double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long acc = 0;
+            for (int i = 0; i < OVERFLOW; i++) {
+                acc += buckets[i];
+                if (acc >= rank) return Math.min(upper(i), max);
+            }
+            return max;
+        }
+
+        long max() { return max; }
+
+        long count() { return count; }
+
+        private static int index(long ms) {
+            if (ms < LINEAR) return (int) ms;
+            int e = 63 - Long.numberOfLeadingZeros(ms);       // ms в [2^e, 2^(e+1)), e >= 4
+            int sub = (int) (ms >> (e - 2)) & (SUB - 1);
+            return LINEAR + (e - 4) * SUB + sub;
+        }
+
+        // наибольшее значение, попадающее в бакет i
+        private static long upper(int i) {
+            if (i < LINEAR) return i;
+            int e = (i - LINEAR) / SUB + 4;
+            int sub = (i - LINEAR) % SUB;
+            return ((long) (SUB + sub + 1) << (e - 2)) - 1;
+        }
+    }
+
+    // ===== Вспомогательное =====
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || FLAG.equals(a)) continue;
+            int eq = a.indexOf('=');
+            if (eq > 2) out.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return out;
+    }
+
+    private static JsonNode readSettings(Path serverDir) {
+        try {
+            return M.readTree(Files.readString(serverDir.resolve("setting").resolve("setting.json")));
+        } catch (Exception e) {
+            return M.createObjectNode();
+        }
+    }
+
+    private static String normalizePath(String p) {
+        if (p == null || p.isBlank()) return "";
+        p = p.trim();
+        return p.startsWith("/") ? p : "/" + p;
+    }
+}
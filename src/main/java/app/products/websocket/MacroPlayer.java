@@ -0,0 +1,172 @@
+package app.products.websocket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проигрывание макроса (см. {@link MacroRecorder}) через ControlClient.
+ * Тайминг — на ScheduledExecutorService, а не на FX Timeline: UI-поток не участвует.
+ *
+ * speed: 1.0 — исходный тайминг, N — ускорение в N раз, {@code <= 0} — «как можно быстрее».
+ */
+public final class MacroPlayer {
+
+    /**
+     * Итог проигрывания.
+     * drift — насколько фактическая отправка шага опоздала относительно плана.
+     * stepsSent — шаги, отправка которых завершилась успешно (future ControlClient);
+     * stepsFailed — завершились ошибкой, в т.ч. без соединения. Отчёт — после завершения всех отправок.
+     */
+    public record Report(int stepsSent, int stepsFailed, int stepsTotal, long elapsedNanos,
+                         double ratePerSec, double avgDriftMs, double maxDriftMs,
+                         boolean cancelled) {
+
+        public String describe() {
+            return String.format(
+                    "%d/%d шагов за %.1f мс, %.1f шаг/с, drift avg=%.2f мс max=%.2f мс%s%s",
+                    stepsSent, stepsTotal, elapsedNanos / 1_000_000.0, ratePerSec,
+                    avgDriftMs, maxDriftMs,
+                    stepsFailed > 0 ? ", не отправлено " + stepsFailed : "",
+                    cancelled ? " (прервано)" : ""
+            );
+        }
+    }
+
+    private final ControlClient client;
+    private final ScheduledExecutorService exec;
+
+    private Run current;
+
+    public MacroPlayer(ControlClient client) {
+        this.client = client;
+        this.exec = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-macro-player");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized boolean isPlaying() {
+        return current != null && !current.done.isDone();
+    }
+
+    public synchronized CompletableFuture<Report> play(List<MacroRecorder.Step> steps, double speed) {
+        if (isPlaying()) throw new IllegalStateException("Макрос уже проигрывается");
+
+        // ops для manualQuote разбираем заранее, чтобы не тратить время в момент отправки
+        final List<List<Map<String, Object>>> ops = new ArrayList<>(steps.size());
+        for (MacroRecorder.Step s : steps) {
+            try {
+                ops.add(s.kind() == MacroRecorder.Kind.MANUAL_QUOTE ? MacroRecorder.parseOps(s.arg()) : null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final Run run = new Run(steps.size());
+        current = run;
+
+        if (run.total == 0) {
+            run.finish(false);
+            return run.done;
+        }
+
+        final boolean asap = speed <= 0;
+        for (int i = 0; i < run.total; i++) {
+            final MacroRecorder.Step step = steps.get(i);
+            final List<Map<String, Object>> stepOps = ops.get(i);
+            final long plannedNanos = asap ? 0 : (long) (step.offsetMicros() * 1_000L / speed);
+
+            Runnable task = () -> {
+                if (run.done.isDone()) return;
+                run.onStep(plannedNanos);
+                CompletableFuture<Void> send;
+                try {
+                    send = apply(step, stepOps);
+                } catch (RuntimeException e) {
+                    send = CompletableFuture.failedFuture(e);
+                }
+                // итог отправки учитываем на потоке плеера, как и остальные счётчики
+                send.whenCompleteAsync((v, ex) -> run.onSendDone(ex == null), exec);
+            };
+
+            // однопоточный executor выполняет задачи с одинаковой задержкой в порядке постановки
+            run.tasks.add(exec.schedule(task, plannedNanos, TimeUnit.NANOSECONDS));
+        }
+        return run.done;
+    }
+
+    /** Прервать текущее проигрывание; future завершится отчётом с cancelled=true. */
+    public void cancel() {
+        final Run run;
+        synchronized (this) {
+            run = current;
+            if (run == null || run.done.isDone()) return;
+            for (ScheduledFuture<?> t : run.tasks) t.cancel(false);
+        }
+        // финальный отчёт собираем на потоке плеера, чтобы не гоняться за счётчиками шагов
+        exec.execute(() -> run.finish(true));
+    }
+
+    public void shutdown() {
+        cancel();
+        // не shutdownNow(): финальный отчёт из cancel() должен успеть отработать
+        exec.shutdown();
+    }
+
+    private CompletableFuture<Void> apply(MacroRecorder.Step step, List<Map<String, Object>> ops) {
+        return switch (step.kind()) {
+            case CMD          -> client.sendControlAsync(step.arg());
+            case SCENARIO     -> client.setScenarioAsync(step.arg());
+            case MANUAL_QUOTE -> client.sendManualQuoteAsync(ops, step.replaceCurrent());
+        };
+    }
+
+    // ===== состояние одного проигрывания (поля трогает только поток плеера) =====
+    private static final class Run {
+        final int total;
+        final long startNanos = System.nanoTime();
+        final List<ScheduledFuture<?>> tasks;
+        final CompletableFuture<Report> done = new CompletableFuture<>();
+
+        int processed;
+        int completed;
+        int failed;
+        long driftSumNanos;
+        long driftMaxNanos;
+
+        Run(int total) {
+            this.total = total;
+            this.tasks = new ArrayList<>(total);
+        }
+
+        void onStep(long plannedNanos) {
+            long drift = Math.max(0, (System.nanoTime() - startNanos) - plannedNanos);
+            driftSumNanos += drift;
+            if (drift > driftMaxNanos) driftMaxNanos = drift;
+            processed++;
+        }
+
+        void onSendDone(boolean ok) {
+            completed++;
+            if (!ok) failed++;
+            if (completed == total) finish(false);
+        }
+
+        void finish(boolean cancelled) {
+            if (done.isDone()) return;
+            long elapsed = System.nanoTime() - startNanos;
+            int sent = completed - failed;
+            double rate = elapsed > 0 ? sent / (elapsed / 1_000_000_000.0) : 0;
+            double avgDrift = processed > 0 ? (driftSumNanos / (double) processed) / 1_000_000.0 : 0;
+            done.complete(new Report(sent, failed, total, elapsed, rate, avgDrift, driftMaxNanos / 1_000_000.0, cancelled));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package app.products.websocket;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись макроса команд пульта: sendCmd / setScenario / sendManualQuote с отметками времени.
+ *
+ * Формат файла (.wsm) — одна строка на шаг, поля через TAB:
+ *   {@code <offsetMicros>  C  <cmd>}
+ *   {@code <offsetMicros>  S  <scenario>}
+ *   {@code <offsetMicros>  Q  <0|1 replaceCurrent>  <ops JSON>}
+ */
+public final class MacroRecorder {
+
+    private static final ObjectMapper M = new ObjectMapper();
+    private static final String HEADER = "# ws-macro v1";
+
+    public enum Kind {
+        CMD('C'), SCENARIO('S'), MANUAL_QUOTE('Q');
+
+        final char code;
+
+        Kind(char code) { this.code = code; }
+
+        static Kind of(char c) {
+            for (Kind k : values()) if (k.code == c) return k;
+            throw new IllegalArgumentException("Unknown macro step kind: " + c);
+        }
+    }
+
+    /** Один шаг макроса. Для MANUAL_QUOTE {@code arg} — JSON массива ops. */
+    public record Step(long offsetMicros, Kind kind, String arg, boolean replaceCurrent) {}
+
+    private final List<Step> steps = new ArrayList<>();
+    private volatile boolean recording = false;
+    private long startNanos;
+
+    public synchronized void start() {
+        steps.clear();
+        startNanos = System.nanoTime();
+        recording = true;
+    }
+
+    /** Останавливает запись и возвращает записанные шаги. */
+    public synchronized List<Step> stop() {
+        recording = false;
+        return List.copyOf(steps);
+    }
+
+    public boolean isRecording() { return recording; }
+
+    public synchronized int size() { return steps.size(); }
+
+    public void recordCommand(String cmd) {
+        add(Kind.CMD, cmd, false);
+    }
+
+    public void recordScenario(String scenario) {
+        add(Kind.SCENARIO, scenario, false);
+    }
+
+    public void recordManualQuote(List<Map<String, Object>> ops, boolean replaceCurrent) {
+        if (!recording) return;
+        try {
+            add(Kind.MANUAL_QUOTE, M.writeValueAsString(ops), replaceCurrent);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось сериализовать ops: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void add(Kind kind, String arg, boolean replaceCurrent) {
+        if (!recording || arg == null) return;
+        long offset = (System.nanoTime() - startNanos) / 1_000L;
+        steps.add(new Step(offset, kind, arg, replaceCurrent));
+    }
+
+    // ===== Файл =====
+
+    public static void write(Path file, List<Step> steps) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(HEADER);
+            w.newLine();
+            for (Step s : steps) {
+                w.write(Long.toString(s.offsetMicros()));
+                w.write('\t');
+                w.write(s.kind().code);
+                w.write('\t');
+                if (s.kind() == Kind.MANUAL_QUOTE) {
+                    w.write(s.replaceCurrent() ? '1' : '0');
+                    w.write('\t');
+                }
+                // команды/сценарии/JSON не содержат переводов строк, но подстрахуемся
+                w.write(s.arg().replace('\n', ' ').replace('\r', ' '));
+                w.newLine();
+            }
+        }
+    }
+
+    public static List<Step> read(Path file) throws IOException {
+        List<Step> out = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = r.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\t", 4);
+                if (parts.length < 3 || parts[1].length() != 1) {
+                    throw new IOException("Битая строка макроса #" + lineNo + ": " + line);
+                }
+                long offset = Long.parseLong(parts[0].trim());
+                Kind kind = Kind.of(parts[1].charAt(0));
+                if (kind == Kind.MANUAL_QUOTE) {
+                    if (parts.length < 4) throw new IOException("Нет ops в строке макроса #" + lineNo);
+                    out.add(new Step(offset, kind, parts[3], "1".equals(parts[2])));
+                } else {
+                    String arg = parts.length == 4 ? parts[2] + "\t" + parts[3] : parts[2];
+                    out.add(new Step(offset, kind, arg, false));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Разбор ops для MANUAL_QUOTE (делается заранее, до проигрывания). */
+    static List<Map<String, Object>> parseOps(String json) throws IOException {
+        return M.readValue(json, new TypeReference<List<Map<String, Object>>>() {});
+    }
+}
@@ -0,0 +1,139 @@
+package app.products.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Разбор потока tap-подключения в {@link OrderBookModel}.
+ *
+ * Котировка — сообщение с массивом p[] элементов {i,p,v,t} (ask — отрицательная цена);
+ * ответ на Subscribe — p.ob[0].bid/ask. Разбор потоковый (JsonParser) в переиспользуемый
+ * {@link QuoteBuffer}, модель обновляется одним вызовом на сообщение.
+ */
+public final class OrderBookFeed implements SubscriberClient.Sink {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final OrderBookModel model;
+    private final boolean zeroFlash;
+    private final QuoteBuffer buf = new QuoteBuffer();
+
+    private volatile OrderBookMirror mirror;
+    private volatile BiConsumer<Integer, String> onClosed;
+    private volatile long messages;
+
+    /**
+     * @param zeroFlash значение из setting.json: при false движок не шлёт нули,
+     *                  и каждая котировка трактуется как полный снимок стакана
+     */
+    public OrderBookFeed(OrderBookModel model, boolean zeroFlash) {
+        this.model = model;
+        this.zeroFlash = zeroFlash;
+    }
+
+    public OrderBookModel model() { return model; }
+
+    public long messages() { return messages; }
+
+    /** Сверка с ожидаемым стаканом: получает изменения каждого сообщения (может быть null). */
+    public void setMirror(OrderBookMirror mirror) { this.mirror = mirror; }
+
+    public void setOnClosed(BiConsumer<Integer, String> onClosed) { this.onClosed = onClosed; }
+
+    @Override public void onMessage(String text, long receivedAtMs) {
+        messages++;
+        buf.clear();
+        try (JsonParser p = JSON.createParser(text)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken v = p.nextToken();
+                if (!"p".equals(field)) {
+                    p.skipChildren();
+                } else if (v == JsonToken.START_ARRAY) {
+                    readQuoteItems(p);
+                    OrderBookMirror m = mirror;
+                    model.applyQuote(buf, !zeroFlash, m);
+                    if (m != null) m.onQuoteApplied();
+                } else if (v == JsonToken.START_OBJECT) {
+                    if (readSubscribeBook(p)) {
+                        model.applySnapshot(buf);
+                        OrderBookMirror m = mirror;
+                        if (m != null) m.onSnapshot();
+                    }
+                }
+            }
+        } catch (IOException ignore) {
+            // битое сообщение пропускаем: следующий снимок всё равно восстановит стакан
+        }
+    }
+
+    @Override public void onClosed(int code, String reason) {
+        BiConsumer<Integer, String> cb = onClosed;
+        if (cb != null) cb.accept(code, reason);
+    }
+
+    private void readQuoteItems(JsonParser p) throws IOException {
+        JsonToken tok;
+        while ((tok = p.nextToken()) != JsonToken.END_ARRAY && tok != null) {
+            if (tok == JsonToken.START_OBJECT) readLevel(p, null);
+            else p.skipChildren();
+        }
+    }
+
+    // p: { ..., ob: [ { i, bid:[{p,v}], ask:[{p,v}] } ] } — берём только первый инструмент
+    private boolean readSubscribeBook(JsonParser p) throws IOException {
+        boolean found = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken v = p.nextToken();
+            if (!"ob".equals(field) || v != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            JsonToken tok;
+            while ((tok = p.nextToken()) != JsonToken.END_ARRAY && tok != null) {
+                if (tok != JsonToken.START_OBJECT || found) {
+                    p.skipChildren();
+                    continue;
+                }
+                found = true;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String side = p.currentName();
+                    JsonToken sv = p.nextToken();
+                    boolean isBid = "bid".equals(side), isAsk = "ask".equals(side);
+                    if ((!isBid && !isAsk) || sv != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    JsonToken lt;
+                    while ((lt = p.nextToken()) != JsonToken.END_ARRAY && lt != null) {
+                        if (lt == JsonToken.START_OBJECT) readLevel(p, isAsk);
+                        else p.skipChildren();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Один уровень {p, v, ...}; forceAsk == null — сторона по знаку цены. */
+    private void readLevel(JsonParser p, Boolean forceAsk) throws IOException {
+        double price = Double.NaN;
+        double vol = Double.NaN;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            JsonToken v = p.nextToken();
+            if ("p".equals(f) && (v.isNumeric() || v == JsonToken.VALUE_STRING)) price = p.getValueAsDouble(Double.NaN);
+            else if ("v".equals(f) && (v.isNumeric() || v == JsonToken.VALUE_STRING)) vol = p.getValueAsDouble(Double.NaN);
+            else p.skipChildren();
+        }
+        if (Double.isNaN(price) || Double.isNaN(vol)) return;
+        boolean isAsk = forceAsk != null ? forceAsk : price < 0;
+        buf.add(isAsk, OrderBookModel.toTicks(price), Math.round(vol));
+    }
+}
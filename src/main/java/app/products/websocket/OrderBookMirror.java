@@ -0,0 +1,544 @@
+package app.products.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Сверка стакана tap-подключения с ожидаемым состоянием.
+ *
+ * Ожидаемый стакан считается локально из тех же команд, что уходят на сервер
+ * ({@link ControlClient.CommandObserver}), по правилам engine.js (addSideLevels, aggregateOnLevel,
+ * sendManualQuoteToAll и т.д.). Каждая команда стакана даёт на сервере ровно одно сообщение котировки,
+ * поэтому команды ставятся в очередь и применяются к ожидаемому стакану в момент прихода
+ * соответствующего сообщения — сравниваются состояния после одного и того же шага.
+ *
+ * Объёмы новых уровней и агрегаций движок берёт случайными (jitterLike/jitter10p), поэтому
+ * в ожидаемом стакане они «любые» ({@link #ANY}) до первого совпавшего снимка, после чего
+ * запоминаются фактические. Сравниваются только уровни, изменившиеся в этом шаге в любом из двух
+ * стаканов, и счётчик расхождений ведётся инкрементально — O(изменённых уровней) на сообщение.
+ */
+public final class OrderBookMirror implements ControlClient.CommandObserver, OrderBookModel.ChangeSink {
+
+    /** Значение, которое заранее неизвестно (случайный объём движка). */
+    static final long ANY = -1;
+
+    private static final int SLOTS = OrderBookModel.AGG_SLOTS;
+
+    private final OrderBookModel actual;
+    private final ESide expBid = new ESide();
+    private final ESide expAsk = new ESide();
+
+    // базовые уровни из Subscribe: движок восстанавливает их, когда сторона пуста (addSideLevels)
+    private long[] baseBidTicks = new long[0], baseBidVol = new long[0];
+    private long[] baseAskTicks = new long[0], baseAskVol = new long[0];
+
+    private final ArrayDeque<Op> pending = new ArrayDeque<>();
+    private final LongList touched = new LongList();
+    private final LongSet mismatched = new LongSet();
+
+    private long checkedSteps;
+    private long mismatchSteps;
+    private long resyncs;
+    private long version;
+    private boolean synced;
+
+    public OrderBookMirror(OrderBookModel actual) {
+        this.actual = actual;
+    }
+
+    // ===== Команды (поток отправителя) =====
+
+    private record Op(String cmd, QuoteBuffer levels, boolean replaceCurrent) {}
+
+    @Override public synchronized void onControl(String cmd) {
+        if (cmd == null || !producesQuote(cmd)) return;
+        pending.addLast(new Op(cmd, null, false));
+    }
+
+    @Override public synchronized void onManualQuote(QuoteBuffer levels, int from, int to, boolean replaceCurrent) {
+        QuoteBuffer copy = new QuoteBuffer(to - from);
+        for (int i = from; i < to; i++) copy.add(levels.isAsk(i), levels.ticks(i), levels.volume(i));
+        pending.addLast(new Op("manualQuote", copy, replaceCurrent));
+    }
+
+    // команды, после которых движок рассылает котировку (sendTransactionalToAll / quoteUpdate)
+    private static boolean producesQuote(String cmd) {
+        return cmd.startsWith("quote");
+    }
+
+    // ===== Сообщения tap-подключения (поток сокета) =====
+
+    @Override public synchronized void levelChanged(boolean isAsk, long ticks) {
+        touched.add(key(isAsk, ticks));
+    }
+
+    /** Ответ на Subscribe применён к actual: это новая точка отсчёта. */
+    public synchronized void onSnapshot() {
+        baseBidTicks = new long[actual.size(false)];
+        baseBidVol = new long[baseBidTicks.length];
+        baseAskTicks = new long[actual.size(true)];
+        baseAskVol = new long[baseAskTicks.length];
+        int[] n = {0};
+        actual.forEachLevel(false, (t, b, c, s, slots, off) -> {
+            baseBidTicks[n[0]] = t;
+            baseBidVol[n[0]++] = b;
+        });
+        n[0] = 0;
+        actual.forEachLevel(true, (t, b, c, s, slots, off) -> {
+            baseAskTicks[n[0]] = t;
+            baseAskVol[n[0]++] = b;
+        });
+        pending.clear();
+        resyncFromActual();
+        synced = true;
+    }
+
+    /** Котировка применена к actual (изменения уже пришли в {@link #levelChanged}). */
+    public synchronized void onQuoteApplied() {
+        if (!synced) {
+            touched.clear();
+            return;
+        }
+        Op op = pending.pollFirst();
+        if (op == null || "quoteUpdate".equals(op.cmd())) {
+            // сообщение не от наших команд (другой пульт, шаблон quoteUpdate) — предсказать нельзя
+            resyncs++;
+            resyncFromActual();
+            return;
+        }
+        apply(op);
+
+        boolean before = mismatched.size() > 0;
+        for (int i = 0; i < touched.size; i++) evaluate(touched.data[i]);
+        touched.clear();
+
+        checkedSteps++;
+        if (mismatched.size() > 0) mismatchSteps++;
+        if (before != (mismatched.size() > 0) || mismatched.size() > 0) version++;
+    }
+
+    public synchronized void reset() {
+        pending.clear();
+        touched.clear();
+        mismatched.clear();
+        expBid.size = 0;
+        expAsk.size = 0;
+        synced = false;
+        version++;
+    }
+
+    // ===== Состояние для UI =====
+
+    public synchronized int mismatchCount() { return mismatched.size(); }
+
+    public synchronized boolean isMismatch(boolean isAsk, long ticks) { return mismatched.contains(key(isAsk, ticks)); }
+
+    public synchronized long checkedSteps() { return checkedSteps; }
+
+    public synchronized long mismatchSteps() { return mismatchSteps; }
+
+    public synchronized long resyncs() { return resyncs; }
+
+    public synchronized int pendingCount() { return pending.size(); }
+
+    /** Меняется при изменении набора расхождений; отрисовка по нему решает, перерисовывать ли отметки. */
+    public synchronized long version() { return version; }
+
+    // ===== Сравнение =====
+
+    private void evaluate(long key) {
+        boolean isAsk = (key & 1) != 0;
+        long t = key >>> 1;
+        ESide e = isAsk ? expAsk : expBid;
+        int i = e.find(t);
+        long aBase = actual.baseAt(isAsk, t);
+
+        boolean ok;
+        if (i < 0 || aBase < 0) {
+            ok = (i < 0) && (aBase < 0);
+        } else {
+            int aCnt = actual.aggCountAt(isAsk, t);
+            ok = (e.base[i] == ANY || e.base[i] == aBase) && e.aggCount[i] == aCnt;
+            if (ok && e.aggSum[i] != ANY) ok = e.aggSum[i] == aggSumOf(isAsk, t, aCnt);
+            if (ok) learn(e, i, isAsk, t, aBase, aCnt);
+        }
+
+        if (ok) mismatched.remove(key);
+        else mismatched.add(key);
+    }
+
+    private long aggSumOf(boolean isAsk, long t, int cnt) {
+        long sum = 0;
+        for (int j = 0; j < Math.min(cnt, SLOTS); j++) sum += actual.aggAt(isAsk, t, j);
+        return cnt > SLOTS ? ANY : sum;
+    }
+
+    // случайные значения движка совпали по структуре — дальше сверяем уже с фактическими
+    private void learn(ESide e, int i, boolean isAsk, long t, long aBase, int aCnt) {
+        e.base[i] = aBase;
+        int known = Math.min(aCnt, SLOTS);
+        for (int j = 0; j < known; j++) e.agg[i * SLOTS + j] = actual.aggAt(isAsk, t, j);
+        e.aggSum[i] = aCnt > SLOTS ? ANY : aggSumOf(isAsk, t, aCnt);
+    }
+
+    private void resyncFromActual() {
+        touched.clear();
+        mismatched.clear();
+        copyActual(false, expBid);
+        copyActual(true, expAsk);
+        version++;
+    }
+
+    private void copyActual(boolean isAsk, ESide e) {
+        e.size = 0;
+        e.ensure(actual.size(isAsk));
+        actual.forEachLevel(isAsk, (t, b, c, s, slots, off) -> {
+            int i = e.size++;
+            e.ticks[i] = t;
+            e.base[i] = b;
+            e.aggCount[i] = c;
+            e.aggSum[i] = c > SLOTS ? ANY : s;
+            System.arraycopy(slots, off, e.agg, i * SLOTS, SLOTS);
+        });
+    }
+
+    // ===== Модель команд движка (engine.js) =====
+
+    private void apply(Op op) {
+        if (op.levels() != null) {
+            applyManual(op.levels(), op.replaceCurrent());
+            return;
+        }
+        switch (op.cmd()) {
+            case "quoteClearBid" -> clearSide(false);
+            case "quoteClearAsk" -> clearSide(true);
+            case "quoteClearAll" -> { clearSide(false); clearSide(true); }
+            case "quoteAddBid"   -> addSideLevels(false, 3);
+            case "quoteAddAsk"   -> addSideLevels(true, 3);
+            case "quoteAddBoth"  -> { addSideLevels(false, 3); addSideLevels(true, 3); }
+
+            case "quoteAddBidTop1"    -> addOneTop(false);
+            case "quoteAddBidBottom1" -> addOneBottom(false);
+            case "quoteAddAskTop1"    -> addOneTop(true);
+            case "quoteAddAskBottom1" -> addOneBottom(true);
+            case "quoteDelBidTop1"    -> removeEdge(false, true);
+            case "quoteDelBidBottom1" -> removeEdge(false, false);
+            case "quoteDelAskTop1"    -> removeEdge(true, true);
+            case "quoteDelAskBottom1" -> removeEdge(true, false);
+            case "quoteAddBothTop1"    -> { addOneTop(false); addOneTop(true); }
+            case "quoteAddBothBottom1" -> { addOneBottom(false); addOneBottom(true); }
+            case "quoteDelBothTop1"    -> { removeEdge(false, true); removeEdge(true, true); }
+            case "quoteDelBothBottom1" -> { removeEdge(false, false); removeEdge(true, false); }
+
+            case "quoteAggBidUp"    -> aggOnLevel(false, true);
+            case "quoteAggBidDown"  -> aggOnLevel(false, false);
+            case "quoteAggAskUp"    -> aggOnLevel(true, true);
+            case "quoteAggAskDown"  -> aggOnLevel(true, false);
+            case "quoteAggBothUp"   -> { aggOnLevel(false, true); aggOnLevel(true, true); }
+            case "quoteAggBothDown" -> { aggOnLevel(false, false); aggOnLevel(true, false); }
+            case "quoteAggBidAll"   -> aggAll(false);
+            case "quoteAggAskAll"   -> aggAll(true);
+            case "quoteAggBothAll"  -> { aggAll(false); aggAll(true); }
+
+            case "quoteAggClearBidTop" -> aggPop(false, true);
+            case "quoteAggClearBidBot" -> aggPop(false, false);
+            case "quoteAggClearAskTop" -> aggPop(true, true);
+            case "quoteAggClearAskBot" -> aggPop(true, false);
+            // clearAggBoth в engine.js обращается к неопределённой переменной и падает внутри мутатора:
+            // стакан не меняется, но снимок всё равно рассылается
+            case "quoteAggClearBothTop", "quoteAggClearBothBot" -> {}
+            case "quoteAggClearBidAll"  -> aggClearAll(false);
+            case "quoteAggClearAskAll"  -> aggClearAll(true);
+            case "quoteAggClearBothAll" -> { aggClearAll(false); aggClearAll(true); }
+            default -> {}
+        }
+    }
+
+    private void clearSide(boolean isAsk) {
+        ESide e = isAsk ? expAsk : expBid;
+        for (int i = 0; i < e.size; i++) touch(isAsk, e.ticks[i]);
+        e.size = 0;
+    }
+
+    private void addSideLevels(boolean isAsk, int count) {
+        ESide e = isAsk ? expAsk : expBid;
+        if (e.size == 0) {
+            long[] bt = isAsk ? baseAskTicks : baseBidTicks;
+            long[] bv = isAsk ? baseAskVol : baseBidVol;
+            for (int k = 0; k < bt.length; k++) set(isAsk, bt[k], bv[k]);
+            return;
+        }
+        // nextBidPrices / nextAskPrices: выше максимальной цены стороны
+        long cur = e.ticks[e.size - 1];
+        for (int k = 0; k < count; k++) set(isAsk, ++cur, ANY);
+    }
+
+    private void addOneTop(boolean isAsk) {
+        ESide e = isAsk ? expAsk : expBid;
+        if (e.size == 0) { addSideLevels(isAsk, 1); return; }
+        if (!isAsk) {
+            set(false, e.ticks[e.size - 1] + 1, ANY);
+        } else {
+            // prevAskPrices: ниже минимальной, цена должна остаться > 0
+            long p = e.ticks[0] - 1;
+            if (p > 0) set(true, p, ANY);
+        }
+    }
+
+    private void addOneBottom(boolean isAsk) {
+        ESide e = isAsk ? expAsk : expBid;
+        if (e.size == 0) { addSideLevels(isAsk, 1); return; }
+        if (!isAsk) {
+            long p = e.ticks[0] - 1;
+            if (p > 0) set(false, p, ANY);
+        } else {
+            set(true, e.ticks[e.size - 1] + 1, ANY);
+        }
+    }
+
+    // top: лучший уровень (bid — максимум, ask — минимум), bottom — наоборот
+    private int edgeIndex(ESide e, boolean isAsk, boolean top) {
+        if (e.size == 0) return -1;
+        boolean max = isAsk != top;
+        return max ? e.size - 1 : 0;
+    }
+
+    private void removeEdge(boolean isAsk, boolean top) {
+        ESide e = isAsk ? expAsk : expBid;
+        int i = edgeIndex(e, isAsk, top);
+        if (i < 0) return;
+        touch(isAsk, e.ticks[i]);
+        e.remove(i);
+    }
+
+    private void aggOnLevel(boolean isAsk, boolean top) {
+        ESide e = isAsk ? expAsk : expBid;
+        int i = edgeIndex(e, isAsk, top);
+        if (i < 0) return;
+        e.pushAgg(i, ANY);
+        touch(isAsk, e.ticks[i]);
+    }
+
+    private void aggAll(boolean isAsk) {
+        ESide e = isAsk ? expAsk : expBid;
+        for (int i = 0; i < e.size; i++) {
+            e.pushAgg(i, ANY);
+            touch(isAsk, e.ticks[i]);
+        }
+    }
+
+    private void aggPop(boolean isAsk, boolean top) {
+        ESide e = isAsk ? expAsk : expBid;
+        int i = edgeIndex(e, isAsk, top);
+        if (i < 0 || e.aggCount[i] == 0) return;
+        e.popAgg(i);
+        touch(isAsk, e.ticks[i]);
+    }
+
+    private void aggClearAll(boolean isAsk) {
+        ESide e = isAsk ? expAsk : expBid;
+        for (int i = 0; i < e.size; i++) {
+            if (e.aggCount[i] == 0) continue;
+            e.aggCount[i] = 0;
+            e.aggSum[i] = 0;
+            touch(isAsk, e.ticks[i]);
+        }
+    }
+
+    // sendManualQuoteToAll: есть уровень — replace задаёт базу, иначе добавляет агрегацию
+    private void applyManual(QuoteBuffer q, boolean replace) {
+        for (int k = 0; k < q.size(); k++) {
+            boolean isAsk = q.isAsk(k);
+            ESide e = isAsk ? expAsk : expBid;
+            long t = q.ticks(k), v = q.volume(k);
+            int i = e.find(t);
+            if (i >= 0 && !replace) {
+                e.pushAgg(i, v);
+                touch(isAsk, t);
+            } else if (i >= 0) {
+                e.base[i] = v;
+                touch(isAsk, t);
+            } else {
+                set(isAsk, t, v);
+            }
+        }
+    }
+
+    /** Новый уровень (или перезапись базы существующего, как map.set в движке). */
+    private void set(boolean isAsk, long t, long v) {
+        ESide e = isAsk ? expAsk : expBid;
+        int i = e.find(t);
+        if (i < 0) i = e.insert(t);
+        e.base[i] = v;
+        touch(isAsk, t);
+    }
+
+    private void touch(boolean isAsk, long t) {
+        touched.add(key(isAsk, t));
+    }
+
+    private static long key(boolean isAsk, long ticks) {
+        return (ticks << 1) | (isAsk ? 1 : 0);
+    }
+
+    // ===== Ожидаемая сторона: отсортированные параллельные массивы =====
+    private static final class ESide {
+        long[] ticks = new long[64];
+        long[] base = new long[64];
+        int[] aggCount = new int[64];
+        long[] aggSum = new long[64];
+        long[] agg = new long[64 * SLOTS];
+        int size;
+
+        int find(long t) {
+            int i = Arrays.binarySearch(ticks, 0, size, t);
+            return i >= 0 ? i : -1;
+        }
+
+        int insert(long t) {
+            int pos = -(Arrays.binarySearch(ticks, 0, size, t) + 1);
+            ensure(size + 1);
+            int tail = size - pos;
+            if (tail > 0) {
+                System.arraycopy(ticks, pos, ticks, pos + 1, tail);
+                System.arraycopy(base, pos, base, pos + 1, tail);
+                System.arraycopy(aggCount, pos, aggCount, pos + 1, tail);
+                System.arraycopy(aggSum, pos, aggSum, pos + 1, tail);
+                System.arraycopy(agg, pos * SLOTS, agg, (pos + 1) * SLOTS, tail * SLOTS);
+            }
+            ticks[pos] = t;
+            base[pos] = 0;
+            aggCount[pos] = 0;
+            aggSum[pos] = 0;
+            size++;
+            return pos;
+        }
+
+        void remove(int i) {
+            int tail = size - i - 1;
+            if (tail > 0) {
+                System.arraycopy(ticks, i + 1, ticks, i, tail);
+                System.arraycopy(base, i + 1, base, i, tail);
+                System.arraycopy(aggCount, i + 1, aggCount, i, tail);
+                System.arraycopy(aggSum, i + 1, aggSum, i, tail);
+                System.arraycopy(agg, (i + 1) * SLOTS, agg, i * SLOTS, tail * SLOTS);
+            }
+            size--;
+        }
+
+        void pushAgg(int i, long v) {
+            int c = aggCount[i];
+            if (c < SLOTS) agg[i * SLOTS + c] = v;
+            aggCount[i] = c + 1;
+            aggSum[i] = (aggSum[i] == ANY || v == ANY || c >= SLOTS) ? ANY : aggSum[i] + v;
+        }
+
+        void popAgg(int i) {
+            int c = aggCount[i] - 1;
+            aggCount[i] = c;
+            if (c == 0) {
+                aggSum[i] = 0;
+            } else if (aggSum[i] != ANY && c < SLOTS) {
+                aggSum[i] -= agg[i * SLOTS + c];
+            } else {
+                aggSum[i] = ANY;
+            }
+        }
+
+        void ensure(int cap) {
+            if (cap <= ticks.length) return;
+            int n = Math.max(cap, ticks.length * 2);
+            ticks = Arrays.copyOf(ticks, n);
+            base = Arrays.copyOf(base, n);
+            aggCount = Arrays.copyOf(aggCount, n);
+            aggSum = Arrays.copyOf(aggSum, n);
+            agg = Arrays.copyOf(agg, n * SLOTS);
+        }
+    }
+
+    // ===== Примитивные коллекции ключей (цена в тиках << 1 | сторона) =====
+    private static final class LongList {
+        long[] data = new long[64];
+        int size;
+
+        void add(long v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void clear() { size = 0; }
+    }
+
+    /** Открытая адресация с линейным пробированием; ключи неотрицательны, -1 — пустая ячейка. */
+    private static final class LongSet {
+        private long[] table = newTable(64);
+        private int size;
+
+        private static long[] newTable(int n) {
+            long[] t = new long[n];
+            Arrays.fill(t, -1);
+            return t;
+        }
+
+        int size() { return size; }
+
+        private int slot(long k) {
+            long h = k * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (table.length - 1);
+        }
+
+        boolean contains(long k) {
+            for (int i = slot(k); ; i = (i + 1) & (table.length - 1)) {
+                if (table[i] == -1) return false;
+                if (table[i] == k) return true;
+            }
+        }
+
+        void add(long k) {
+            if ((size + 1) * 2 > table.length) rehash(table.length * 2);
+            for (int i = slot(k); ; i = (i + 1) & (table.length - 1)) {
+                if (table[i] == k) return;
+                if (table[i] == -1) {
+                    table[i] = k;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        void remove(long k) {
+            int mask = table.length - 1;
+            int i = slot(k);
+            while (table[i] != k) {
+                if (table[i] == -1) return;
+                i = (i + 1) & mask;
+            }
+            // удаление со сдвигом хвоста кластера, чтобы не оставлять «надгробий»
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (table[j] == -1) break;
+                int home = slot(table[j]);
+                boolean between = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+                if (between) continue;
+                table[i] = table[j];
+                i = j;
+            }
+            table[i] = -1;
+            size--;
+        }
+
+        void clear() {
+            if (size == 0) return;
+            Arrays.fill(table, -1);
+            size = 0;
+        }
+
+        private void rehash(int n) {
+            long[] old = table;
+            table = newTable(n);
+            size = 0;
+            for (long k : old) if (k != -1) add(k);
+        }
+    }
+}
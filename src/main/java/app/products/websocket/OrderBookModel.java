@@ -0,0 +1,429 @@
+package app.products.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Стакан на примитивных массивах: уровни отсортированы по цене в тиках (цена * 1000, шаг движка 0.001),
+ * у каждого уровня — базовый объём и слоты агрегаций (как aggState в engine.js).
+ *
+ * Обновление — целыми сообщениями ({@link QuoteBuffer}): повтор цены внутри одного сообщения —
+ * агрегация (так движок разворачивает agg в buildAfterWithAgg), нулевой объём — удаление уровня.
+ * Удалённые уровни вычищаются и новые вливаются одним проходом в конце сообщения, поэтому
+ * сообщение на k элементов стоит O(k log n + n), без сдвига массивов на каждый элемент.
+ *
+ * Все методы синхронизированы: пишет поток сокета, читает FX-поток отрисовки.
+ */
+public final class OrderBookModel {
+
+    /** Сколько агрегаций на уровень хранится поштучно; остальные учитываются только в сумме. */
+    public static final int AGG_SLOTS = 8;
+
+    public static final long TICKS_PER_UNIT = 1000;
+
+    public static long toTicks(double price) {
+        return Math.round(Math.abs(price) * TICKS_PER_UNIT);
+    }
+
+    public static double fromTicks(long ticks) {
+        return ticks / (double) TICKS_PER_UNIT;
+    }
+
+    /** Получатель уровней, реально изменившихся за сообщение (база, число или сумма агрегаций). */
+    public interface ChangeSink {
+        void levelChanged(boolean isAsk, long ticks);
+    }
+
+    /** Обход уровней стороны по возрастанию цены; slots — общий массив, агрегации уровня с offset. */
+    public interface LevelVisitor {
+        void level(long ticks, long base, int aggCount, long aggSum, long[] slots, int offset);
+    }
+
+    private final Side bid = new Side();
+    private final Side ask = new Side();
+
+    private int gen;
+    private long version;
+
+    /**
+     * Применяет сообщение котировки.
+     *
+     * @param fullReplace сообщение — полный снимок: уровни, не упомянутые в нём, удаляются
+     *                    (нужно при zeroFlash=false, когда движок не шлёт нулевые элементы)
+     */
+    public synchronized void applyQuote(QuoteBuffer q, boolean fullReplace) {
+        applyQuote(q, fullReplace, null);
+    }
+
+    /**
+     * То же с отчётом об изменившихся уровнях: сравниваются состояния до и после сообщения
+     * только для затронутых цен, так что стоимость — O(затронутых), а не O(стакана).
+     */
+    public synchronized void applyQuote(QuoteBuffer q, boolean fullReplace, ChangeSink sink) {
+        gen++;
+        bid.begin(gen, sink != null);
+        ask.begin(gen, sink != null);
+        for (int i = 0, n = q.size(); i < n; i++) item(q.isAsk(i), q.ticks(i), q.volume(i));
+        bid.commit(gen, fullReplace);
+        ask.commit(gen, fullReplace);
+        if (sink != null) {
+            bid.reportChanges(false, sink);
+            ask.reportChanges(true, sink);
+        }
+        version++;
+    }
+
+    /** Ответ на Subscribe: стакан целиком заменяется содержимым буфера. */
+    public synchronized void applySnapshot(QuoteBuffer q) {
+        bid.clear();
+        ask.clear();
+        applyQuote(q, false);
+    }
+
+    public synchronized void forEachLevel(boolean isAsk, LevelVisitor v) {
+        Side s = isAsk ? ask : bid;
+        for (int i = 0; i < s.size; i++) {
+            v.level(s.ticks[i], s.base[i], s.aggCount[i], s.aggSum[i], s.agg, i * AGG_SLOTS);
+        }
+    }
+
+    private void item(boolean isAsk, long ticks, long volume) {
+        if (volume <= 0) {
+            // как applyQuoteRespTemplateToState: ноль снимает цену с обеих сторон
+            bid.zero(ticks);
+            ask.zero(ticks);
+            return;
+        }
+        (isAsk ? ask : bid).put(ticks, volume, gen);
+    }
+
+    public synchronized void clear() {
+        bid.clear();
+        ask.clear();
+        version++;
+    }
+
+    /** Растёт на каждое применённое сообщение; отрисовка сравнивает его с последним нарисованным. */
+    public synchronized long version() { return version; }
+
+    public synchronized int size(boolean isAsk) { return (isAsk ? ask : bid).size; }
+
+    /**
+     * Копирует строки стороны в порядке «лучшая цена первой» (bid — по убыванию, ask — по возрастанию).
+     * Массивы назначения — заранее выделенные буферы вызывающего; возвращает число скопированных строк.
+     */
+    public synchronized int copyRows(boolean isAsk, int from, int max,
+                                     long[] ticks, long[] base, int[] aggCount, long[] aggSum) {
+        Side s = isAsk ? ask : bid;
+        int n = Math.max(0, Math.min(max, s.size - from));
+        for (int r = 0; r < n; r++) {
+            int i = isAsk ? from + r : s.size - 1 - from - r;
+            ticks[r] = s.ticks[i];
+            base[r] = s.base[i];
+            aggCount[r] = s.aggCount[i];
+            aggSum[r] = s.aggSum[i];
+        }
+        return n;
+    }
+
+    /** Объём и агрегации уровня; -1, если уровня нет. */
+    public synchronized long baseAt(boolean isAsk, long ticks) {
+        Side s = isAsk ? ask : bid;
+        int i = s.find(ticks);
+        return i >= 0 ? s.base[i] : -1;
+    }
+
+    public synchronized int aggCountAt(boolean isAsk, long ticks) {
+        Side s = isAsk ? ask : bid;
+        int i = s.find(ticks);
+        return i >= 0 ? s.aggCount[i] : 0;
+    }
+
+    /** j-я агрегация уровня (j < min(aggCount, AGG_SLOTS)). */
+    public synchronized long aggAt(boolean isAsk, long ticks, int j) {
+        Side s = isAsk ? ask : bid;
+        int i = s.find(ticks);
+        return (i >= 0 && j < Math.min(s.aggCount[i], AGG_SLOTS)) ? s.agg[i * AGG_SLOTS + j] : 0;
+    }
+
+    // ===== Одна сторона стакана: параллельные массивы, по возрастанию ticks =====
+    private static final class Side {
+        long[] ticks = new long[64];
+        long[] base = new long[64];
+        int[] aggCount = new int[64];
+        long[] aggSum = new long[64];
+        long[] agg = new long[64 * AGG_SLOTS];
+        int[] seen = new int[64];
+        int[] touch = new int[64];
+        int size;
+
+        // учёт изменений (включается при applyQuote с ChangeSink): состояние уровня до сообщения
+        boolean track;
+        long[] dTicks = new long[16];
+        long[] dBase = new long[16];
+        int[] dAggCount = new int[16];
+        long[] dAggSum = new long[16];
+        int dSize;
+
+        // новые уровни текущего сообщения; вливаются в основной массив в commit()
+        long[] pTicks = new long[16];
+        long[] pBase = new long[16];
+        int[] pAggCount = new int[16];
+        long[] pAggSum = new long[16];
+        long[] pAgg = new long[16 * AGG_SLOTS];
+        int pSize;
+        // порядок поступления pending: bid движок шлёт по убыванию, ask — по возрастанию
+        boolean pAsc = true;
+        boolean pDesc = true;
+
+        int find(long t) {
+            int i = Arrays.binarySearch(ticks, 0, size, t);
+            return i >= 0 ? i : -1;
+        }
+
+        void zero(long t) {
+            int i = find(t);
+            if (i >= 0) {
+                mark(i);
+                base[i] = 0;
+                aggCount[i] = 0;
+                aggSum[i] = 0;
+                seen[i] = 0;
+            }
+            int p = findPending(t);
+            if (p >= 0) {
+                pBase[p] = 0;
+                pAggCount[p] = 0;
+                pAggSum[p] = 0;
+            }
+        }
+
+        void put(long t, long v, int gen) {
+            int i = find(t);
+            if (i >= 0) {
+                mark(i);
+                if (seen[i] == gen && base[i] > 0) {
+                    addAgg(agg, aggCount, aggSum, i, v);
+                } else {
+                    base[i] = v;
+                    aggCount[i] = 0;
+                    aggSum[i] = 0;
+                    seen[i] = gen;
+                }
+                return;
+            }
+            int p = findPending(t);
+            if (p >= 0) {
+                if (pBase[p] > 0) addAgg(pAgg, pAggCount, pAggSum, p, v);
+                else pBase[p] = v;
+                return;
+            }
+            growPending();
+            if (track) pushDirty(t, 0, 0, 0);
+            if (pSize > 0) {
+                if (pTicks[pSize - 1] > t) pAsc = false;
+                else pDesc = false;
+            }
+            pTicks[pSize] = t;
+            pBase[pSize] = v;
+            pAggCount[pSize] = 0;
+            pAggSum[pSize] = 0;
+            pSize++;
+        }
+
+        private int curGen;
+
+        void begin(int gen, boolean track) {
+            this.curGen = gen;
+            this.track = track;
+            dSize = 0;
+        }
+
+        private void mark(int i) {
+            if (!track || touch[i] == curGen) return;
+            touch[i] = curGen;
+            pushDirty(ticks[i], base[i], aggCount[i], aggSum[i]);
+        }
+
+        private void pushDirty(long t, long b, int c, long s) {
+            if (dSize == dTicks.length) {
+                int n = dSize * 2;
+                dTicks = Arrays.copyOf(dTicks, n);
+                dBase = Arrays.copyOf(dBase, n);
+                dAggCount = Arrays.copyOf(dAggCount, n);
+                dAggSum = Arrays.copyOf(dAggSum, n);
+            }
+            dTicks[dSize] = t;
+            dBase[dSize] = b;
+            dAggCount[dSize] = c;
+            dAggSum[dSize] = s;
+            dSize++;
+        }
+
+        /** Сравнивает затронутые уровни с состоянием до сообщения и отдаёт реально изменившиеся. */
+        void reportChanges(boolean isAsk, ChangeSink sink) {
+            for (int d = 0; d < dSize; d++) {
+                int i = find(dTicks[d]);
+                long b = i >= 0 ? base[i] : 0;
+                int c = i >= 0 ? aggCount[i] : 0;
+                long s = i >= 0 ? aggSum[i] : 0;
+                if (b != dBase[d] || c != dAggCount[d] || s != dAggSum[d]) sink.levelChanged(isAsk, dTicks[d]);
+            }
+            dSize = 0;
+        }
+
+        // агрегации идут сразу за базой уровня, поэтому почти всегда совпадает последний pending
+        int findPending(long t) {
+            if (pSize == 0) return -1;
+            if (pTicks[pSize - 1] == t) return pSize - 1;
+            if (pAsc) {
+                int i = Arrays.binarySearch(pTicks, 0, pSize, t);
+                return i >= 0 ? i : -1;
+            }
+            if (pDesc) {
+                int lo = 0, hi = pSize - 1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    long m = pTicks[mid];
+                    if (m == t) return mid;
+                    if (m > t) lo = mid + 1; else hi = mid - 1;
+                }
+                return -1;
+            }
+            for (int i = 0; i < pSize; i++) if (pTicks[i] == t) return i;
+            return -1;
+        }
+
+        private static void addAgg(long[] slots, int[] cnt, long[] sum, int i, long v) {
+            int c = cnt[i];
+            if (c < AGG_SLOTS) slots[i * AGG_SLOTS + c] = v;
+            cnt[i] = c + 1;
+            sum[i] += v;
+        }
+
+        /** Вычищает нулевые/неупомянутые уровни и вливает pending — один линейный проход. */
+        void commit(int gen, boolean fullReplace) {
+            if (!pAsc) {
+                if (pDesc) reversePending();
+                else sortPending();
+            }
+
+            int keep = 0;
+            for (int i = 0; i < size; i++) {
+                boolean alive = base[i] > 0 && (!fullReplace || seen[i] == gen);
+                if (!alive) {
+                    mark(i);
+                    continue;
+                }
+                if (keep != i) move(i, keep);
+                keep++;
+            }
+            size = keep;
+
+            int pLive = 0;
+            for (int p = 0; p < pSize; p++) if (pBase[p] > 0) pLive++;
+            if (pLive > 0) {
+                ensure(size + pLive);
+                // слияние с конца: основной массив и pending оба отсортированы
+                int i = size - 1, p = pSize - 1, w = size + pLive - 1;
+                while (p >= 0) {
+                    if (pBase[p] <= 0) { p--; continue; }
+                    if (i >= 0 && ticks[i] > pTicks[p]) {
+                        move(i--, w--);
+                    } else {
+                        ticks[w] = pTicks[p];
+                        base[w] = pBase[p];
+                        aggCount[w] = pAggCount[p];
+                        aggSum[w] = pAggSum[p];
+                        System.arraycopy(pAgg, p * AGG_SLOTS, agg, w * AGG_SLOTS, AGG_SLOTS);
+                        seen[w] = gen;
+                        touch[w] = gen;
+                        w--;
+                        p--;
+                    }
+                }
+                size += pLive;
+            }
+            pSize = 0;
+            pAsc = pDesc = true;
+        }
+
+        void clear() {
+            size = 0;
+            pSize = 0;
+            dSize = 0;
+            pAsc = pDesc = true;
+        }
+
+        private void move(int from, int to) {
+            ticks[to] = ticks[from];
+            base[to] = base[from];
+            aggCount[to] = aggCount[from];
+            aggSum[to] = aggSum[from];
+            seen[to] = seen[from];
+            touch[to] = touch[from];
+            System.arraycopy(agg, from * AGG_SLOTS, agg, to * AGG_SLOTS, AGG_SLOTS);
+        }
+
+        private void ensure(int cap) {
+            if (cap <= ticks.length) return;
+            int n = Math.max(cap, ticks.length * 2);
+            ticks = Arrays.copyOf(ticks, n);
+            base = Arrays.copyOf(base, n);
+            aggCount = Arrays.copyOf(aggCount, n);
+            aggSum = Arrays.copyOf(aggSum, n);
+            seen = Arrays.copyOf(seen, n);
+            touch = Arrays.copyOf(touch, n);
+            agg = Arrays.copyOf(agg, n * AGG_SLOTS);
+        }
+
+        private void growPending() {
+            if (pSize < pTicks.length) return;
+            int n = pTicks.length * 2;
+            pTicks = Arrays.copyOf(pTicks, n);
+            pBase = Arrays.copyOf(pBase, n);
+            pAggCount = Arrays.copyOf(pAggCount, n);
+            pAggSum = Arrays.copyOf(pAggSum, n);
+            pAgg = Arrays.copyOf(pAgg, n * AGG_SLOTS);
+        }
+
+        private void reversePending() {
+            for (int i = 0, j = pSize - 1; i < j; i++, j--) swapPending(i, j);
+        }
+
+        private void swapPending(int i, int j) {
+            long t = pTicks[i]; pTicks[i] = pTicks[j]; pTicks[j] = t;
+            long b = pBase[i]; pBase[i] = pBase[j]; pBase[j] = b;
+            int c = pAggCount[i]; pAggCount[i] = pAggCount[j]; pAggCount[j] = c;
+            long s = pAggSum[i]; pAggSum[i] = pAggSum[j]; pAggSum[j] = s;
+            for (int k = 0; k < AGG_SLOTS; k++) {
+                long a = pAgg[i * AGG_SLOTS + k];
+                pAgg[i * AGG_SLOTS + k] = pAgg[j * AGG_SLOTS + k];
+                pAgg[j * AGG_SLOTS + k] = a;
+            }
+        }
+
+        // редкий случай (ручные котировки в произвольном порядке) — вставками
+        private void sortPending() {
+            long[] slot = new long[AGG_SLOTS];
+            for (int i = 1; i < pSize; i++) {
+                long t = pTicks[i], b = pBase[i], s = pAggSum[i];
+                int c = pAggCount[i];
+                System.arraycopy(pAgg, i * AGG_SLOTS, slot, 0, AGG_SLOTS);
+                int j = i - 1;
+                while (j >= 0 && pTicks[j] > t) {
+                    pTicks[j + 1] = pTicks[j];
+                    pBase[j + 1] = pBase[j];
+                    pAggCount[j + 1] = pAggCount[j];
+                    pAggSum[j + 1] = pAggSum[j];
+                    System.arraycopy(pAgg, j * AGG_SLOTS, pAgg, (j + 1) * AGG_SLOTS, AGG_SLOTS);
+                    j--;
+                }
+                pTicks[j + 1] = t;
+                pBase[j + 1] = b;
+                pAggCount[j + 1] = c;
+                pAggSum[j + 1] = s;
+                System.arraycopy(slot, 0, pAgg, (j + 1) * AGG_SLOTS, AGG_SLOTS);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package app.products.websocket;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+
+/**
+ * Панель стакана на Canvas: слева Bid, справа Ask, лучшая цена сверху.
+ *
+ * Раз в кадр (AnimationTimer) сравнивает версию модели с нарисованной; если стакан менялся —
+ * копирует видимые строки в заранее выделенные буферы и перерисовывает только те строки,
+ * содержимое которых отличается от прошлого кадра. Узлы сцены на обновление не создаются.
+ * Если задан {@link OrderBookMirror}, уровни с расхождением помечаются, внизу — строка сверки.
+ */
+public final class OrderBookView extends Region {
+
+    private static final double ROW_H = 18;
+    private static final double PAD = 8;
+
+    private static final Color BG         = Color.web("#1b1f27");
+    private static final Color HEADER     = Color.web("#9aa3b2");
+    private static final Color BID        = Color.rgb(34, 197, 94);
+    private static final Color ASK        = Color.rgb(239, 68, 68);
+    private static final Color BID_ROW    = Color.rgb(34, 197, 94, 0.08);
+    private static final Color ASK_ROW    = Color.rgb(239, 68, 68, 0.08);
+    private static final Color TEXT       = Color.web("#e6e9ef");
+    private static final Color AGG        = Color.web("#f5c542");
+    private static final Color MISMATCH   = Color.web("#ff4d8d");
+
+    private final Canvas canvas = new Canvas();
+    private final Font font = Font.font("Consolas", 12);
+
+    private OrderBookModel model;
+    private OrderBookMirror mirror;
+    private long drawnVersion = -1;
+    private long drawnMirrorVersion = -1;
+    private long drawnChecked = -1;
+    private boolean fullRedraw = true;
+
+    // [0] — bid, [1] — ask; текущий кадр и прошлый кадр
+    private final RowBuf[] cur = { new RowBuf(), new RowBuf() };
+    private final RowBuf[] prev = { new RowBuf(), new RowBuf() };
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override public void handle(long now) { renderFrame(); }
+    };
+
+    public OrderBookView() {
+        getStyleClass().add("console");
+        getChildren().add(canvas);
+        setMinHeight(120);
+        setPrefWidth(320);
+        widthProperty().addListener((o, a, b) -> fullRedraw = true);
+        heightProperty().addListener((o, a, b) -> fullRedraw = true);
+    }
+
+    /** Привязать модель и запустить отрисовку; null — остановить и очистить. */
+    public void setModel(OrderBookModel model) {
+        this.model = model;
+        drawnVersion = -1;
+        fullRedraw = true;
+        if (model != null) timer.start();
+        else {
+            timer.stop();
+            renderFrame();
+        }
+    }
+
+    public void setMirror(OrderBookMirror mirror) {
+        this.mirror = mirror;
+        fullRedraw = true;
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    @Override protected void layoutChildren() {
+        double w = snapSizeX(getWidth()), h = snapSizeY(getHeight());
+        if (canvas.getWidth() != w || canvas.getHeight() != h) {
+            canvas.setWidth(w);
+            canvas.setHeight(h);
+            fullRedraw = true;
+        }
+        canvas.relocate(0, 0);
+    }
+
+    private void renderFrame() {
+        OrderBookModel m = model;
+        OrderBookMirror mir = mirror;
+        long ver = (m == null) ? -1 : m.version();
+        long mver = (mir == null) ? -1 : mir.version();
+        long checked = (mir == null) ? -1 : mir.checkedSteps();
+        if (!fullRedraw && ver == drawnVersion && mver == drawnMirrorVersion && checked == drawnChecked) return;
+
+        double w = canvas.getWidth(), h = canvas.getHeight();
+        if (w <= 0 || h <= 0) return;
+        double statusH = (mir == null) ? 0 : ROW_H;
+        int rows = Math.max(0, (int) ((h - PAD * 2 - ROW_H - statusH) / ROW_H));
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFont(font);
+        g.setTextBaseline(VPos.CENTER);
+
+        if (fullRedraw) {
+            g.setFill(BG);
+            g.fillRect(0, 0, w, h);
+            drawHeader(g, w);
+        }
+
+        for (int side = 0; side < 2; side++) {
+            RowBuf c = cur[side];
+            c.ensure(rows);
+            c.n = (m == null) ? 0 : m.copyRows(side == 1, 0, rows, c.ticks, c.base, c.aggCount, c.aggSum);
+            for (int r = 0; r < c.n; r++) c.bad[r] = mir != null && mir.isMismatch(side == 1, c.ticks[r]);
+            RowBuf p = prev[side];
+            p.ensure(rows);
+
+            double x0 = side == 0 ? PAD : w / 2 + PAD / 2;
+            double colW = w / 2 - PAD * 1.5;
+            for (int r = 0; r < rows; r++) {
+                boolean had = r < p.n, has = r < c.n;
+                if (!fullRedraw && had == has && (!has || c.sameRow(r, p))) continue;
+                drawRow(g, side == 1, x0, rowY(r), colW, has ? c : null, r);
+            }
+            // текущий кадр становится прошлым (обмен ссылками, без копирования)
+            cur[side] = p;
+            prev[side] = c;
+        }
+
+        if (mir != null) drawStatus(g, w, h, mir);
+
+        drawnVersion = ver;
+        drawnMirrorVersion = mver;
+        drawnChecked = checked;
+        fullRedraw = false;
+    }
+
+    private void drawStatus(GraphicsContext g, double w, double h, OrderBookMirror mir) {
+        double y = h - PAD - ROW_H;
+        g.setFill(BG);
+        g.fillRect(0, y, w, ROW_H);
+        int bad = mir.mismatchCount();
+        g.setTextAlign(TextAlignment.LEFT);
+        g.setFill(bad > 0 ? MISMATCH : HEADER);
+        g.fillText((bad > 0 ? "Расхождений: " + bad : "Сверка: OK")
+                + "  | шагов " + mir.checkedSteps() + ", с расхождением " + mir.mismatchSteps()
+                + ", ресинхр. " + mir.resyncs(), PAD, y + ROW_H / 2);
+    }
+
+    private void drawHeader(GraphicsContext g, double w) {
+        g.setFill(HEADER);
+        g.setTextAlign(TextAlignment.LEFT);
+        g.fillText("Bid  цена / объём / agg", PAD, PAD + ROW_H / 2);
+        g.fillText("Ask  цена / объём / agg", w / 2 + PAD / 2, PAD + ROW_H / 2);
+    }
+
+    private double rowY(int r) {
+        return PAD + ROW_H * (r + 1);
+    }
+
+    private void drawRow(GraphicsContext g, boolean ask, double x, double y, double colW, RowBuf b, int r) {
+        g.setFill(BG);
+        g.fillRect(x - 2, y, colW + 4, ROW_H);
+        if (b == null) return;
+
+        g.setFill(ask ? ASK_ROW : BID_ROW);
+        g.fillRect(x - 2, y + 1, colW + 4, ROW_H - 2);
+        if (b.bad[r]) {
+            g.setStroke(MISMATCH);
+            g.strokeRect(x - 1.5, y + 1.5, colW + 3, ROW_H - 3);
+        }
+
+        double cy = y + ROW_H / 2;
+        g.setTextAlign(TextAlignment.LEFT);
+        g.setFill(ask ? ASK : BID);
+        g.fillText(formatPrice(b.ticks[r]), x + 2, cy);
+
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.setFill(TEXT);
+        g.fillText(Long.toString(b.base[r]), x + colW * 0.68, cy);
+
+        if (b.aggCount[r] > 0) {
+            g.setFill(AGG);
+            g.fillText("+" + b.aggSum[r] + " ×" + b.aggCount[r], x + colW - 2, cy);
+        }
+    }
+
+    private static String formatPrice(long ticks) {
+        long whole = ticks / OrderBookModel.TICKS_PER_UNIT;
+        long frac = ticks % OrderBookModel.TICKS_PER_UNIT;
+        return whole + "." + (frac < 10 ? "00" : frac < 100 ? "0" : "") + frac;
+    }
+
+    // ===== Буфер видимых строк одной стороны =====
+    private static final class RowBuf {
+        long[] ticks = new long[0];
+        long[] base = new long[0];
+        int[] aggCount = new int[0];
+        long[] aggSum = new long[0];
+        boolean[] bad = new boolean[0];
+        int n;
+
+        void ensure(int rows) {
+            if (ticks.length >= rows) return;
+            ticks = Arrays.copyOf(ticks, rows);
+            base = Arrays.copyOf(base, rows);
+            aggCount = Arrays.copyOf(aggCount, rows);
+            aggSum = Arrays.copyOf(aggSum, rows);
+            bad = Arrays.copyOf(bad, rows);
+        }
+
+        boolean sameRow(int r, RowBuf o) {
+            return ticks[r] == o.ticks[r] && base[r] == o.base[r]
+                    && aggCount[r] == o.aggCount[r] && aggSum[r] == o.aggSum[r] && bad[r] == o.bad[r];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package app.products.websocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переиспользуемый буфер элементов котировки: сторона, цена в тиках, объём.
+ * Заполняется разборщиком без аллокаций на элемент и целиком применяется к {@link OrderBookModel}.
+ */
+public final class QuoteBuffer {
+
+    private boolean[] ask;
+    private long[] ticks;
+    private long[] volume;
+    private int size;
+
+    public QuoteBuffer() {
+        this(256);
+    }
+
+    public QuoteBuffer(int capacity) {
+        int c = Math.max(16, capacity);
+        ask = new boolean[c];
+        ticks = new long[c];
+        volume = new long[c];
+    }
+
+    public void add(boolean isAsk, long priceTicks, long vol) {
+        if (size == ticks.length) {
+            int n = size * 2;
+            ask = Arrays.copyOf(ask, n);
+            ticks = Arrays.copyOf(ticks, n);
+            volume = Arrays.copyOf(volume, n);
+        }
+        ask[size] = isAsk;
+        ticks[size] = priceTicks;
+        volume[size] = vol;
+        size++;
+    }
+
+    public void clear() { size = 0; }
+
+    public int size() { return size; }
+
+    public boolean isAsk(int i) { return ask[i]; }
+
+    public long ticks(int i) { return ticks[i]; }
+
+    public long volume(int i) { return volume[i]; }
+
+    /** Срез [from, to) в виде ops для manualQuote (side/price/volume), как собирает onManualSend. */
+    public List<Map<String, Object>> toOps(int from, int to) {
+        List<Map<String, Object>> ops = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Map<String, Object> op = new HashMap<>();
+            op.put("side", ask[i] ? "ask" : "bid");
+            op.put("price", OrderBookModel.fromTicks(ticks[i]));
+            op.put("volume", volume[i]);
+            ops.add(op);
+        }
+        return ops;
+    }
+
+    /** Обратное к {@link #toOps}: некорректные ops пропускаются так же, как в sendManualQuoteToAll. */
+    public static QuoteBuffer fromOps(List<Map<String, Object>> ops) {
+        QuoteBuffer q = new QuoteBuffer(ops.size());
+        for (Map<String, Object> op : ops) {
+            if (op == null) continue;
+            double price = toDouble(op.get("price"));
+            double vol = toDouble(op.get("volume"));
+            if (!(price > 0) || !(vol > 0)) continue;
+            q.add("ask".equals(op.get("side")), OrderBookModel.toTicks(price), Math.round(vol));
+        }
+        return q;
+    }
+
+    private static double toDouble(Object v) {
+        if (v instanceof Number n) return n.doubleValue();
+        try {
+            return v == null ? Double.NaN : Double.parseDouble(v.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
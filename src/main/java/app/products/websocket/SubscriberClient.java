@@ -0,0 +1,178 @@
+package app.products.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пользовательское (не control) подключение к движку node-server:
+ * HelloMessage + SubscribeMessage из client-project-protocol.json, дальше — поток сообщений в {@link Sink}.
+ *
+ * Используется генератором нагрузки и панелью стакана; колбэки приходят на executor'е переданного HttpClient.
+ */
+public final class SubscriberClient implements WebSocket.Listener {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    /** Получатель входящих сообщений. Вызовы по одному сокету идут строго последовательно. */
+    public interface Sink {
+        void onMessage(String text, long receivedAtMs);
+
+        default void onClosed(int code, String reason) {}
+    }
+
+    /** Готовые JSON-строки Hello и Subscribe для конкретного инструмента. */
+    public record Handshake(String hello, String subscribe) {
+
+        /**
+         * Берёт wrappers HelloMessage/SubscribeMessage, подставляет ${INSTRUMENT_CODE} и проставляет id.
+         * Формат файла — как у priv/pub_client-project-protocol.json (с корнем "project" или без).
+         */
+        public static Handshake load(Path protocolFile, String instrument) throws IOException {
+            JsonNode root = M.readTree(Files.readString(protocolFile));
+            JsonNode project = root.has("project") ? root.get("project") : root;
+            JsonNode wrappers = project.path("wrappers");
+
+            JsonNode hello = wrappers.get("HelloMessage");
+            JsonNode subscribe = wrappers.get("SubscribeMessage");
+            if (hello == null || subscribe == null) {
+                throw new IOException("В " + protocolFile.getFileName() + " нет HelloMessage/SubscribeMessage");
+            }
+
+            Map<String, String> vars = Map.of("INSTRUMENT_CODE", instrument);
+            return new Handshake(build(hello, vars, "1"), build(subscribe, vars, "2"));
+        }
+
+        private static String build(JsonNode wrapper, Map<String, String> vars, String id) throws IOException {
+            JsonNode copy = interpolate(wrapper.deepCopy(), vars);
+            if (copy instanceof ObjectNode o) o.put("id", id);
+            return M.writeValueAsString(copy);
+        }
+
+        private static JsonNode interpolate(JsonNode n, Map<String, String> vars) {
+            if (n instanceof ObjectNode o) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = o.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> e = it.next();
+                    e.setValue(interpolate(e.getValue(), vars));
+                }
+            } else if (n instanceof ArrayNode a) {
+                for (int i = 0; i < a.size(); i++) a.set(i, interpolate(a.get(i), vars));
+            } else if (n.isTextual()) {
+                String s = n.asText();
+                for (Map.Entry<String, String> v : vars.entrySet()) {
+                    s = s.replace("${" + v.getKey() + "}", v.getValue())
+                         .replace("{{" + v.getKey() + "}}", v.getValue());
+                }
+                return TextNode.valueOf(s);
+            }
+            return n;
+        }
+    }
+
+    /** Приватный протокол, если есть, иначе публичный пример. */
+    public static Path resolveProtocolFile(Path serverDir) {
+        Path priv = serverDir.resolve("setting/private/protocol/priv_client-project-protocol.json");
+        if (Files.exists(priv)) return priv;
+        return serverDir.resolve("setting/public/protocol/pub_client-project-protocol.json");
+    }
+
+    private final Handshake handshake;
+    private final Sink sink;
+
+    private volatile WebSocket ws;
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    // склейка фрагментированных текстовых фреймов
+    private StringBuilder partial;
+
+    public SubscriberClient(Handshake handshake, Sink sink) {
+        this.handshake = handshake;
+        this.sink = sink;
+    }
+
+    public boolean isOpen() {
+        WebSocket w = ws;
+        return w != null && !w.isOutputClosed() && !closed.isDone();
+    }
+
+    /** Подключение + Hello + Subscribe. Future завершается, когда оба сообщения отправлены. */
+    public CompletableFuture<Void> connect(HttpClient http, String url) {
+        return http.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(URI.create(url), this)
+                .thenCompose(w -> {
+                    this.ws = w;
+                    return w.sendText(handshake.hello(), true);
+                })
+                .thenCompose(w -> w.sendText(handshake.subscribe(), true))
+                .thenApply(w -> (Void) null);
+    }
+
+    public CompletableFuture<Void> close() {
+        WebSocket w = ws;
+        if (w == null || closed.isDone()) return CompletableFuture.completedFuture(null);
+        try {
+            w.sendClose(WebSocket.NORMAL_CLOSURE, "bye");
+        } catch (Throwable ignore) {}
+        return closed.orTimeout(1500, TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> {
+                    try { w.abort(); } catch (Throwable ignore) {}
+                    return null;
+                });
+    }
+
+    // ===== WebSocket.Listener =====
+
+    @Override public void onOpen(WebSocket webSocket) {
+        this.ws = webSocket;
+        webSocket.request(1);
+    }
+
+    @Override public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        if (!last) {
+            if (partial == null) partial = new StringBuilder();
+            partial.append(data);
+        } else {
+            String text;
+            if (partial != null) {
+                text = partial.append(data).toString();
+                partial = null;
+            } else {
+                text = data.toString();
+            }
+            try {
+                sink.onMessage(text, System.currentTimeMillis());
+            } catch (Throwable ignore) {
+                // ошибка обработчика не должна останавливать чтение сокета
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        sink.onClosed(statusCode, reason);
+        closed.complete(null);
+        return null;
+    }
+
+    @Override public void onError(WebSocket webSocket, Throwable error) {
+        sink.onClosed(-1, error == null ? "error" : String.valueOf(error.getMessage()));
+        closed.complete(null);
+    }
+}
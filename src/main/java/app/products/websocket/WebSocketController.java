@@ -2,6 +2,8 @@
 package app.products.websocket;
 
 import app.core.Router;
+import app.ui.BulkQuoteDialog;
+import app.ui.EngineGroupDialog;
 import app.ui.UiSvg;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,12 +15,17 @@ import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
 import javafx.util.Duration;
 
 import java.awt.Desktop;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -26,17 +33,30 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.net.Socket;
 
+import app.core.node.NodeServerGroup;
 import app.core.node.NodeServerLauncher;
+import app.core.node.NodeSupervisor;
 import app.core.node.AppShutdown;
 
 public class WebSocketController {
 
     // ===== Node server =====
     private NodeServerLauncher node;
+    private NodeSupervisor supervisor;
+    private final EngineControlProbe probe = new EngineControlProbe();
+    private Timeline healthTicker;
+    private boolean reconnectAfterRestart = false;
+    @FXML private Label lblServerHealth;
+
+    // ===== Группа экземпляров движка (по процессу на ядро, порты подряд) =====
+    private NodeServerGroup group;
+    @FXML private Button btnGroup;
+    @FXML private Label lblGroup;
 
     // ===== Agg Fill (только включённые кнопки) =====
     @FXML public void onAggFillBidUp()   { sendCmd("quoteAggBidUp"); }
@@ -73,6 +93,11 @@ public class WebSocketController {
     // [NEW] кнопка Upd
     @FXML private Button btnSaveUpd;
 
+    // ==== Макросы ====
+    @FXML private Button           btnMacroRec;
+    @FXML private Button           btnMacroPlay;
+    @FXML private ComboBox<String> cbMacroSpeed;
+
     // ==== Collapsible cards ====
     @FXML private Button btnCardClean;
     @FXML private Button btnCardFill;
@@ -88,11 +113,16 @@ public class WebSocketController {
     @FXML private Label    lblConsole;
     @FXML private Button   btnClearLog;
 
+    // ==== Стакан ====
+    @FXML private Button        btnBookTap;
+    @FXML private OrderBookView bookView;
+
     // ====== Навигация ======
     @FXML public void goBack() { Router.get().back(); }
     @FXML public void goHome() { Router.get().home(); }
 
     @FXML private Button btnManualSend;
+    @FXML private Button btnManualBulk;
 
     // ===== Локальные поля =====
     private final ObjectMapper mapper = new ObjectMapper();
@@ -114,6 +144,17 @@ public class WebSocketController {
     private boolean logAutoStick = true;
     private boolean scenarioInitInProgress = false;
 
+    // ===== Макросы =====
+    private final MacroRecorder macroRecorder = new MacroRecorder();
+    private MacroPlayer macroPlayer;
+    private long macroGen; // завершение вытесненного проигрывания не трогает кнопку
+    private static final DateTimeFormatter MACRO_FILE_TS = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // ===== Стакан (tap-подключение как обычный пользователь) =====
+    private static final String BOOK_TAP_INSTRUMENT = "TAP";
+    private SubscriberClient bookTap;
+    private HttpClient bookHttp;
+
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
     private String ts() { return LocalTime.now().format(TS_FMT); }
 
@@ -148,6 +189,14 @@ public class WebSocketController {
         serverDir = Paths.get(System.getProperty("user.dir"), "node-server");
         messagesConfigPath = resolveMessagesConfigPath(serverDir);
         node = new NodeServerLauncher(serverDir, this::append);
+        supervisor = new NodeSupervisor(node,
+                NodeSupervisor.Policy.fromSettings(serverDir.resolve("setting").resolve("setting.json"), this::append),
+                probe, this::append, st -> fx(() -> onSupervisorStatus(st)));
+        group = new NodeServerGroup(serverDir, this::append, supervisor.policy(), port -> {
+            EngineControlProbe p = new EngineControlProbe();
+            p.setUrl("ws://localhost:" + port + "/control?control=1");
+            return p;
+        }, (inst, st) -> fx(this::updateGroupLabel));
 
         tfUrl.setPromptText("введите адрес сервера");
         tfUrl.setText(resolveDefaultUrl());
@@ -171,6 +220,9 @@ public class WebSocketController {
         // загружаем список сценариев из локального setting.json
         loadScenariosFromLocalConfig();
 
+        // тёплый Node для Start server: модули загружены заранее, старт — только подъём порта
+        node.setWarmPool(warmPoolEnabled());
+
         app.ui.ScrollThumbRounding.attach(taLog);
 
         taLog.textProperty().addListener((obs, oldV, newV) -> {
@@ -208,6 +260,11 @@ public class WebSocketController {
         }
         showManualModeNone();
 
+        if (cbMacroSpeed != null) {
+            cbMacroSpeed.getItems().setAll("1x", "2x", "5x", "10x", "Max");
+            cbMacroSpeed.setValue("1x");
+        }
+
         append("[DEBUG] initialize() done]");
     }
 
@@ -219,9 +276,22 @@ public class WebSocketController {
         scenarioAlignedPrinted = false;
         lastClientsActive = 0;
         scenarioInitInProgress = false;
+        stopMacroPlayer();
+        stopBookTap();
         append("[DEBUG] resetSessionState()");
     }
 
+    private boolean warmPoolEnabled() {
+        try {
+            if (!Files.exists(messagesConfigPath)) return false;
+            return mapper.readTree(Files.readString(messagesConfigPath, StandardCharsets.UTF_8))
+                    .path("warmPool").asBoolean(false);
+        } catch (Exception e) {
+            append("[DEBUG] warmPool не прочитан из setting.json: " + e.getMessage());
+            return false;
+        }
+    }
+
     // ===== Загрузка сценариев из локального setting.json =====
     private void loadScenariosFromLocalConfig() {
         try {
@@ -480,8 +550,8 @@ public class WebSocketController {
         final int port = resolveControlPort();
 
         Thread t = new Thread(() -> {
-            final int maxAttempts = 40;    // ~4 секунды при шаге 100 мс
-            final long sleepMs    = 100L;
+            final int maxAttempts = 160;   // ~4 секунды при шаге 25 мс
+            final long sleepMs    = 25L;   // порт освобождается сразу после выхода Node — частый опрос
 
             // 1) Гасим все наши Node-процессы
             try {
@@ -512,7 +582,8 @@ public class WebSocketController {
                     if (finalPortFree) {
                         append("[DEBUG] control port " + port + " is free, starting node...");
                         persistControlUrl(tfUrl.getText());
-                        node.startIfNeeded();
+                        probe.setUrl("ws://localhost:" + port + "/control?control=1");
+                        supervisor.start();
                         append("Локальный сервер " + resolveConfiguredUrlForLog() + " запущен.");
                     } else {
                         append("[WARN] Порт " + port + " так и не освободился. " +
@@ -540,7 +611,7 @@ public class WebSocketController {
     @FXML
     public void onToggleServer() {
         try {
-            if (node.isRunning()) {
+            if (serverActive()) {
                 // ===== ВЕТКА "Server Off" =====
                 append("[DEBUG] onToggleServer(): stopping...");
                 fx(() -> {
@@ -596,15 +667,156 @@ public class WebSocketController {
     private void updateServerToggleText() {
         fx(() -> {
             if (btnServerToggle != null) {
-                btnServerToggle.setText(node != null && node.isRunning() ? "Server Off" : "Start server");
+                btnServerToggle.setText(serverActive() ? "Server Off" : "Start server");
             }
         });
     }
 
+    // работает или ждёт перезапуска после падения — "Server Off" в обоих случаях
+    private boolean serverActive() {
+        return node != null && (node.isRunning() || (supervisor != null && supervisor.isActive()));
+    }
+
+    // ===== Надзор за движком =====
+
+    private void onSupervisorStatus(NodeSupervisor.Status st) {
+        switch (st.state()) {
+            case RESTARTING, FAILED -> {
+                // control-соединение умерло вместе с движком; переподключимся, когда он ответит на пробу
+                if (client != null) {
+                    reconnectAfterRestart = !disconnectInProgress;
+                    client = null;
+                    resetSessionState();
+                    updateConnectToggleText();
+                }
+                if (st.state() == NodeSupervisor.State.FAILED) {
+                    reconnectAfterRestart = false;
+                    showBanner("Сервер упал и не поднимается: " + st.reason());
+                }
+            }
+            case RUNNING -> {
+                if (st.responding() && reconnectAfterRestart) {
+                    reconnectAfterRestart = false;
+                    append("Сервер перезапущен, переподключаемся...");
+                    onConnect();
+                }
+            }
+            case STOPPED -> reconnectAfterRestart = false;
+        }
+        updateServerToggleText();
+        updateServerButtonsVisual();
+
+        boolean tick = st.state() == NodeSupervisor.State.RUNNING;
+        if (tick && healthTicker == null) {
+            // аптайм в панели тикает раз в секунду, пока процесс работает
+            healthTicker = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateServerHealth(supervisor.status())));
+            healthTicker.setCycleCount(Timeline.INDEFINITE);
+            healthTicker.play();
+        } else if (!tick && healthTicker != null) {
+            healthTicker.stop();
+            healthTicker = null;
+        }
+    }
+
+    // ===== Группа экземпляров =====
+
+    @FXML
+    public void onToggleGroup() {
+        if (group.isRunning()) {
+            btnGroup.setDisable(true);
+            Thread t = new Thread(() -> {
+                try {
+                    group.stop();
+                } finally {
+                    fx(() -> {
+                        btnGroup.setDisable(false);
+                        updateGroupLabel();
+                    });
+                }
+            }, "ws-engine-group-stop");
+            t.setDaemon(true);
+            t.start();
+            return;
+        }
+
+        List<String> scenarios = cbScenario.getItems().isEmpty() ? List.of("default") : new ArrayList<>(cbScenario.getItems());
+        String scenario = cbScenario.getValue() != null ? cbScenario.getValue() : scenarios.get(0);
+        // по умолчанию — процесс на ядро, одно ядро оставляем UI и одиночному серверу
+        int count = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() - 1));
+        EngineGroupDialog dialog = new EngineGroupDialog(scenarios, scenario, count, resolveControlPort() + 1,
+                NodeServerGroup.MAX_INSTANCES);
+        if (btnGroup.getScene() != null) dialog.initOwner(btnGroup.getScene().getWindow());
+        Optional<EngineGroupDialog.Plan> plan = dialog.showAndWait();
+        if (plan.isEmpty()) return;
+
+        btnGroup.setDisable(true);
+        Thread t = new Thread(() -> {
+            try {
+                group.start(plan.get().basePort(), plan.get().scenarios());
+            } catch (Exception e) {
+                append("Ошибка запуска группы: " + e.getMessage());
+                fx(() -> showBanner("Ошибка запуска группы: " + e.getMessage()));
+            } finally {
+                fx(() -> {
+                    btnGroup.setDisable(false);
+                    updateGroupLabel();
+                });
+            }
+        }, "ws-engine-group-start");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void updateGroupLabel() {
+        if (btnGroup == null || lblGroup == null) return;
+        List<NodeServerGroup.Instance> list = group.instances();
+        btnGroup.setText(list.isEmpty() ? "Группа…" : "Стоп группы");
+        if (list.isEmpty()) {
+            lblGroup.setText("");
+            lblGroup.setTooltip(null);
+            return;
+        }
+        int up = 0;
+        int restarts = 0;
+        for (NodeServerGroup.Instance inst : list) {
+            NodeSupervisor.Status st = inst.supervisor().status();
+            if (st.state() == NodeSupervisor.State.RUNNING) up++;
+            restarts += st.restarts();
+        }
+        lblGroup.setText("Группа :" + list.get(0).port() + "–" + list.get(list.size() - 1).port()
+                + " · работают " + up + "/" + list.size() + (restarts > 0 ? " · перезапусков " + restarts : ""));
+        if (lblGroup.getTooltip() == null) {
+            // подробности по экземплярам собираются при наведении — там аптайм на текущий момент
+            Tooltip tip = new Tooltip();
+            tip.setOnShowing(e -> {
+                StringBuilder sb = new StringBuilder();
+                for (NodeServerGroup.Instance inst : group.instances()) {
+                    if (sb.length() > 0) sb.append('\n');
+                    sb.append(':').append(inst.port()).append("  ").append(inst.scenario())
+                            .append(" — ").append(inst.supervisor().status().describe());
+                }
+                tip.setText(sb.toString());
+            });
+            lblGroup.setTooltip(tip);
+        }
+    }
+
+    private void updateServerHealth(NodeSupervisor.Status st) {
+        if (lblServerHealth == null) return;
+        lblServerHealth.setText(st.describe());
+        Tooltip tip = lblServerHealth.getTooltip();
+        if (tip == null) {
+            tip = new Tooltip();
+            lblServerHealth.setTooltip(tip);
+        }
+        tip.setText(st.details());
+    }
+
     private void updateServerButtonsVisual() {
         fx(() -> {
             boolean running = node != null && node.isRunning();
             toggleClass(btnConnectToggle, "ws-inactive", !running);
+            if (supervisor != null) updateServerHealth(supervisor.status());
             append("[DEBUG] updateServerButtonsVisual(): running=" + running);
         });
     }
@@ -774,6 +986,7 @@ public class WebSocketController {
             }
 
             client.sendManualQuote(ops, replaceCurrent);
+            macroRecorder.recordManualQuote(ops, replaceCurrent);
             append("> manualQuote sent with " + ops.size() + " operations");
             hideBanner();
         } catch (Exception ex) {
@@ -781,6 +994,63 @@ public class WebSocketController {
         }
     }
 
+    // ===== РУЧНОЙ ВВОД: пакетная отправка =====
+    @FXML
+    public void onManualBulk() {
+        if (client == null || !client.isOpen()) {
+            showBanner("Нет соединения с сервером. Нажмите Connect.");
+            return;
+        }
+        if (btnManualBulk.isDisable()) return;
+
+        Optional<BulkQuoteDialog.Source> src = new BulkQuoteDialog(serverDir).showAndWait();
+        if (src.isEmpty()) return;
+
+        final boolean replaceCurrent = (chkEditCurrentLevel != null && chkEditCurrentLevel.isSelected());
+        final ControlClient target = client;
+        final BulkQuoteDialog.Source source = src.get();
+        final long startNanos = System.nanoTime();
+
+        btnManualBulk.setDisable(true);
+        btnManualBulk.setText("Разбор…");
+
+        // разбор (файл может быть большим) — вне FX-потока
+        CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        return source.file() != null
+                                ? BulkQuoteLoader.parse(source.file())
+                                : BulkQuoteLoader.parse(source.text());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .thenCompose(res -> {
+                    append("> bulk manualQuote: " + res.levels().size() + " уровней"
+                            + (res.skipped() > 0 ? ", пропущено " + res.skipped() : ""));
+                    return BulkQuoteSender.send(target, res.levels(), replaceCurrent,
+                            BulkQuoteSender.DEFAULT_CHUNK_BYTES, macroRecorder,
+                            pr -> fx(() -> btnManualBulk.setText("Bulk " + pr.chunksSent() + "/" + pr.chunksTotal())))
+                            .thenApply(chunks -> {
+                                double ms = (System.nanoTime() - startNanos) / 1_000_000.0;
+                                int n = res.levels().size();
+                                append(String.format("> bulk manualQuote sent: %d уровней, %d пачек за %.0f мс (%.0f уровней/с)",
+                                        n, chunks, ms, ms > 0 ? n * 1000.0 / ms : 0));
+                                return chunks;
+                            });
+                })
+                .whenComplete((v, ex) -> fx(() -> {
+                    btnManualBulk.setDisable(false);
+                    btnManualBulk.setText("Bulk…");
+                    if (ex != null) {
+                        Throwable c = (ex.getCause() != null) ? ex.getCause() : ex;
+                        showBanner("Bulk: ошибка — " + c.getMessage());
+                    } else {
+                        hideBanner();
+                    }
+                }));
+    }
+
     private double parseDouble(TextField tf, String name) {
         try {
             String s = tf == null ? null : tf.getText();
@@ -840,6 +1110,7 @@ public class WebSocketController {
 
         append("[DEBUG] sending SetScenario=" + desired + " (control connected)");
         client.setScenario(desired);
+        macroRecorder.recordScenario(desired);
         append("Кейс изменен на " + desired);
         updateConnectToggleText();
     }
@@ -858,7 +1129,10 @@ public class WebSocketController {
 
     // ===== Пульт: базовые команды =====
     private void sendCmd(String c) {
-        if (client != null) client.sendControl(c);
+        if (client != null) {
+            client.sendControl(c);
+            macroRecorder.recordCommand(c);
+        }
         append("> " + c);
         append("[DEBUG] control cmd sent: " + c);
     }
@@ -880,6 +1154,185 @@ public class WebSocketController {
     @FXML public void onClearBothDown() { sendCmd("quoteDelBothBottom1"); }
     @FXML public void onOneShot()   { sendCmd("quoteUpdate"); }
 
+    // ===== Макросы: запись / проигрывание =====
+    @FXML
+    public void onToggleMacroRecord() {
+        if (!macroRecorder.isRecording()) {
+            macroRecorder.start();
+            if (btnMacroRec != null) btnMacroRec.setText("Stop rec");
+            append("Запись макроса начата");
+            return;
+        }
+
+        List<MacroRecorder.Step> steps = macroRecorder.stop();
+        if (btnMacroRec != null) btnMacroRec.setText("Rec");
+        if (steps.isEmpty()) {
+            append("Запись макроса остановлена: шагов нет, файл не создан");
+            return;
+        }
+
+        Path file = macrosDir().resolve("macro-" + LocalDateTime.now().format(MACRO_FILE_TS) + ".wsm");
+        try {
+            MacroRecorder.write(file, steps);
+            append("Макрос сохранён (" + steps.size() + " шагов): " + file.toAbsolutePath());
+        } catch (IOException e) {
+            showBanner("Не удалось сохранить макрос: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    public void onMacroPlay() {
+        if (macroPlayer != null && macroPlayer.isPlaying()) {
+            macroPlayer.cancel();
+            return;
+        }
+        if (client == null || !client.isOpen()) {
+            showBanner("Нет соединения с сервером. Нажмите Connect.");
+            return;
+        }
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Выберите макрос");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("WS macro", "*.wsm"));
+        Path dir = macrosDir();
+        if (Files.isDirectory(dir)) fc.setInitialDirectory(dir.toFile());
+
+        Window owner = btnMacroPlay != null && btnMacroPlay.getScene() != null ? btnMacroPlay.getScene().getWindow() : null;
+        File f = fc.showOpenDialog(owner);
+        if (f == null) return;
+
+        final List<MacroRecorder.Step> steps;
+        try {
+            steps = MacroRecorder.read(f.toPath());
+        } catch (Exception e) {
+            showBanner("Не удалось прочитать макрос: " + e.getMessage());
+            return;
+        }
+
+        final double speed = resolveMacroSpeed();
+        stopMacroPlayer();
+        macroPlayer = new MacroPlayer(client);
+        final long gen = ++macroGen;
+
+        if (btnMacroPlay != null) btnMacroPlay.setText("Stop");
+        append("Проигрывание макроса " + f.getName() + " (" + steps.size() + " шагов, "
+                + (speed <= 0 ? "max" : speed + "x") + ")");
+
+        macroPlayer.play(steps, speed).whenComplete((r, ex) -> fx(() -> {
+            if (gen == macroGen && btnMacroPlay != null) btnMacroPlay.setText("Play");
+            if (ex != null) {
+                showBanner("Ошибка проигрывания макроса: " + ex.getMessage());
+            } else {
+                append("Макрос: " + r.describe());
+            }
+        }));
+    }
+
+    private double resolveMacroSpeed() {
+        String v = cbMacroSpeed == null ? null : cbMacroSpeed.getValue();
+        if (v == null || v.isBlank()) return 1.0;
+        if ("Max".equalsIgnoreCase(v)) return 0;
+        try {
+            return Double.parseDouble(v.replace("x", "").trim());
+        } catch (NumberFormatException e) {
+            return 1.0;
+        }
+    }
+
+    private void stopMacroPlayer() {
+        if (macroPlayer != null) {
+            macroPlayer.shutdown();
+            macroPlayer = null;
+        }
+    }
+
+    private Path macrosDir() {
+        return serverDir.resolve("macros");
+    }
+
+    // ===== Стакан =====
+    @FXML
+    public void onToggleBookTap() {
+        if (bookTap != null) {
+            stopBookTap();
+            return;
+        }
+        if (client == null || !client.isOpen()) {
+            showBanner("Нет соединения с сервером. Нажмите Connect.");
+            return;
+        }
+        startBookTap();
+    }
+
+    private void startBookTap() {
+        String url;
+        boolean zeroFlash;
+        SubscriberClient.Handshake hs;
+        try {
+            JsonNode n = mapper.readTree(Files.readString(messagesConfigPath, StandardCharsets.UTF_8));
+            url = n.path("url").asText("ws://localhost:8080");
+            zeroFlash = n.path("zeroFlash").asBoolean(true);
+            hs = SubscriberClient.Handshake.load(SubscriberClient.resolveProtocolFile(serverDir), BOOK_TAP_INSTRUMENT);
+        } catch (Exception e) {
+            showBanner("Не удалось подготовить tap-подключение: " + e.getMessage());
+            return;
+        }
+
+        OrderBookFeed feed = new OrderBookFeed(new OrderBookModel(), zeroFlash);
+        OrderBookMirror mirror = new OrderBookMirror(feed.model());
+        feed.setMirror(mirror);
+        SubscriberClient tap = new SubscriberClient(hs, feed);
+        feed.setOnClosed((code, reason) -> fx(() -> onBookTapClosed(tap, reason)));
+
+        if (bookHttp == null) bookHttp = HttpClient.newHttpClient();
+        bookTap = tap;
+        // команды с пульта попадают в сверку до отправки — ответ tap не может их обогнать
+        client.setCommandObserver(mirror);
+        bookView.setMirror(mirror);
+        bookView.setModel(feed.model());
+        setNodeVisible(bookView, true);
+        btnBookTap.setText("Скрыть стакан");
+
+        tap.connect(bookHttp, url)
+                .thenRun(() -> append("[DEBUG] book tap connected: " + url + " (учитывается в clientsActive)"))
+                .exceptionally(ex -> {
+                    fx(() -> {
+                        if (bookTap == tap) stopBookTap();
+                        showBanner("Tap-подключение не удалось: " + ex.getMessage());
+                    });
+                    return null;
+                });
+    }
+
+    // SetScenario на сервере закрывает всех пользователей — tap переподключаем, остальное считаем остановкой
+    private void onBookTapClosed(SubscriberClient tap, String reason) {
+        if (bookTap != tap) return;
+        if ("scenario_change".equals(reason) && client != null && client.isOpen()) {
+            append("[DEBUG] book tap closed by scenario change, reconnecting");
+            bookTap = null;
+            Timeline retry = new Timeline(new KeyFrame(Duration.millis(400), e -> {
+                if (bookTap == null && client != null && client.isOpen()) startBookTap();
+            }));
+            retry.play();
+            return;
+        }
+        append("[DEBUG] book tap closed: " + reason);
+        stopBookTap();
+    }
+
+    private void stopBookTap() {
+        SubscriberClient tap = bookTap;
+        bookTap = null;
+        if (tap != null) tap.close();
+        if (client != null) client.setCommandObserver(null);
+        if (bookView != null) {
+            bookView.setMirror(null);
+            bookView.setModel(null);
+            setNodeVisible(bookView, false);
+        }
+        if (btnBookTap != null) btnBookTap.setText("Стакан");
+    }
+
     @FXML public void onOpenConfig() {
         try {
             Path p = messagesConfigPath;
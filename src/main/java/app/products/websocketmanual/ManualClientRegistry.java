@@ -0,0 +1,157 @@
+package app.products.websocketmanual;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подключённые клиенты manual-сервера, восстановленные из потока событий connect/disconnect.
+ *
+ * Хеш-индекс с порядком подключения: add/remove/contains — O(1), без чтения clients.json.
+ * Снимок id в порядке подключения собирается лениво и кешируется до следующего изменения.
+ * Для UI есть живой ObservableList ({@link #observableIds()}): подключение — добавление
+ * в конец, отключение — перенос последнего элемента на место удалённого, оба O(1).
+ * Используется только из FX-потока.
+ */
+public final class ManualClientRegistry {
+
+    /** Инкрементальные уведомления для UI. */
+    public interface Listener {
+        void onAdded(String clientId);
+        void onRemoved(String clientId);
+    }
+
+    private final LinkedHashMap<String, Long> connectedAt = new LinkedHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final IdList observable = new IdList();
+    private List<String> idsView = List.of();
+    private boolean idsDirty;
+
+    /** @return false, если клиент уже был в реестре */
+    public boolean add(String clientId, long timeMs) {
+        if (clientId == null || clientId.isBlank()) return false;
+        if (connectedAt.putIfAbsent(clientId, timeMs) != null) return false;
+        idsDirty = true;
+        observable.append(clientId);
+        for (Listener l : listeners) l.onAdded(clientId);
+        return true;
+    }
+
+    public boolean remove(String clientId) {
+        if (connectedAt.remove(clientId) == null) return false;
+        idsDirty = true;
+        observable.swapRemove(clientId);
+        for (Listener l : listeners) l.onRemoved(clientId);
+        return true;
+    }
+
+    public boolean contains(String clientId) { return connectedAt.containsKey(clientId); }
+
+    public int size() { return connectedAt.size(); }
+
+    public boolean isEmpty() { return connectedAt.isEmpty(); }
+
+    /** Время подключения (мс) или -1. */
+    public long connectedAt(String clientId) {
+        Long t = connectedAt.get(clientId);
+        return t == null ? -1 : t;
+    }
+
+    /** Неизменяемый снимок id в порядке подключения. */
+    public List<String> ids() {
+        if (idsDirty) {
+            idsView = Collections.unmodifiableList(new ArrayList<>(connectedAt.keySet()));
+            idsDirty = false;
+        }
+        return idsView;
+    }
+
+    public void clear() {
+        if (connectedAt.isEmpty()) return;
+        List<String> removed = new ArrayList<>(connectedAt.keySet());
+        connectedAt.clear();
+        idsDirty = true;
+        observable.removeAllIds();
+        for (String id : removed) {
+            for (Listener l : listeners) l.onRemoved(id);
+        }
+    }
+
+    /** Первые limit id в порядке подключения — без копирования всего реестра. */
+    public List<String> firstIds(int limit) {
+        List<String> out = new ArrayList<>(Math.min(limit, connectedAt.size()));
+        for (String id : connectedAt.keySet()) {
+            if (out.size() >= limit) break;
+            out.add(id);
+        }
+        return out;
+    }
+
+    /** Живой список id для ComboBox/ListView (порядок после отключений не гарантирован). */
+    public ObservableList<String> observableIds() { return observable; }
+
+    public void addListener(Listener l) {
+        if (l != null) listeners.add(l);
+    }
+
+    // ===== Живой список с O(1) добавлением и удалением =====
+    private static final class IdList extends ObservableListBase<String> {
+        private final ArrayList<String> items = new ArrayList<>();
+        private final Map<String, Integer> pos = new HashMap<>();
+
+        void append(String id) {
+            int i = items.size();
+            items.add(id);
+            pos.put(id, i);
+            beginChange();
+            nextAdd(i, i + 1);
+            endChange();
+        }
+
+        void swapRemove(String id) {
+            Integer i = pos.remove(id);
+            if (i == null) return;
+            int last = items.size() - 1;
+            beginChange();
+            if (i != last) {
+                String moved = items.get(last);
+                items.set(i, moved);
+                pos.put(moved, i);
+                nextSet(i, id);
+                items.remove(last);
+                nextRemove(last, moved);
+            } else {
+                items.remove(last);
+                nextRemove(last, id);
+            }
+            endChange();
+        }
+
+        void removeAllIds() {
+            if (items.isEmpty()) return;
+            List<String> removed = new ArrayList<>(items);
+            items.clear();
+            pos.clear();
+            beginChange();
+            nextRemove(0, removed);
+            endChange();
+        }
+
+        @Override public String get(int index) { return items.get(index); }
+
+        @Override public int size() { return items.size(); }
+
+        @Override public boolean contains(Object o) { return pos.containsKey(o); }
+
+        @Override public int indexOf(Object o) {
+            Integer i = pos.get(o);
+            return i == null ? -1 : i;
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package app.products.websocketmanual;
 
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.scene.control.ComboBox;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Objects;
-import java.util.function.Supplier;
 
+/**
+ * Комбобокс, смотрящий прямо в живой список (например, {@link ManualClientRegistry#observableIds()}).
+ * Элементы не копируются: popup — виртуализированный ListView и получает только дельты.
+ * Следит лишь за тем, чтобы выбранное значение оставалось в списке: если клиент отключился,
+ * выбор сбрасывается, а не переходит на другого — адресата пользователь выбирает сам.
+ */
 public final class ManualComboController {
 
     private final ComboBox<String> combo;
-    private final Supplier<List<String>> itemsSupplier;
+    private final ObservableList<String> items;
 
-    public ManualComboController(ComboBox<String> combo, Supplier<List<String>> itemsSupplier) {
+    public ManualComboController(ComboBox<String> combo, ObservableList<String> items) {
         this.combo = Objects.requireNonNull(combo, "combo");
-        this.itemsSupplier = Objects.requireNonNull(itemsSupplier, "itemsSupplier");
+        this.items = Objects.requireNonNull(items, "items");
         init();
     }
 
@@ -23,26 +28,18 @@ public final class ManualComboController {
         combo.setDisable(false);
 
         // Берём promptText из FXML, не трогаем его здесь
-        combo.setOnShowing(e -> refresh());
-    }
-
-    public void refresh() {
-        List<String> items = itemsSupplier.get();
-        if (items == null) {
-            items = Collections.emptyList();
-        }
-
-        combo.getItems().setAll(items);
+        combo.setItems(items);
+        combo.setVisibleRowCount(12);
 
-        // Не выключаем комбобокс, просто сбрасываем выбор если пусто
-        if (items.isEmpty()) {
-            combo.setValue(null);
-        } else {
+        items.addListener((ListChangeListener<String>) c -> {
+            // отключение/подключение — проверка одного значения, без прохода по списку
             String current = combo.getValue();
-            if (current == null || !items.contains(current)) {
-                combo.setValue(items.get(0));
-            }
-        }
+            if (current != null && !items.contains(current)) combo.setValue(null);
+        });
+    }
+
+    public void select(String value) {
+        if (value != null && items.contains(value)) combo.setValue(value);
     }
 
     public String getSelectedValue() {
@@ -0,0 +1,27 @@
+package app.products.websocketmanual;
+
+/**
+ * Типизированное событие manual-сервера, разобранное из строки stdout вне FX-потока.
+ * timeMs — момент чтения строки, а не момент применения к UI.
+ */
+public sealed interface ManualEvent {
+
+    /** Строка для консоли (каждая строка stdout/stderr, уже с временем). */
+    record LogLine(String text) implements ManualEvent {}
+
+    record ClientConnected(String clientId) implements ManualEvent {}
+
+    record ClientDisconnected(String clientId) implements ManualEvent {}
+
+    /**
+     * Сообщение клиента; pong — ответ на WebSocket Ping (показывается как обычное входящее).
+     * rttMicros — время ping→pong, измеренное сервером, или -1 (не pong / ping не найден).
+     */
+    record ClientMessage(String clientId, String payload, long timeMs, boolean pong, long rttMicros) implements ManualEvent {}
+
+    /** Замер RTT фонового ping: во входящие не попадает. */
+    record ClientRtt(String clientId, long rttMicros, long timeMs) implements ManualEvent {}
+
+    /** Эхо отправки сервером клиенту. */
+    record ServerSend(String clientId, String payload, long timeMs) implements ManualEvent {}
+}
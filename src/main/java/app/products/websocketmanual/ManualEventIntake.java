@@ -0,0 +1,92 @@
+package app.products.websocketmanual;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Очередь событий manual-сервера между потоком чтения stdout и FX-потоком.
+ *
+ * Поток пайпа кладёт события через {@link #offer}; раз в кадр (AnimationTimer) накопленное
+ * забирается пачкой не больше maxPerFrame и отдаётся обработчику одним вызовом.
+ * Остаток переносится на следующий кадр, так что окно не замирает при любом потоке сообщений.
+ *
+ * Очередь ограничена capacity: сверх неё события отбрасываются и считаются ({@link #takeDropped}),
+ * поток пайпа при этом не блокируется. Подключения/отключения клиентов не отбрасываются —
+ * без них разъедется список клиентов. После {@link #close()} всё отбрасывается молча.
+ */
+public final class ManualEventIntake {
+
+    private final ConcurrentLinkedQueue<ManualEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int maxPerFrame;
+    private final int capacity;
+    private final List<ManualEvent> batch = new ArrayList<>();
+
+    private volatile boolean closed;
+    private Consumer<List<ManualEvent>> onBatch;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override public void handle(long now) { drain(); }
+    };
+
+    public ManualEventIntake(int maxPerFrame, int capacity, Consumer<List<ManualEvent>> onBatch) {
+        this.maxPerFrame = Math.max(1, maxPerFrame);
+        this.capacity = Math.max(this.maxPerFrame, capacity);
+        this.onBatch = onBatch;
+    }
+
+    /** Из любого потока. */
+    public void offer(ManualEvent e) {
+        if (closed) return;
+        boolean lifecycle = e instanceof ManualEvent.ClientConnected || e instanceof ManualEvent.ClientDisconnected;
+        if (queued.incrementAndGet() > capacity && !lifecycle) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(e);
+    }
+
+    /** Сколько событий ждёт применения. */
+    public long backlog() { return queued.get(); }
+
+    /** Сколько событий отброшено по переполнению с прошлого вызова. */
+    public long takeDropped() { return dropped.getAndSet(0); }
+
+    public void start() {
+        if (!closed) timer.start();
+    }
+
+    public void stop() { timer.stop(); }
+
+    /** Экран закрыт: остановить таймер, выбросить накопленное и больше не принимать события (FX-поток). */
+    public void close() {
+        closed = true;
+        timer.stop();
+        queue.clear();
+        queued.set(0);
+        onBatch = null;
+    }
+
+    private void drain() {
+        Consumer<List<ManualEvent>> sink = onBatch;
+        if (sink == null) return;
+
+        ManualEvent e;
+        while (batch.size() < maxPerFrame && (e = queue.poll()) != null) batch.add(e);
+        if (batch.isEmpty()) return;
+
+        queued.addAndGet(-batch.size());
+        try {
+            sink.accept(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+}
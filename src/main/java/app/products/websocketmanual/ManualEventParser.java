@@ -0,0 +1,129 @@
+package app.products.websocketmanual;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+/**
+ * Разбор вывода manual-сервера в {@link ManualEvent}: строки stdout ("[MANUAL] CLIENT_MESSAGE id=... payload=...")
+ * или кадры IPC ({"e":"message","id":...,"payload":...}).
+ * Вызывается из потока чтения пайпа/канала; на FX-поток уходят уже готовые события.
+ */
+public final class ManualEventParser {
+
+    private static final String TAG = "[MANUAL] ";
+    private static final String RTT_LINE = TAG + "CLIENT_RTT";
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private ManualEventParser() {}
+
+    /**
+     * Одна строка даёт LogLine для консоли и, если это событие клиента, типизированное событие.
+     * @param typed false — события приходят по IPC, stdout только для консоли
+     */
+    public static void parse(String line, boolean typed, Consumer<ManualEvent> out) {
+        long now = System.currentTimeMillis();
+        // замеры фонового ping в консоль не идут — их по строке на клиента на каждый тик
+        if (!line.startsWith(RTT_LINE)) out.accept(new ManualEvent.LogLine(LocalTime.now().format(TIME_FMT) + " " + line));
+
+        if (!typed || !line.startsWith(TAG)) return;
+        int kindStart = TAG.length();
+
+        if (line.startsWith("CLIENT_CONNECTED", kindStart)) {
+            String id = extractId(line);
+            if (id != null && !id.isBlank()) out.accept(new ManualEvent.ClientConnected(id));
+        } else if (line.startsWith("CLIENT_DISCONNECTED", kindStart)) {
+            String id = extractId(line);
+            if (id != null && !id.isBlank()) out.accept(new ManualEvent.ClientDisconnected(id));
+        } else if (line.startsWith("CLIENT_MESSAGE", kindStart) || line.startsWith("CLIENT_PONG", kindStart)) {
+            String id = extractId(line);
+            String payload = extractPayload(line);
+            if (id != null && payload != null) {
+                boolean pong = line.startsWith("CLIENT_PONG", kindStart);
+                long rtt = pong ? parseLong(extractField(line, "rtt_us=")) : -1;
+                out.accept(new ManualEvent.ClientMessage(id, payload, now, pong, rtt));
+            }
+        } else if (line.startsWith("CLIENT_RTT", kindStart)) {
+            String id = extractId(line);
+            long rtt = parseLong(extractField(line, "rtt_us="));
+            if (id != null && rtt >= 0) out.accept(new ManualEvent.ClientRtt(id, rtt, now));
+        } else if (line.startsWith("SERVER_SEND_MULTI", kindStart)) {
+            // одна строка на рассылку: target=all|ids count=<N> payload=...
+            String target = extractField(line, "target=");
+            String count = extractField(line, "count=");
+            String payload = extractPayload(line);
+            if (payload != null) {
+                String label = ("all".equals(target) ? "ALL" : "IDS") + " x" + (count == null ? "?" : count);
+                out.accept(new ManualEvent.ServerSend(label, payload, now));
+            }
+        } else if (line.startsWith("SERVER_SEND", kindStart)) {
+            String id = extractId(line);
+            String payload = extractPayload(line);
+            if (id != null && payload != null) out.accept(new ManualEvent.ServerSend(id, payload, now));
+        }
+    }
+
+    /** Кадр IPC; null — событие, которое UI не интересует. */
+    public static ManualEvent fromIpc(JsonNode n) {
+        long now = System.currentTimeMillis();
+        String id = n.path("id").asText(null);
+        String payload = n.path("payload").asText(null);
+
+        switch (n.path("e").asText("")) {
+            case "connected":
+                return id == null ? null : new ManualEvent.ClientConnected(id);
+            case "disconnected":
+                return id == null ? null : new ManualEvent.ClientDisconnected(id);
+            case "message":
+                if (id == null || payload == null) return null;
+                return new ManualEvent.ClientMessage(id, payload, now, false, -1);
+            case "pong":
+                if (id == null || payload == null) return null;
+                return new ManualEvent.ClientMessage(id, payload, now, true, n.path("rttUs").asLong(-1));
+            case "rtt":
+                return id == null ? null : new ManualEvent.ClientRtt(id, n.path("rttUs").asLong(-1), now);
+            case "sent": {
+                if (payload == null) return null;
+                String target = n.path("target").asText("id");
+                String label = "id".equals(target)
+                        ? id
+                        : ("all".equals(target) ? "ALL" : "IDS") + " x" + n.path("count").asInt();
+                return new ManualEvent.ServerSend(label, payload, now);
+            }
+            default:
+                return null;
+        }
+    }
+
+    static String extractId(String line) {
+        return extractField(line, "id=");
+    }
+
+    // значение key=... до пробела; ищется только до payload=, чтобы не зацепить текст сообщения
+    static String extractField(String line, String key) {
+        int limit = line.indexOf("payload=");
+        int idx = line.indexOf(key);
+        if (idx < 0 || (limit >= 0 && idx > limit)) return null;
+        int start = idx + key.length();
+        int end = line.indexOf(' ', start);
+        if (end < 0) end = line.length();
+        return line.substring(start, end).trim();
+    }
+
+    private static long parseLong(String s) {
+        if (s == null) return -1;
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String extractPayload(String line) {
+        int idx = line.indexOf("payload=");
+        if (idx < 0) return null;
+        return line.substring(idx + "payload=".length()).trim();
+    }
+}
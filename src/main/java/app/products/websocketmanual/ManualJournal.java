@@ -0,0 +1,407 @@
+package app.products.websocketmanual;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Бинарный журнал трафика manual-сессии: append-only, сегменты отображены в память.
+ *
+ * Каталог сессии: journal/&lt;yyyyMMdd-HHmmss&gt;/segment-00000.mjl, segment-00001.mjl, ...
+ * Сегмент: 8 байт заголовка (magic + версия), дальше записи
+ * [int len][long seq][long tsNanos][byte dir][short clientLen][client UTF-8][payload UTF-8].
+ * len пишется последним, поэтому len == 0 — конец данных (и после сбоя тоже).
+ * Сегмент создаётся сразу полного размера; не поместившаяся запись открывает следующий.
+ *
+ * Запись — в отдельном потоке, FX-поток только отдаёт пачки.
+ * Для каждой записи помнится место (сегмент, смещение), поэтому полный payload
+ * читается по seq без сканирования — превью в UI хранит только начало текста.
+ */
+public final class ManualJournal {
+
+    public static final byte IN = 0;
+    public static final byte OUT = 1;
+
+    /** Одна запись журнала; tsNanos — наносекунды от эпохи. */
+    public record Entry(long seq, long tsNanos, byte dir, String clientId, String payload) {
+        public boolean outgoing() { return dir == OUT; }
+    }
+
+    private static final int MAGIC = 0x4D4A4C31; // "MJL1"
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_FIXED = 4 + 8 + 8 + 1 + 2;
+    private static final String SEGMENT_EXT = ".mjl";
+    private static final DateTimeFormatter SESSION_FMT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // эпоха в наносекундах: System.nanoTime() монотонен, привязываем его к часам один раз
+    private static final long EPOCH_NANOS_BASE = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private final Path sessionDir;
+    private final int segmentBytes;
+    private final boolean readOnly;
+
+    // поля ниже — только поток журнала
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int segmentIndex = -1;
+    private volatile long written;
+    private volatile long writtenBytes;
+    private volatile boolean failed;
+    private final Locations locations = new Locations();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ws-manual-journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ManualJournal(Path sessionDir, int segmentBytes, boolean readOnly) {
+        this.sessionDir = sessionDir;
+        this.segmentBytes = segmentBytes;
+        this.readOnly = readOnly;
+    }
+
+    /** Новая сессия в root; каталог создаётся при первой записи. */
+    public static ManualJournal createSession(Path root, int segmentBytes) {
+        String name = LocalDateTime.now().format(SESSION_FMT);
+        Path dir = root.resolve(name);
+        for (int i = 2; Files.exists(dir); i++) dir = root.resolve(name + "-" + i);
+        return new ManualJournal(dir, Math.max(64 * 1024, segmentBytes), false);
+    }
+
+    /** Прошлая сессия только для чтения payload по seq; индекс мест строится в фоне. */
+    public static ManualJournal openExisting(Path sessionDir) {
+        ManualJournal j = new ManualJournal(sessionDir, 0, true);
+        j.writer.execute(j::indexExisting);
+        return j;
+    }
+
+    /** Текущее время в наносекундах от эпохи (монотонно внутри процесса). */
+    public static long nowNanos() {
+        return EPOCH_NANOS_BASE + System.nanoTime();
+    }
+
+    public Path sessionDir() { return sessionDir; }
+
+    /** Пишет ли журнал новые записи: не только для чтения, не закрыт и запись не падала. */
+    public boolean isRecording() {
+        return !readOnly && !failed && !writer.isShutdown();
+    }
+
+    /** Из FX-потока; записи в пачке — в порядке seq. */
+    public void append(List<Entry> entries) {
+        if (entries.isEmpty() || readOnly) return;
+        try {
+            writer.execute(() -> {
+                try {
+                    for (Entry e : entries) write(e);
+                } catch (IOException ex) {
+                    failed = true;
+                    System.err.println("[WARN] ManualJournal: запись не удалась: " + ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ignore) {
+            // журнал закрыт
+        }
+    }
+
+    /**
+     * Полный payload записи с данным seq (null — такой записи нет).
+     * Выполняется в потоке журнала после уже поставленных записей, так что свежее сообщение тоже найдётся.
+     */
+    public CompletableFuture<String> readPayload(long seq) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                int i = locations.find(seq);
+                if (i < 0) return null;
+                try {
+                    return readPayloadAt(segmentFile(locations.segment[i]), locations.offset[i]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, writer);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /** Закрыть текущий сегмент после уже поставленных записей; следующий append откроет новый. */
+    public void flush() {
+        try {
+            writer.execute(this::closeSegment);
+        } catch (RejectedExecutionException ignore) {
+        }
+    }
+
+    /** Окончательно: дописать очередь, закрыть сегмент, остановить поток. */
+    public void close() {
+        try {
+            writer.execute(this::closeSegment);
+        } catch (RejectedExecutionException ignore) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===== Запись (поток журнала) =====
+
+    private void write(Entry e) throws IOException {
+        byte[] client = e.clientId() == null ? new byte[0] : e.clientId().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = e.payload() == null ? new byte[0] : e.payload().getBytes(StandardCharsets.UTF_8);
+        int clientLen = Math.min(client.length, Short.MAX_VALUE);
+        int len = RECORD_FIXED - 4 + clientLen + payload.length;
+
+        if (map == null || map.remaining() < 4 + len) openSegment(HEADER_BYTES + 4 + len);
+
+        int pos = map.position();
+        map.position(pos + 4);
+        map.putLong(e.seq());
+        map.putLong(e.tsNanos());
+        map.put(e.dir());
+        map.putShort((short) clientLen);
+        map.put(client, 0, clientLen);
+        map.put(payload);
+        // длина — последней: читатель не увидит недописанную запись
+        map.putInt(pos, len);
+        locations.add(e.seq(), segmentIndex, pos);
+
+        written++;
+        writtenBytes += 4 + len;
+    }
+
+    private void openSegment(int minBytes) throws IOException {
+        closeSegment();
+        Files.createDirectories(sessionDir);
+        segmentIndex = nextSegmentIndex(segmentIndex);
+        Path file = segmentFile(segmentIndex);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minBytes));
+        map.putInt(MAGIC);
+        map.putInt(1);
+    }
+
+    // после flush() сессия продолжается в новом сегменте — номер ищем по каталогу
+    private int nextSegmentIndex(int current) throws IOException {
+        int max = current;
+        for (Path p : listSegments(sessionDir)) max = Math.max(max, segmentNumber(p));
+        return max + 1;
+    }
+
+    private void closeSegment() {
+        if (map != null) map.force();
+        map = null;
+        try { if (channel != null) channel.close(); } catch (IOException ignore) {}
+        channel = null;
+    }
+
+    private Path segmentFile(int index) {
+        return sessionDir.resolve(String.format("segment-%05d%s", index, SEGMENT_EXT));
+    }
+
+    // только заголовки записей: seq и место, payload не декодируется
+    private void indexExisting() {
+        try {
+            for (Path seg : listSegments(sessionDir)) {
+                int segNo = segmentNumber(seg);
+                try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ)) {
+                    long size = ch.size();
+                    if (size < HEADER_BYTES) continue;
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    if (buf.getInt() != MAGIC) continue;
+                    buf.getInt();
+                    while (buf.remaining() >= 4) {
+                        int pos = buf.position();
+                        int len = buf.getInt();
+                        if (len <= 0 || len > buf.remaining() || len < RECORD_FIXED - 4) break;
+                        locations.add(buf.getLong(pos + 4), segNo, pos);
+                        buf.position(pos + 4 + len);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] ManualJournal: не удалось проиндексировать " + sessionDir + ": " + e.getMessage());
+        }
+    }
+
+    private static String readPayloadAt(Path segment, int pos) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4 + RECORD_FIXED - 4);
+            ch.read(head, pos);
+            head.flip();
+            int len = head.getInt();
+            head.position(4 + 8 + 8 + 1);
+            int clientLen = head.getShort();
+            int payloadLen = len - (RECORD_FIXED - 4) - clientLen;
+            if (payloadLen < 0) return null;
+
+            ByteBuffer body = ByteBuffer.allocate(payloadLen);
+            long at = pos + RECORD_FIXED + clientLen;
+            while (body.hasRemaining()) {
+                if (ch.read(body, at + body.position()) < 0) break;
+            }
+            return new String(body.array(), 0, body.position(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public long writtenRecords() { return written; }
+
+    public long writtenBytes() { return writtenBytes; }
+
+    // ===== Чтение =====
+
+    /** Каталоги сессий в root, новые первыми. */
+    public static List<Path> listSessions(Path root) throws IOException {
+        if (!Files.isDirectory(root)) return List.of();
+        try (Stream<Path> s = Files.list(root)) {
+            return s.filter(Files::isDirectory)
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .toList();
+        }
+    }
+
+    /**
+     * Последовательный проход по всем сегментам сессии.
+     * Можно вызывать и для текущей (пишущейся) сессии — увидит всё, что уже дописано.
+     * @return сколько записей прочитано
+     */
+    public static long scan(Path sessionDir, Consumer<Entry> sink) throws IOException {
+        long n = 0;
+        for (Path seg : listSegments(sessionDir)) {
+            try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size < HEADER_BYTES) continue;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buf.getInt() != MAGIC) continue;
+                buf.getInt(); // версия
+                n += scanSegment(buf, sink);
+            }
+        }
+        return n;
+    }
+
+    private static long scanSegment(ByteBuffer buf, Consumer<Entry> sink) {
+        long n = 0;
+        while (buf.remaining() >= 4) {
+            int len = buf.getInt();
+            if (len <= 0 || len > buf.remaining() || len < RECORD_FIXED - 4) break;
+            int end = buf.position() + len;
+
+            long seq = buf.getLong();
+            long ts = buf.getLong();
+            byte dir = buf.get();
+            int clientLen = buf.getShort();
+            String client = clientLen == 0 ? null : utf8(buf, clientLen);
+            String payload = utf8(buf, end - buf.position());
+            sink.accept(new Entry(seq, ts, dir, client, payload));
+            n++;
+        }
+        return n;
+    }
+
+    private static String utf8(ByteBuffer buf, int len) {
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Экспорт сессии в JSON Lines: {"seq","ts","dir","client","payload"} на строку. */
+    public static long exportJsonl(Path sessionDir, Path target) throws IOException {
+        JsonFactory f = new JsonFactory();
+        try (OutputStream os = Files.newOutputStream(target);
+             JsonGenerator g = f.createGenerator(os)) {
+            g.setRootValueSeparator(null);
+            long[] n = {0};
+            IOException[] err = {null};
+            scan(sessionDir, e -> {
+                if (err[0] != null) return;
+                try {
+                    g.writeStartObject();
+                    g.writeNumberField("seq", e.seq());
+                    g.writeNumberField("ts", e.tsNanos());
+                    g.writeStringField("dir", e.outgoing() ? "out" : "in");
+                    if (e.clientId() != null) g.writeStringField("client", e.clientId());
+                    g.writeStringField("payload", e.payload());
+                    g.writeEndObject();
+                    g.writeRaw('\n');
+                    n[0]++;
+                } catch (IOException ex) {
+                    err[0] = ex;
+                }
+            });
+            if (err[0] != null) throw err[0];
+            return n[0];
+        }
+    }
+
+    // ===== seq → место записи: параллельные массивы, seq возрастают =====
+    private static final class Locations {
+        long[] seq = new long[1024];
+        int[] segment = new int[1024];
+        int[] offset = new int[1024];
+        int size;
+
+        void add(long s, int seg, int off) {
+            if (size == seq.length) {
+                seq = Arrays.copyOf(seq, size * 2);
+                segment = Arrays.copyOf(segment, size * 2);
+                offset = Arrays.copyOf(offset, size * 2);
+            }
+            seq[size] = s;
+            segment[size] = seg;
+            offset[size] = off;
+            size++;
+        }
+
+        int find(long s) {
+            int i = Arrays.binarySearch(seq, 0, size, s);
+            return i < 0 ? -1 : i;
+        }
+    }
+
+    private static List<Path> listSegments(Path sessionDir) throws IOException {
+        if (!Files.isDirectory(sessionDir)) return List.of();
+        List<Path> out = new ArrayList<>();
+        try (Stream<Path> s = Files.list(sessionDir)) {
+            s.filter(p -> p.getFileName().toString().endsWith(SEGMENT_EXT)).forEach(out::add);
+        }
+        out.sort(Comparator.comparingInt(ManualJournal::segmentNumber));
+        return out;
+    }
+
+    private static int segmentNumber(Path p) {
+        String n = p.getFileName().toString();
+        try {
+            return Integer.parseInt(n.substring("segment-".length(), n.length() - SEGMENT_EXT.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
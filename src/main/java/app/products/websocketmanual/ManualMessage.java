@@ -0,0 +1,30 @@
+package app.products.websocketmanual;
+
+/**
+ * Одно сообщение manual-сессии: от кого/кому, когда получено и текст.
+ * Форматирование (время, префикс клиента) делается при отображении, не при хранении.
+ *
+ * text — превью; если fullLength больше его длины, полный payload лежит в журнале
+ * (см. {@link ManualJournal#readPayload}) и в куче не держится. Пока журнал не пишет
+ * (выключен, закрыт, ошибка записи), text хранится целиком.
+ *
+ * seq — сквозной номер в сессии (растёт в порядке поступления); по нему строка
+ * находится в буфере для результатов поиска. Для исходящих clientId — адресат
+ * (id или метка рассылки "ALL xN") или null для служебных строк.
+ */
+public record ManualMessage(long seq, String clientId, boolean outgoing, long timeMs, String text, int fullLength) {
+
+    // заголовок объекта + ссылки + массив строки (Latin-1 в compact strings, но считаем по UTF-16)
+    private static final int OVERHEAD_BYTES = 64;
+
+    /** Превью короче исходного payload. */
+    public boolean truncated() {
+        return text != null && fullLength > text.length();
+    }
+
+    /** Оценка занимаемой памяти в байтах — для лимита буфера. */
+    public long estimatedBytes() {
+        int chars = (text == null ? 0 : text.length()) + (clientId == null ? 0 : clientId.length());
+        return OVERHEAD_BYTES + 2L * chars;
+    }
+}
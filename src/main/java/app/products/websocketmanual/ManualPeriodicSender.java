@@ -0,0 +1,276 @@
+package app.products.websocketmanual;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Периодическая отправка шаблона с заданным темпом (нагрузочный режим manual-сервера).
+ *
+ * Планировщик — свой поток, как у {@link ManualReplay}: parkNanos до срока и короткий spin.
+ * Сроки считаются от старта (накопления ошибки нет), jitter сдвигает каждый интервал
+ * в пределах ±jitter от номинального, средний темп сохраняется. Всё, что к пробуждению
+ * уже пора отправить, уходит одной пачкой; если отставание больше maxLag, просроченные
+ * отправки пропускаются и считаются как drop — догонять залпом нельзя, это исказит нагрузку.
+ *
+ * Подстановки в шаблоне: {{seq}} — номер с 1, {{ts}} — epoch ms, {{iso}} — ISO-время, {{uuid}}.
+ */
+public final class ManualPeriodicSender {
+
+    /** Больше не даёт ни канал, ни планировщик (интервал 10 мкс). */
+    public static final double MAX_RATE_PER_SEC = 100_000;
+
+    /**
+     * @param ratePerSec     сообщений в секунду, (0, {@link #MAX_RATE_PER_SEC}]
+     * @param durationNanos  {@code <= 0} — до остановки
+     * @param jitter         доля 0..1 от интервала
+     */
+    public record Config(double ratePerSec, long durationNanos, double jitter, String template) {
+        public Config {
+            if (!(ratePerSec > 0) || ratePerSec > MAX_RATE_PER_SEC) {
+                throw new IllegalArgumentException("Темп должен быть в (0, " + (long) MAX_RATE_PER_SEC + "]: " + ratePerSec);
+            }
+            if (!Double.isFinite(jitter)) throw new IllegalArgumentException("Jitter должен быть числом");
+            if (template == null || template.isBlank()) throw new IllegalArgumentException("Пустой шаблон");
+            jitter = Math.max(0, Math.min(1, jitter));
+        }
+    }
+
+    /** Отправка пачки; false — канал недоступен, пачка считается потерянной. */
+    public interface Sink {
+        boolean send(List<String> payloads);
+    }
+
+    /**
+     * Отчёт (промежуточный или итоговый).
+     * lag — опоздание отправки относительно плана (текущее — по последней пачке).
+     * windowRate — темп за последний интервал отчёта.
+     */
+    public record Report(long sent, long dropped, long failed, long elapsedNanos,
+                         double targetRate, double achievedRate, double windowRate,
+                         double lagMs, double maxLagMs, long batches,
+                         boolean finished, boolean cancelled) {
+
+        public String describe() {
+            return String.format(
+                    "%d за %.1f с, %.1f сообщ/с (сейчас %.1f, цель %.1f), lag %.3f мс (max %.3f), пачек %d, drop %d%s%s",
+                    sent, elapsedNanos / 1_000_000_000.0, achievedRate, windowRate, targetRate,
+                    lagMs, maxLagMs, batches, dropped,
+                    failed > 0 ? ", не отправлено " + failed : "",
+                    cancelled ? " (остановлено)" : ""
+            );
+        }
+    }
+
+    private static final long SPIN_NANOS = 200_000;
+    private static final long PROGRESS_EVERY_NANOS = 1_000_000_000L;
+    private static final long MAX_LAG_NANOS = 1_000_000_000L;
+    private static final int MAX_BATCH = 256;
+
+    private final Sink sink;
+    private volatile Run current;
+
+    public ManualPeriodicSender(Sink sink) {
+        this.sink = sink;
+    }
+
+    public boolean isRunning() {
+        Run r = current;
+        return r != null && !r.done.isDone();
+    }
+
+    /** @param onProgress отчёт раз в секунду (в потоке отправки), может быть null */
+    public synchronized CompletableFuture<Report> start(Config config, Consumer<Report> onProgress) {
+        if (isRunning()) throw new IllegalStateException("Отправка уже идёт");
+        Run run = new Run(config, Template.compile(config.template()), onProgress);
+        current = run;
+        run.thread = new Thread(run::loop, "ws-manual-periodic");
+        run.thread.setDaemon(true);
+        run.thread.start();
+        return run.done;
+    }
+
+    /** Остановить; future завершится отчётом с cancelled=true. */
+    public void stop() {
+        Run r = current;
+        if (r == null) return;
+        r.cancelled = true;
+        if (r.thread != null) LockSupport.unpark(r.thread);
+    }
+
+    // ===== Один запуск (поля трогает только его поток) =====
+    private final class Run {
+        final Config config;
+        final Template template;
+        final Consumer<Report> onProgress;
+        final CompletableFuture<Report> done = new CompletableFuture<>();
+        final SplittableRandom random = new SplittableRandom();
+        final double intervalNanos;
+        volatile boolean cancelled;
+        Thread thread;
+
+        long start;
+        long seq, sent, dropped, failed, batches;
+        long lastLag, maxLag;
+        long windowStart, windowSent;
+        double windowRate;
+
+        Run(Config config, Template template, Consumer<Report> onProgress) {
+            this.config = config;
+            this.template = template;
+            this.onProgress = onProgress;
+            this.intervalNanos = 1_000_000_000.0 / config.ratePerSec();
+        }
+
+        void loop() {
+            List<String> batch = new ArrayList<>(MAX_BATCH);
+            StringBuilder sb = new StringBuilder(config.template().length() + 32);
+            long duration = config.durationNanos();
+            start = System.nanoTime();
+            windowStart = start;
+            long nextProgress = start + PROGRESS_EVERY_NANOS;
+            double plannedOffset = 0;       // номинальный срок от старта (без jitter)
+            long due = start;
+            try {
+                while (!cancelled) {
+                    if (duration > 0 && due - start >= duration) break;
+                    waitUntil(due);
+                    if (cancelled) break;
+
+                    long now = System.nanoTime();
+                    batch.clear();
+                    long wallMs = System.currentTimeMillis();
+                    // не больше MAX_BATCH сроков за проход, включая пропущенные, — stop() и отчёт не ждут
+                    for (int steps = 0; steps < MAX_BATCH && !cancelled && due <= now
+                            && (duration <= 0 || due - start < duration); steps++) {
+                        long lag = now - due;
+                        seq++;
+                        if (lag > MAX_LAG_NANOS) {
+                            dropped++;
+                        } else {
+                            lastLag = lag;
+                            if (lag > maxLag) maxLag = lag;
+                            batch.add(template.render(sb, seq, wallMs));
+                        }
+                        plannedOffset += intervalNanos;
+                        due = start + (long) (plannedOffset + jitterNanos());
+                    }
+
+                    if (!batch.isEmpty()) {
+                        boolean ok;
+                        try {
+                            ok = sink.send(batch);
+                        } catch (RuntimeException e) {
+                            ok = false;
+                        }
+                        if (ok) {
+                            sent += batch.size();
+                            windowSent += batch.size();
+                        } else {
+                            failed += batch.size();
+                        }
+                        batches++;
+                    }
+
+                    if (now >= nextProgress) {
+                        windowRate = windowSent / ((now - windowStart) / 1_000_000_000.0);
+                        windowStart = now;
+                        windowSent = 0;
+                        nextProgress = now + PROGRESS_EVERY_NANOS;
+                        if (onProgress != null) onProgress.accept(report(false));
+                    }
+                }
+            } finally {
+                done.complete(report(true));
+            }
+        }
+
+        private double jitterNanos() {
+            double j = config.jitter();
+            return j == 0 ? 0 : intervalNanos * j * (2 * random.nextDouble() - 1);
+        }
+
+        private void waitUntil(long due) {
+            long rem;
+            while (!cancelled && (rem = due - System.nanoTime()) > 0) {
+                if (rem > SPIN_NANOS) LockSupport.parkNanos(rem - SPIN_NANOS);
+                else Thread.onSpinWait();
+            }
+        }
+
+        private Report report(boolean finished) {
+            long elapsed = System.nanoTime() - start;
+            double achieved = elapsed > 0 ? sent / (elapsed / 1_000_000_000.0) : 0;
+            return new Report(sent, dropped, failed, elapsed, config.ratePerSec(), achieved, windowRate,
+                    lastLag / 1_000_000.0, maxLag / 1_000_000.0, batches, finished, finished && cancelled);
+        }
+    }
+
+    // ===== Шаблон с подстановками (разбирается один раз на запуск) =====
+    static final class Template {
+        private static final String[] VARS = {"seq", "ts", "iso", "uuid"};
+
+        private final String[] literals; // literals[i] идёт перед vars[i]; последний — хвост
+        private final int[] vars;
+
+        private Template(String[] literals, int[] vars) {
+            this.literals = literals;
+            this.vars = vars;
+        }
+
+        static Template compile(String s) {
+            List<String> lits = new ArrayList<>();
+            List<Integer> vs = new ArrayList<>();
+            StringBuilder lit = new StringBuilder();
+            int i = 0;
+            while (i < s.length()) {
+                int open = s.indexOf("{{", i);
+                if (open < 0) break;
+                int close = s.indexOf("}}", open + 2);
+                if (close < 0) break;
+                int var = indexOfVar(s.substring(open + 2, close).trim());
+                if (var < 0) {
+                    // неизвестная переменная остаётся как есть
+                    lit.append(s, i, close + 2);
+                } else {
+                    lit.append(s, i, open);
+                    lits.add(lit.toString());
+                    lit.setLength(0);
+                    vs.add(var);
+                }
+                i = close + 2;
+            }
+            lit.append(s, i, s.length());
+            lits.add(lit.toString());
+            int[] varr = new int[vs.size()];
+            for (int k = 0; k < varr.length; k++) varr[k] = vs.get(k);
+            return new Template(lits.toArray(new String[0]), varr);
+        }
+
+        private static int indexOfVar(String name) {
+            for (int k = 0; k < VARS.length; k++) if (VARS[k].equals(name)) return k;
+            return -1;
+        }
+
+        String render(StringBuilder sb, long seq, long epochMs) {
+            if (vars.length == 0) return literals[0];
+            sb.setLength(0);
+            for (int k = 0; k < vars.length; k++) {
+                sb.append(literals[k]);
+                switch (vars[k]) {
+                    case 0 -> sb.append(seq);
+                    case 1 -> sb.append(epochMs);
+                    case 2 -> sb.append(Instant.ofEpochMilli(epochMs));
+                    default -> sb.append(UUID.randomUUID());
+                }
+            }
+            sb.append(literals[vars.length]);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package app.products.websocketmanual;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Повтор записанной последовательности исходящих сообщений одному клиенту.
+ *
+ * Режимы: исходные интервалы (по наносекундным меткам журнала) или фиксированный темп.
+ * Планировщик — свой поток: parkNanos до момента отправки и короткий spin в конце,
+ * так что точность не зависит от гранулярности ScheduledExecutor. Всё, что к моменту
+ * пробуждения уже пора отправить, уходит одной пачкой (один flush в IPC).
+ */
+public final class ManualReplay {
+
+    /** Шаг повтора: смещение от начала и payload. */
+    public record Step(long offsetNanos, String payload) {}
+
+    /** Отправка пачки адресату; false — канал недоступен, пачка считается потерянной. */
+    public interface Sink {
+        boolean send(List<String> payloads);
+    }
+
+    /**
+     * Отчёт (промежуточный или итоговый).
+     * skew — насколько фактическая отправка опоздала относительно плана.
+     */
+    public record Report(int sent, int failed, int total, long elapsedNanos,
+                         double targetRate, double achievedRate,
+                         double avgSkewMs, double maxSkewMs, int batches,
+                         boolean finished, boolean cancelled) {
+
+        public String describe() {
+            return String.format(
+                    "%d/%d за %.1f мс, %.1f сообщ/с (цель %.1f), skew avg=%.3f мс max=%.3f мс, пачек %d%s%s",
+                    sent, total, elapsedNanos / 1_000_000.0, achievedRate, targetRate,
+                    avgSkewMs, maxSkewMs, batches,
+                    failed > 0 ? ", не отправлено " + failed : "",
+                    cancelled ? " (прервано)" : ""
+            );
+        }
+    }
+
+    private static final long SPIN_NANOS = 200_000;            // последние 0.2 мс — активное ожидание
+    private static final long PROGRESS_EVERY_NANOS = 1_000_000_000L;
+    private static final int MAX_BATCH = 256;
+
+    private final Sink sink;
+    private volatile Run current;
+
+    public ManualReplay(Sink sink) {
+        this.sink = sink;
+    }
+
+    /** Шаги из записей журнала: смещения — разница меток от первой записи. */
+    public static List<Step> fromJournal(List<ManualJournal.Entry> entries) {
+        List<Step> steps = new ArrayList<>(entries.size());
+        if (entries.isEmpty()) return steps;
+        long t0 = entries.get(0).tsNanos();
+        for (ManualJournal.Entry e : entries) steps.add(new Step(Math.max(0, e.tsNanos() - t0), e.payload()));
+        return steps;
+    }
+
+    public boolean isPlaying() {
+        Run r = current;
+        return r != null && !r.done.isDone();
+    }
+
+    /**
+     * @param ratePerSec {@code <= 0} — исходные интервалы, иначе равномерно с этим темпом
+     * @param onProgress промежуточные отчёты раз в секунду (в потоке повтора), может быть null
+     */
+    public synchronized CompletableFuture<Report> play(List<Step> steps, double ratePerSec, Consumer<Report> onProgress) {
+        if (isPlaying()) throw new IllegalStateException("Повтор уже идёт");
+
+        int n = steps.size();
+        long[] plan = new long[n];
+        String[] payloads = new String[n];
+        for (int i = 0; i < n; i++) {
+            plan[i] = ratePerSec > 0 ? (long) (i * 1_000_000_000.0 / ratePerSec) : steps.get(i).offsetNanos();
+            payloads[i] = steps.get(i).payload();
+        }
+        double target = ratePerSec > 0 ? ratePerSec
+                : (n > 1 && plan[n - 1] > 0 ? (n - 1) / (plan[n - 1] / 1_000_000_000.0) : 0);
+
+        Run run = new Run(plan, payloads, target, onProgress);
+        current = run;
+        run.thread = new Thread(run::loop, "ws-manual-replay");
+        run.thread.setDaemon(true);
+        run.thread.start();
+        return run.done;
+    }
+
+    /** Прервать; future завершится отчётом с cancelled=true. */
+    public void cancel() {
+        Run r = current;
+        if (r == null) return;
+        r.cancelled = true;
+        if (r.thread != null) LockSupport.unpark(r.thread);
+    }
+
+    // ===== Одно проигрывание (поля трогает только его поток) =====
+    private final class Run {
+        final long[] plan;
+        final String[] payloads;
+        final double targetRate;
+        final Consumer<Report> onProgress;
+        final CompletableFuture<Report> done = new CompletableFuture<>();
+        volatile boolean cancelled;
+        Thread thread;
+
+        long start;
+        int sent, failed, batches;
+        long skewSum, skewMax;
+
+        Run(long[] plan, String[] payloads, double targetRate, Consumer<Report> onProgress) {
+            this.plan = plan;
+            this.payloads = payloads;
+            this.targetRate = targetRate;
+            this.onProgress = onProgress;
+        }
+
+        void loop() {
+            List<String> batch = new ArrayList<>(MAX_BATCH);
+            start = System.nanoTime();
+            long nextProgress = start + PROGRESS_EVERY_NANOS;
+            int i = 0;
+            try {
+                while (i < plan.length && !cancelled) {
+                    waitUntil(start + plan[i]);
+                    if (cancelled) break;
+
+                    long now = System.nanoTime();
+                    batch.clear();
+                    while (i < plan.length && start + plan[i] <= now && batch.size() < MAX_BATCH) {
+                        long skew = now - (start + plan[i]);
+                        skewSum += skew;
+                        if (skew > skewMax) skewMax = skew;
+                        batch.add(payloads[i++]);
+                    }
+
+                    boolean ok;
+                    try {
+                        ok = sink.send(batch);
+                    } catch (RuntimeException e) {
+                        ok = false;
+                    }
+                    if (ok) sent += batch.size();
+                    else failed += batch.size();
+                    batches++;
+
+                    if (onProgress != null && now >= nextProgress) {
+                        nextProgress = now + PROGRESS_EVERY_NANOS;
+                        onProgress.accept(report(false));
+                    }
+                }
+            } finally {
+                done.complete(report(true));
+            }
+        }
+
+        private void waitUntil(long due) {
+            long rem;
+            while (!cancelled && (rem = due - System.nanoTime()) > 0) {
+                if (rem > SPIN_NANOS) LockSupport.parkNanos(rem - SPIN_NANOS);
+                else Thread.onSpinWait();
+            }
+        }
+
+        private Report report(boolean finished) {
+            long elapsed = System.nanoTime() - start;
+            int handled = sent + failed;
+            double achieved = elapsed > 0 ? sent / (elapsed / 1_000_000_000.0) : 0;
+            double avgSkew = handled > 0 ? (skewSum / (double) handled) / 1_000_000.0 : 0;
+            return new Report(sent, failed, plan.length, elapsed, targetRate, achieved,
+                    avgSkew, skewMax / 1_000_000.0, batches, finished, finished && cancelled);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package app.products.websocketmanual;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RTT ping→pong по клиентам: скользящие гистограммы и перцентили.
+ *
+ * Гистограмма лог-линейная (8 корзин на каждую степень двойки, погрешность ~6%),
+ * фиксированного размера — запись O(1) без аллокаций. Окно скользящее из двух половин:
+ * текущая и предыдущая, перцентиль считается по обеим; при смене окна предыдущая
+ * выбрасывается. Так старые задержки уходят из p99 не позже чем через 2×WINDOW_MS.
+ * Используется только из FX-потока.
+ */
+public final class ManualRttStats {
+
+    /** Сводка по клиенту; времена в микросекундах, -1 — в окне нет замеров. */
+    public record Summary(long count, long lastMicros, long p50Micros, long p99Micros, long maxMicros) {
+
+        public String describe() {
+            if (count == 0) return "RTT: нет данных";
+            if (p50Micros < 0) return "RTT: нет свежих замеров (последний " + ms(lastMicros) + " мс)";
+            return "RTT p50 " + ms(p50Micros) + " · p99 " + ms(p99Micros) + " мс (n=" + count + ")";
+        }
+
+        private static String ms(long micros) {
+            return String.format("%.1f", micros / 1000.0);
+        }
+    }
+
+    static final long WINDOW_MS = 30_000;
+
+    private static final int SUB_BITS = 3;                    // 8 корзин на октаву
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXP = 36;                    // ~19 ч в мкс — с запасом
+    private static final int BUCKETS = SUB + (MAX_EXP - SUB_BITS) * SUB;
+
+    private final Map<String, Client> byClient = new HashMap<>();
+
+    public void record(String clientId, long rttMicros, long nowMs) {
+        if (clientId == null || rttMicros < 0) return;
+        byClient.computeIfAbsent(clientId, id -> new Client(nowMs)).record(rttMicros, nowMs);
+    }
+
+    /** null — по клиенту замеров не было. */
+    public Summary summary(String clientId, long nowMs) {
+        Client c = byClient.get(clientId);
+        return c == null ? null : c.summary(nowMs);
+    }
+
+    public void remove(String clientId) {
+        byClient.remove(clientId);
+    }
+
+    public void clear() {
+        byClient.clear();
+    }
+
+    // ===== Корзины =====
+
+    static int bucketOf(long v) {
+        if (v < SUB) return (int) Math.max(0, v);
+        int exp = 63 - Long.numberOfLeadingZeros(v);           // >= SUB_BITS
+        if (exp >= MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return SUB + (exp - SUB_BITS) * SUB + sub;
+    }
+
+    /** Середина корзины — оценка значения. */
+    static long valueOf(int bucket) {
+        if (bucket < SUB) return bucket;
+        int exp = (bucket - SUB) / SUB + SUB_BITS;
+        int sub = (bucket - SUB) % SUB;
+        long width = 1L << (exp - SUB_BITS);
+        long low = (1L << exp) + sub * width;
+        return low + width / 2;
+    }
+
+    // ===== Один клиент =====
+    private static final class Client {
+        private int[] current = new int[BUCKETS];
+        private int[] previous = new int[BUCKETS];
+        private long currentCount, previousCount;
+        private long currentMax, previousMax;
+        private long windowStart;
+        private long total, last;
+
+        Client(long nowMs) {
+            windowStart = nowMs;
+        }
+
+        void record(long v, long nowMs) {
+            rotate(nowMs);
+            current[bucketOf(v)]++;
+            currentCount++;
+            if (v > currentMax) currentMax = v;
+            total++;
+            last = v;
+        }
+
+        Summary summary(long nowMs) {
+            rotate(nowMs);
+            long n = currentCount + previousCount;
+            long max = Math.max(currentMax, previousMax);
+            if (n == 0) return new Summary(total, last, -1, -1, -1);
+            return new Summary(total, last,
+                    Math.min(max, percentile(n, 0.50)),
+                    Math.min(max, percentile(n, 0.99)),
+                    max);
+        }
+
+        private long percentile(long n, double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += current[b] + previous[b];
+                if (seen >= rank) return valueOf(b);
+            }
+            return valueOf(BUCKETS - 1);
+        }
+
+        private void rotate(long nowMs) {
+            long age = nowMs - windowStart;
+            if (age < WINDOW_MS) return;
+            if (age >= 2 * WINDOW_MS) {
+                // простаивали дольше окна — обе половины устарели
+                Arrays.fill(previous, 0);
+                previousCount = 0;
+                previousMax = 0;
+            } else {
+                int[] t = previous;
+                previous = current;
+                current = t;
+                previousCount = currentCount;
+                previousMax = currentMax;
+            }
+            Arrays.fill(current, 0);
+            currentCount = 0;
+            currentMax = 0;
+            windowStart = nowMs;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package app.products.websocketmanual;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Инвертированный индекс по трафику manual-сессии: токен → возрастающий список seq сообщений.
+ *
+ * Индексируются слова текста (буквы/цифры и _-.), а для JSON ещё имена полей, значения
+ * и пары "ключ:значение" (orderId:abc-1). Индексация и запросы идут в одном фоновом потоке,
+ * поэтому структура без блокировок; FX-поток только отправляет пачки и получает результат.
+ *
+ * Индекс помнит не больше maxDocs последних сообщений — старые seq отсекаются по окну
+ * и периодически вычищаются из списков.
+ */
+public final class ManualSearchIndex {
+
+    /**
+     * Документ для индексации: текст целиком, без обрезки для отображения,
+     * или уже разобранные токены ({@link #tokens}) — тогда text не нужен.
+     */
+    public record Doc(long seq, String clientId, boolean outgoing, String text, String[] tokens) {
+        public Doc(long seq, String clientId, boolean outgoing, String text) {
+            this(seq, clientId, outgoing, text, null);
+        }
+    }
+
+    public record Hit(long seq, String clientId, boolean outgoing) {}
+
+    /** hits — от новых к старым, не больше limit; total — всего совпадений. */
+    public record Result(List<Hit> hits, int total, long tookMicros) {}
+
+    private static final int MAX_TOKEN_LEN = 64;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final int maxDocs;
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final String[] docClient;
+    private final boolean[] docOutgoing;
+    private long lowSeq;            // seq меньше этого — вне окна
+    private long lastSeq = -1;
+    private int addedSinceCompact;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ws-manual-search-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ManualSearchIndex(int maxDocs) {
+        this.maxDocs = Math.max(1, maxDocs);
+        this.docClient = new String[this.maxDocs];
+        this.docOutgoing = new boolean[this.maxDocs];
+    }
+
+    /** Из FX-потока; пачки должны идти в порядке seq. */
+    public void submit(List<Doc> docs) {
+        if (docs.isEmpty()) return;
+        try {
+            worker.execute(() -> {
+                for (Doc d : docs) index(d);
+            });
+        } catch (RejectedExecutionException ignore) {
+            // индекс остановлен
+        }
+    }
+
+    /**
+     * Запрос: слова через пробел (AND), "ключ:значение" для JSON, "*" в конце — по префиксу.
+     * @param clientId null — по всем клиентам
+     */
+    public CompletableFuture<Result> query(String query, String clientId, int limit) {
+        try {
+            return CompletableFuture.supplyAsync(() -> search(query, clientId, limit), worker);
+        } catch (RejectedExecutionException e) {
+            // индекс остановлен — пустой ответ, а не исключение в FX-потоке
+            return CompletableFuture.completedFuture(new Result(List.of(), 0, 0));
+        }
+    }
+
+    public void clear() {
+        try {
+            worker.execute(() -> {
+                terms.clear();
+                Arrays.fill(docClient, null);
+                lowSeq = lastSeq + 1;
+            });
+        } catch (RejectedExecutionException ignore) {
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ===== Индексация (поток индекса) =====
+
+    private void index(Doc d) {
+        if (d.seq() <= lastSeq) return;
+        lastSeq = d.seq();
+        lowSeq = Math.max(lowSeq, lastSeq - maxDocs + 1);
+
+        int slot = (int) (d.seq() % maxDocs);
+        docClient[slot] = d.clientId();
+        docOutgoing[slot] = d.outgoing();
+
+        Set<String> tokens = new HashSet<>();
+        if (d.tokens() != null) Collections.addAll(tokens, d.tokens());
+        else tokenize(d.text(), tokens);
+        if (d.clientId() != null) tokens.add("client:" + d.clientId().toLowerCase(Locale.ROOT));
+        for (String t : tokens) terms.computeIfAbsent(t, k -> new Postings()).add(d.seq());
+
+        if (++addedSinceCompact >= Math.max(1024, maxDocs / 4)) compact();
+    }
+
+    // выкидываем seq за окном и пустые токены — иначе словарь растёт вместе с сессией
+    private void compact() {
+        addedSinceCompact = 0;
+        terms.values().removeIf(p -> p.dropBelow(lowSeq) == 0);
+    }
+
+    /** Токены текста без токена клиента — для Doc, разобранного вне потока индекса. */
+    public static String[] tokens(String text) {
+        Set<String> out = new HashSet<>();
+        tokenize(text, out);
+        return out.toArray(new String[0]);
+    }
+
+    static void tokenize(String text, Set<String> out) {
+        if (text == null || text.isEmpty()) return;
+        words(text, out);
+
+        String s = text.strip();
+        if (s.isEmpty() || (s.charAt(0) != '{' && s.charAt(0) != '[')) return;
+        try (JsonParser p = JSON.createParser(s)) {
+            String key = null;
+            JsonToken t;
+            while ((t = p.nextToken()) != null) {
+                if (t == JsonToken.FIELD_NAME) {
+                    key = p.currentName().toLowerCase(Locale.ROOT);
+                    addToken(key, out);
+                } else if (t.isScalarValue() && key != null) {
+                    String v = p.getText().toLowerCase(Locale.ROOT);
+                    addToken(key + ":" + v, out);
+                    key = null;
+                }
+            }
+        } catch (Exception ignore) {
+            // не JSON или обрезан — слов из текста достаточно
+        }
+    }
+
+    private static void words(String text, Set<String> out) {
+        int start = -1;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            boolean w = i < n && isWordChar(text.charAt(i));
+            if (w && start < 0) start = i;
+            else if (!w && start >= 0) {
+                addToken(trimPunct(text.substring(start, i)).toLowerCase(Locale.ROOT), out);
+                start = -1;
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+    }
+
+    // "abc." в конце предложения и "-5" ищутся как "abc" и "5"
+    private static String trimPunct(String w) {
+        int a = 0, b = w.length();
+        while (a < b && (w.charAt(a) == '.' || w.charAt(a) == '-')) a++;
+        while (b > a && (w.charAt(b - 1) == '.' || w.charAt(b - 1) == '-')) b--;
+        return w.substring(a, b);
+    }
+
+    private static void addToken(String t, Set<String> out) {
+        if (t.isEmpty() || t.length() > MAX_TOKEN_LEN) return;
+        out.add(t);
+    }
+
+    // ===== Поиск (поток индекса) =====
+
+    private Result search(String query, String clientId, int limit) {
+        long t0 = System.nanoTime();
+        String[] parts = query == null ? new String[0] : query.trim().toLowerCase(Locale.ROOT).split("\\s+");
+
+        List<long[]> lists = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (String part : parts) {
+            if (part.isEmpty()) continue;
+            Postings p = lookup(part);
+            if (p == null || p.size == 0) return new Result(List.of(), 0, micros(t0));
+            lists.add(p.seqs);
+            sizes.add(p.size);
+        }
+        if (lists.isEmpty()) return new Result(List.of(), 0, micros(t0));
+
+        // идём по самому короткому списку с конца, остальные проверяем бинарным поиском
+        int shortest = 0;
+        for (int i = 1; i < sizes.size(); i++) if (sizes.get(i) < sizes.get(shortest)) shortest = i;
+        long[] base = lists.get(shortest);
+
+        List<Hit> hits = new ArrayList<>();
+        int total = 0;
+        for (int i = sizes.get(shortest) - 1; i >= 0; i--) {
+            long seq = base[i];
+            if (seq < lowSeq) break;
+            if (!inAll(seq, lists, sizes, shortest)) continue;
+
+            int slot = (int) (seq % maxDocs);
+            String cid = docClient[slot];
+            boolean out = docOutgoing[slot];
+            // рассылки (ALL/IDS) под фильтр клиента не попадают — адресаты в них не перечислены
+            if (clientId != null && !clientId.equals(cid)) continue;
+
+            total++;
+            if (hits.size() < limit) hits.add(new Hit(seq, cid, out));
+        }
+        return new Result(hits, total, micros(t0));
+    }
+
+    // префикс ("ord*") сливается в один временный список
+    private Postings lookup(String term) {
+        if (!term.endsWith("*")) {
+            Postings p = terms.get(term);
+            if (p == null && term.length() > 1) p = terms.get(trimPunct(term));
+            return p;
+        }
+        String prefix = term.substring(0, term.length() - 1);
+        if (prefix.isEmpty()) return null;
+        Map<String, Postings> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.size() == 1) return range.values().iterator().next();
+
+        Set<Long> merged = new HashSet<>();
+        for (Postings p : range.values()) {
+            for (int i = 0; i < p.size; i++) if (p.seqs[i] >= lowSeq) merged.add(p.seqs[i]);
+        }
+        Postings m = new Postings();
+        merged.stream().sorted().forEach(m::add);
+        return m;
+    }
+
+    private static boolean inAll(long seq, List<long[]> lists, List<Integer> sizes, int skip) {
+        for (int i = 0; i < lists.size(); i++) {
+            if (i == skip) continue;
+            if (Arrays.binarySearch(lists.get(i), 0, sizes.get(i), seq) < 0) return false;
+        }
+        return true;
+    }
+
+    private static long micros(long t0) {
+        return (System.nanoTime() - t0) / 1000;
+    }
+
+    // ===== Список seq одного токена =====
+    private static final class Postings {
+        long[] seqs = new long[4];
+        int size;
+
+        void add(long seq) {
+            if (size > 0 && seqs[size - 1] == seq) return;
+            if (size == seqs.length) seqs = Arrays.copyOf(seqs, size * 2);
+            seqs[size++] = seq;
+        }
+
+        int dropBelow(long low) {
+            int from = 0;
+            while (from < size && seqs[from] < low) from++;
+            if (from > 0) {
+                System.arraycopy(seqs, from, seqs, 0, size - from);
+                size -= from;
+                if (seqs.length > 16 && size < seqs.length / 4) seqs = Arrays.copyOf(seqs, Math.max(4, size * 2));
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package app.products.websocketmanual;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Библиотека шаблонов исходящих сообщений.
+ *
+ * На диске — templates.jsonl: одна строка = один шаблон (компактный JSON или JSON-строка).
+ * Сохранение дописывает одну строку в конец, файл целиком не переписывается.
+ * Внешние правки применяются как дельта: если файл только вырос — читается хвост,
+ * иначе строки сравниваются со снимком и в список уходят только добавленные/удалённые.
+ *
+ * Поиск — индекс токен → шаблоны: префикс каждого слова запроса, при отсутствии
+ * точных совпадений — с одной опечаткой. Список для комбобокса и индекс меняются
+ * только в FX-потоке; чтение файла (watcher) — в любом.
+ */
+public final class ManualTemplateStore {
+
+    /** Изменения файла относительно прошлого снимка. */
+    public record Diff(List<String> added, List<String> removed) {
+        public boolean isEmpty() { return added.isEmpty() && removed.isEmpty(); }
+    }
+
+    private static final String LEGACY_NAME = "templates.json";
+    private static final int FUZZY_MIN_LEN = 3;
+
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // ===== FX-поток =====
+    private final ObservableList<String> items = FXCollections.observableArrayList();
+    private final FilteredList<String> view = new FilteredList<>(items);
+    private final TreeMap<String, Set<String>> tokenIndex = new TreeMap<>();
+    private final Set<String> present = new HashSet<>();
+
+    // ===== снимок файла (под монитором this) =====
+    private final LinkedHashSet<String> onDisk = new LinkedHashSet<>();
+    private long knownSize;
+
+    public ManualTemplateStore(Path file) {
+        this.file = file;
+    }
+
+    public Path file() { return file; }
+
+    /** Отфильтрованный список для ComboBox (меняется инкрементально). */
+    public ObservableList<String> view() { return view; }
+
+    public int size() { return items.size(); }
+
+    public boolean contains(String normalized) { return present.contains(normalized); }
+
+    // ===== Файл =====
+
+    /**
+     * Создать файл при отсутствии (с переносом шаблонов из старого templates.json)
+     * и прочитать его целиком. Результат — дельта для {@link #apply}.
+     */
+    public synchronized Diff open() throws IOException {
+        Path dir = file.getParent();
+        if (dir != null) Files.createDirectories(dir);
+        if (!Files.exists(file)) migrateLegacy(dir == null ? null : dir.resolve(LEGACY_NAME));
+        return readExternalChanges();
+    }
+
+    /** Дописать шаблон; false — такой уже есть (в памяти или на диске). */
+    public boolean append(String normalized) throws IOException {
+        if (normalized == null || normalized.isBlank() || present.contains(normalized)) return false;
+        synchronized (this) {
+            if (!onDisk.contains(normalized)) {
+                byte[] line = (encodeLine(normalized) + "\n").getBytes(StandardCharsets.UTF_8);
+                boolean needNl = needsLeadingNewline();
+                try (var ch = Files.newByteChannel(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    if (needNl) ch.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                    ch.write(ByteBuffer.wrap(line));
+                }
+                onDisk.add(normalized);
+                knownSize = Files.size(file);
+            }
+        }
+        apply(new Diff(List.of(normalized), List.of()));
+        return true;
+    }
+
+    /**
+     * Что изменилось в файле с прошлого чтения. Вызывается из потока watcher'а;
+     * применять результат — {@link #apply} в FX-потоке.
+     */
+    public synchronized Diff readExternalChanges() throws IOException {
+        if (!Files.exists(file)) {
+            List<String> removed = new ArrayList<>(onDisk);
+            onDisk.clear();
+            knownSize = 0;
+            return new Diff(List.of(), removed);
+        }
+
+        long size = Files.size(file);
+        if (size == knownSize) return new Diff(List.of(), List.of());
+
+        // файл только дописан — читаем хвост, если граница прошлого чтения цела
+        if (knownSize > 0 && size > knownSize && byteAt(knownSize - 1) == '\n') {
+            List<String> added = new ArrayList<>();
+            for (String line : readFrom(knownSize)) {
+                String t = decodeLine(line);
+                if (!t.isBlank() && onDisk.add(t)) added.add(t);
+            }
+            knownSize = size;
+            return new Diff(added, List.of());
+        }
+
+        LinkedHashSet<String> now = new LinkedHashSet<>();
+        for (String line : readFrom(0)) {
+            String t = decodeLine(line);
+            if (!t.isBlank()) now.add(t);
+        }
+        List<String> added = new ArrayList<>();
+        for (String t : now) if (!onDisk.contains(t)) added.add(t);
+        List<String> removed = new ArrayList<>();
+        for (String t : onDisk) if (!now.contains(t)) removed.add(t);
+
+        onDisk.clear();
+        onDisk.addAll(now);
+        knownSize = size;
+        return new Diff(added, removed);
+    }
+
+    private boolean needsLeadingNewline() throws IOException {
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        return size > 0 && byteAt(size - 1) != '\n';
+    }
+
+    private int byteAt(long pos) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (pos >= raf.length()) return -1;
+            raf.seek(pos);
+            return raf.read();
+        }
+    }
+
+    private List<String> readFrom(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long len = raf.length() - offset;
+            if (len <= 0) return List.of();
+            byte[] buf = new byte[(int) len];
+            raf.seek(offset);
+            raf.readFully(buf);
+            return new String(buf, StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    // старый формат: {"templates":[...]} или [...] — переносим один раз, исходник остаётся как .bak
+    private void migrateLegacy(Path legacy) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (legacy != null && Files.exists(legacy)) {
+            try {
+                JsonNode root = mapper.readTree(legacy.toFile());
+                JsonNode arr = root == null ? null : root.isArray() ? root : root.path("templates");
+                Set<String> seen = new LinkedHashSet<>();
+                if (arr != null && arr.isArray()) {
+                    for (JsonNode n : arr) {
+                        if (n == null || n.isNull()) continue;
+                        String t = normalize(n.isTextual() ? n.asText() : mapper.writeValueAsString(n));
+                        if (!t.isBlank() && seen.add(t)) sb.append(encodeLine(t)).append('\n');
+                    }
+                }
+            } catch (IOException e) {
+                // битый старый файл не мешает начать с чистого
+            }
+        }
+        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        if (legacy != null && Files.exists(legacy)) {
+            Files.move(legacy, legacy.resolveSibling(LEGACY_NAME + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ===== Формат строки =====
+
+    /** Шаблон к каноническому виду: JSON — компактно, текст — как есть без краевых пробелов. */
+    public String normalize(String s) {
+        if (s == null) return "";
+        String t = s.replace("\r\n", "\n").replace("\r", "\n").trim();
+        if (t.isBlank()) return "";
+        try {
+            return mapper.writeValueAsString(mapper.readTree(t));
+        } catch (Exception ignore) {
+            return t;
+        }
+    }
+
+    private String encodeLine(String normalized) throws IOException {
+        // нормализованный JSON уже в одну строку; текст пишем JSON-строкой (с экранированием \n)
+        try {
+            mapper.readTree(normalized);
+            return normalized;
+        } catch (Exception notJson) {
+            return mapper.writeValueAsString(normalized);
+        }
+    }
+
+    // руками дописанная строка может быть и не JSON — берём как текст
+    private String decodeLine(String line) {
+        String l = line.trim();
+        if (l.isEmpty()) return "";
+        try {
+            JsonNode n = mapper.readTree(l);
+            if (n == null) return "";
+            return n.isTextual() ? normalize(n.asText()) : normalize(l);
+        } catch (Exception e) {
+            return normalize(l);
+        }
+    }
+
+    // ===== Список и индекс (FX-поток) =====
+
+    public void apply(Diff d) {
+        if (d.isEmpty()) return;
+        if (!d.removed().isEmpty()) {
+            Set<String> gone = new HashSet<>();
+            for (String t : d.removed()) {
+                if (present.remove(t)) {
+                    gone.add(t);
+                    unindex(t);
+                }
+            }
+            if (!gone.isEmpty()) items.removeIf(gone::contains);
+        }
+        List<String> fresh = new ArrayList<>(d.added().size());
+        for (String t : d.added()) {
+            if (present.add(t)) {
+                fresh.add(t);
+                index(t);
+            }
+        }
+        if (!fresh.isEmpty()) items.addAll(fresh);
+    }
+
+    /** Фильтр списка; пустой запрос — все шаблоны. */
+    public void filter(String query) {
+        Set<String> match = search(query);
+        view.setPredicate(match == null ? null : match::contains);
+    }
+
+    /** null — запрос пустой (фильтра нет). */
+    Set<String> search(String query) {
+        if (query == null || query.isBlank()) return null;
+        Set<String> result = null;
+        for (String term : query.trim().toLowerCase().split("\\s+")) {
+            Set<String> hits = termHits(term);
+            if (result == null) result = hits;
+            else result.retainAll(hits);
+            if (result.isEmpty()) break;
+        }
+        return result == null ? Set.of() : result;
+    }
+
+    private Set<String> termHits(String term) {
+        Set<String> hits = new HashSet<>();
+        for (Set<String> s : tokenIndex.subMap(term, true, term + Character.MAX_VALUE, false).values()) hits.addAll(s);
+        if (!hits.isEmpty() || term.length() < FUZZY_MIN_LEN) return hits;
+
+        // опечатка: токены на ту же букву, чей префикс отличается не больше чем на одну правку
+        String first = term.substring(0, 1);
+        for (Map.Entry<String, Set<String>> en : tokenIndex.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+            if (prefixWithinOneEdit(en.getKey(), term)) hits.addAll(en.getValue());
+        }
+        return hits;
+    }
+
+    private static boolean prefixWithinOneEdit(String token, String term) {
+        for (int len = term.length() - 1; len <= term.length() + 1; len++) {
+            if (len <= 0 || len > token.length()) continue;
+            if (withinOneEdit(token.substring(0, len), term)) return true;
+        }
+        return false;
+    }
+
+    // одна вставка/удаление/замена или перестановка соседних букв
+    private static boolean withinOneEdit(String a, String b) {
+        int la = a.length(), lb = b.length();
+        if (Math.abs(la - lb) > 1) return false;
+        int i = 0, j = 0, edits = 0;
+        while (i < la && j < lb) {
+            if (a.charAt(i) == b.charAt(j)) { i++; j++; continue; }
+            if (++edits > 1) return false;
+            if (la > lb) i++;
+            else if (lb > la) j++;
+            else if (i + 1 < la && a.charAt(i) == b.charAt(j + 1) && a.charAt(i + 1) == b.charAt(j)) { i += 2; j += 2; }
+            else { i++; j++; }
+        }
+        return edits + (la - i) + (lb - j) <= 1;
+    }
+
+    private void index(String template) {
+        for (String tok : tokens(template)) tokenIndex.computeIfAbsent(tok, k -> new HashSet<>()).add(template);
+    }
+
+    private void unindex(String template) {
+        for (String tok : tokens(template)) {
+            Set<String> s = tokenIndex.get(tok);
+            if (s == null) continue;
+            s.remove(template);
+            if (s.isEmpty()) tokenIndex.remove(tok);
+        }
+    }
+
+    private static Set<String> tokens(String template) {
+        Set<String> out = new HashSet<>();
+        ManualSearchIndex.tokenize(template, out);
+        return out;
+    }
+
+    /** Короткое превью: читается только начало строки, длинный шаблон целиком не копируется. */
+    public static String preview(String s, int maxLen) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(Math.min(s.length(), maxLen + 3));
+        int i = 0, n = s.length();
+        while (i < n && Character.isWhitespace(s.charAt(i))) i++;
+        for (; i < n && sb.length() < maxLen; i++) {
+            char c = s.charAt(i);
+            sb.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        if (i < n) sb.append("...");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,187 @@
+package app.products.websocketmanual;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счётчики трафика manual-сервера: сообщения и байты по клиентам и направлениям,
+ * плюс посекундная история за последнюю минуту (для спарклайнов).
+ *
+ * Запись — O(1) и без аллокаций: поиск счётчиков по id (hash строки кешируется),
+ * инкремент полей и ячейки кольца; байты считаются в UTF-8 проходом по строке.
+ * Снимок для UI собирается отдельно, раз в секунду.
+ *
+ * Рассылки приходят одним событием с меткой "ALL xN"/"IDS xN" без списка адресатов,
+ * поэтому учитываются отдельной строкой ({@link #BROADCAST_ROW}) — N сообщений по размеру payload.
+ * Используется только из FX-потока.
+ */
+public final class ManualTrafficStats {
+
+    public static final int HISTORY_SEC = 60;
+    public static final String TOTAL_ROW = "Σ всего";
+    public static final String BROADCAST_ROW = "рассылки";
+
+    /**
+     * Строка снимка: итоги, темп за последнюю полную секунду и история
+     * сообщений в обе стороны по секундам (старые слева).
+     */
+    public record Row(String clientId,
+                      long inMsgs, long inBytes, long outMsgs, long outBytes,
+                      long inMsgsPerSec, long inBytesPerSec, long outMsgsPerSec, long outBytesPerSec,
+                      int[] history) {}
+
+    private final Map<String, Counters> byClient = new HashMap<>();
+    private final Counters total = new Counters();
+    private final Counters broadcast = new Counters();
+
+    public void recordIncoming(String clientId, String payload, long timeMs) {
+        if (clientId == null) return;
+        int bytes = utf8Length(payload);
+        long sec = timeMs / 1000;
+        byClient.computeIfAbsent(clientId, id -> new Counters()).add(false, 1, bytes, sec);
+        total.add(false, 1, bytes, sec);
+    }
+
+    /** label — id клиента или метка рассылки из {@link ManualEventParser}. */
+    public void recordOutgoing(String label, String payload, long timeMs) {
+        if (label == null) return;
+        int bytes = utf8Length(payload);
+        long sec = timeMs / 1000;
+        int fanOut = multiCount(label);
+        if (fanOut >= 0) {
+            broadcast.add(true, fanOut, (long) fanOut * bytes, sec);
+            total.add(true, fanOut, (long) fanOut * bytes, sec);
+        } else {
+            byClient.computeIfAbsent(label, id -> new Counters()).add(true, 1, bytes, sec);
+            total.add(true, 1, bytes, sec);
+        }
+    }
+
+    /** Отключившийся клиент уходит из таблицы; в итогах его трафик остаётся. */
+    public void remove(String clientId) {
+        byClient.remove(clientId);
+    }
+
+    /** Все клиенты отключены разом (остановка сервера); итоги сессии сохраняются. */
+    public void clearClients() {
+        byClient.clear();
+    }
+
+    public void clear() {
+        byClient.clear();
+        total.reset();
+        broadcast.reset();
+    }
+
+    /** Снимок: сначала итоговая строка, потом рассылки (если были), потом клиенты. */
+    public List<Row> snapshot(long nowMs) {
+        long sec = nowMs / 1000;
+        List<Row> rows = new ArrayList<>(byClient.size() + 2);
+        rows.add(total.row(TOTAL_ROW, sec));
+        if (broadcast.outMsgs > 0) rows.add(broadcast.row(BROADCAST_ROW, sec));
+        for (Map.Entry<String, Counters> e : byClient.entrySet()) rows.add(e.getValue().row(e.getKey(), sec));
+        return rows;
+    }
+
+    // ===== Вспомогательное =====
+
+    /** N для меток "ALL xN"/"IDS xN", иначе -1 (id клиента). Без substring/parseInt. */
+    static int multiCount(String label) {
+        if (!(label.startsWith("ALL x") || label.startsWith("IDS x"))) return -1;
+        int n = 0;
+        for (int i = 5; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < '0' || c > '9') return 0;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    static int utf8Length(String s) {
+        if (s == null) return 0;
+        int n = s.length();
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) bytes += 1;
+            else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 2; // 4 байта на пару
+                i++;
+            } else bytes += 2;
+        }
+        return bytes;
+    }
+
+    // ===== Счётчики одного клиента =====
+    private static final class Counters {
+        long inMsgs, inBytes, outMsgs, outBytes;
+
+        // кольцо по секундам: ячейка sec % HISTORY_SEC
+        final int[] inMsgsSec = new int[HISTORY_SEC];
+        final int[] outMsgsSec = new int[HISTORY_SEC];
+        final long[] inBytesSec = new long[HISTORY_SEC];
+        final long[] outBytesSec = new long[HISTORY_SEC];
+        long headSec = -1;
+
+        void add(boolean outgoing, int msgs, long bytes, long sec) {
+            advance(sec);
+            if (outgoing) {
+                outMsgs += msgs;
+                outBytes += bytes;
+            } else {
+                inMsgs += msgs;
+                inBytes += bytes;
+            }
+            // запоздавшее событие старше истории — только в итоги
+            if (headSec - sec >= HISTORY_SEC) return;
+            int slot = (int) (sec % HISTORY_SEC);
+            if (outgoing) {
+                outMsgsSec[slot] += msgs;
+                outBytesSec[slot] += bytes;
+            } else {
+                inMsgsSec[slot] += msgs;
+                inBytesSec[slot] += bytes;
+            }
+        }
+
+        // обнуляет ячейки секунд, прошедших с последней записи
+        void advance(long sec) {
+            if (sec <= headSec) return;
+            long from = headSec < 0 || sec - headSec >= HISTORY_SEC ? sec - HISTORY_SEC + 1 : headSec + 1;
+            for (long s = from; s <= sec; s++) {
+                int slot = Math.floorMod(s, HISTORY_SEC);
+                inMsgsSec[slot] = 0;
+                outMsgsSec[slot] = 0;
+                inBytesSec[slot] = 0;
+                outBytesSec[slot] = 0;
+            }
+            headSec = sec;
+        }
+
+        void reset() {
+            inMsgs = inBytes = outMsgs = outBytes = 0;
+            Arrays.fill(inMsgsSec, 0);
+            Arrays.fill(outMsgsSec, 0);
+            Arrays.fill(inBytesSec, 0);
+            Arrays.fill(outBytesSec, 0);
+            headSec = -1;
+        }
+
+        Row row(String id, long nowSec) {
+            advance(nowSec);
+            int last = Math.floorMod(nowSec - 1, HISTORY_SEC); // последняя полная секунда
+            // история без текущей (неполной) секунды
+            int[] history = new int[HISTORY_SEC - 1];
+            for (int i = 0; i < history.length; i++) {
+                int slot = Math.floorMod(nowSec - history.length + i, HISTORY_SEC);
+                history[i] = inMsgsSec[slot] + outMsgsSec[slot];
+            }
+            return new Row(id, inMsgs, inBytes, outMsgs, outBytes,
+                    inMsgsSec[last], inBytesSec[last], outMsgsSec[last], outBytesSec[last], history);
+        }
+    }
+}
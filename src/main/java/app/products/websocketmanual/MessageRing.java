@@ -0,0 +1,171 @@
+package app.products.websocketmanual;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Кольцевой буфер сообщений с двумя лимитами: по количеству и по оценке байт.
+ * При переполнении вытесняются самые старые сообщения; массив не растёт выше maxMessages.
+ *
+ * Это ObservableList: ListView привязывается к буферу напрямую и получает
+ * инкрементальные изменения (добавление в конец, вытеснение из начала) без копирования.
+ * Не потокобезопасен — используется только из FX-потока.
+ */
+public final class MessageRing extends ObservableListBase<ManualMessage> {
+
+    /** Лимиты одного буфера. */
+    public record Limits(int maxMessages, long maxBytes) {
+        public Limits {
+            maxMessages = Math.max(1, maxMessages);
+            maxBytes = Math.max(1024, maxBytes);
+        }
+    }
+
+    /** Общие счётчики для группы буферов (все клиенты + исходящие) — обновляются за O(1). */
+    public static final class Stats {
+        private long messages;
+        private long bytes;
+        private long evictedMessages;
+        private long evictedBytes;
+
+        public long messages() { return messages; }
+        public long bytes() { return bytes; }
+        public long evictedMessages() { return evictedMessages; }
+        public long evictedBytes() { return evictedBytes; }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Limits limits;
+    private final Stats stats;
+
+    private ManualMessage[] items;
+    private long[] sizes;
+    private int head;   // индекс самого старого
+    private int count;
+    private long bytes;
+    private long evicted;
+
+    public MessageRing(Limits limits, Stats stats) {
+        this.limits = limits;
+        this.stats = stats == null ? new Stats() : stats;
+        int cap = Math.min(INITIAL_CAPACITY, limits.maxMessages());
+        this.items = new ManualMessage[cap];
+        this.sizes = new long[cap];
+    }
+
+    @Override public boolean add(ManualMessage m) {
+        long sz = m.estimatedBytes();
+
+        beginChange();
+        // одно сообщение больше лимита целиком — буфер держит только его
+        while (count > 0 && (count >= limits.maxMessages() || bytes + sz > limits.maxBytes())) {
+            nextRemove(0, evictOldest());
+        }
+        if (count == items.length) grow();
+
+        int tail = (head + count) % items.length;
+        items[tail] = m;
+        sizes[tail] = sz;
+        count++;
+        bytes += sz;
+        stats.messages++;
+        stats.bytes += sz;
+        nextAdd(count - 1, count);
+        endChange();
+        return true;
+    }
+
+    /** Пачка сообщений одним изменением списка (вложенные beginChange/endChange сливаются). */
+    @Override public boolean addAll(Collection<? extends ManualMessage> batch) {
+        if (batch.isEmpty()) return false;
+        beginChange();
+        try {
+            for (ManualMessage m : batch) add(m);
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /** i = 0 — самое старое сообщение. */
+    @Override public ManualMessage get(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException(i);
+        return items[(head + i) % items.length];
+    }
+
+    @Override public int size() { return count; }
+
+    /**
+     * Позиция сообщения с данным seq или -1 (уже вытеснено / не в этом буфере).
+     * Сообщения добавляются в порядке seq, поэтому — бинарный поиск.
+     */
+    public int indexOfSeq(long seq) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = items[(head + mid) % items.length].seq();
+            if (s < seq) lo = mid + 1;
+            else if (s > seq) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public long bytes() { return bytes; }
+
+    /** Сколько сообщений этот буфер вытеснил за всё время. */
+    public long evicted() { return evicted; }
+
+    @Override public void clear() {
+        if (count == 0) return;
+        List<ManualMessage> removed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int idx = (head + i) % items.length;
+            removed.add(items[idx]);
+            items[idx] = null;
+        }
+        stats.messages -= count;
+        stats.bytes -= bytes;
+        head = 0;
+        count = 0;
+        bytes = 0;
+
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+
+    private ManualMessage evictOldest() {
+        ManualMessage m = items[head];
+        long sz = sizes[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        count--;
+        bytes -= sz;
+        evicted++;
+        stats.messages--;
+        stats.bytes -= sz;
+        stats.evictedMessages++;
+        stats.evictedBytes += sz;
+        return m;
+    }
+
+    // ёмкость растёт удвоением до maxMessages; после этого буфер только вращается
+    private void grow() {
+        int cap = (int) Math.min((long) items.length * 2, limits.maxMessages());
+        ManualMessage[] ni = new ManualMessage[cap];
+        long[] ns = new long[cap];
+        for (int i = 0; i < count; i++) {
+            int src = (head + i) % items.length;
+            ni[i] = items[src];
+            ns[i] = sizes[src];
+        }
+        items = ni;
+        sizes = ns;
+        head = 0;
+    }
+}
@@ -2,19 +2,31 @@
 package app.products.websocketmanual;
 
 import app.core.Router;
+import app.ui.ClientListDialog;
+import app.ui.PayloadViewerDialog;
+import app.ui.PeriodicSendDialog;
+import app.ui.TrafficDashboardDialog;
 import app.ui.UiSvg;
 import app.ui.ScrollThumbRounding;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
 
 import java.awt.Desktop;
 import java.io.IOException;
@@ -24,14 +36,21 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.WatchEvent.Kind;
+import java.time.Instant;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import app.core.node.AppShutdown;
+import app.core.node.NodeIpcChannel;
 import app.core.node.NodeServerLauncher;
 
 public class WebSocketManualController {
@@ -40,6 +59,8 @@ public class WebSocketManualController {
     @FXML private TextField txtUrl;
     @FXML private Button   btnUrlEdit;
     @FXML private Button   btnOpenConfig;
+    @FXML private Button   btnJournal;
+    @FXML private Button   btnTraffic;
     @FXML private Button   btnServerToggle;
     @FXML private Button   btnConnectToggle;
     @FXML private Button   btnClientCount; // индикатор (теперь ВСЕГДА graphic + tooltip)
@@ -55,20 +76,26 @@ public class WebSocketManualController {
     // комбобоксы
     @FXML private ComboBox<String> cbClient;       // правый комбобокс (для отправки)
     @FXML private ComboBox<String> cbTemplates;
+    @FXML private TextField txtTemplateSearch;     // поиск по шаблонам (префикс, с опечаткой)
     @FXML private ComboBox<String> cbClientLeft;   // левый комбобокс (фильтр входящих)
 
     // список входящих сообщений (левая панель)
-    @FXML private ListView<String> listIncoming;
+    @FXML private ListView<ManualMessage> listIncoming;
+    @FXML private Label lblBufferStats;     // память/вытеснения буферов сообщений
+    @FXML private TextField txtSearch;      // поиск по входящим/исходящим
+    @FXML private Label lblSearch;
 
     // список исходящих сообщений сервера (правая панель)
-    @FXML private ListView<String> listOutgoingLog;
+    @FXML private ListView<ManualMessage> listOutgoingLog;
     @FXML private Button btnSendPing;
+    @FXML private Button btnPeriodic;       // периодическая отправка (старт/стоп)
+    @FXML private Label  lblPeriodic;       // темп/lag/drop текущего запуска
 
     // Кнопки управления полем исходящего сообщения / списком
     @FXML private Button   btnCollapseOutgoing;
     @FXML private Button   btnClearOutgoing;
 
-    // NEW: сохранить текущий outgoing в templates.json
+    // NEW: сохранить текущий outgoing в templates.jsonl
     @FXML private Button   btnSaveTemplate;
 
     @FXML private Button   btnScrollOutgoing;
@@ -100,6 +127,16 @@ public class WebSocketManualController {
     private static final boolean DEFAULT_OUTGOING_START_COLLAPSED = false;
     private static final int  DEFAULT_MANUAL_PORT = 8080;
     private static final int TEMPLATE_PREVIEW_LEN = 50;
+    private static final int MESSAGE_PREVIEW_LEN = 500;
+    private static final int MAX_EVENTS_PER_FRAME = 5000;
+    private static final int MAX_PENDING_EVENTS = 100_000;
+    private static final int SEARCH_MAX_DOCS = 200_000;
+    private static final int SEARCH_MAX_HITS = 1000;
+
+    // лимиты буферов сообщений по умолчанию (переопределяются в node-server-manual/setting/setting.json)
+    private static final int  DEFAULT_BUFFER_MESSAGES = 5000;
+    private static final long DEFAULT_BUFFER_BYTES    = 8L * 1024 * 1024;
+    private static final int  DEFAULT_JOURNAL_SEGMENT_BYTES = 16 * 1024 * 1024;
     private static final DateTimeFormatter TIME_FMT =
             DateTimeFormatter.ofPattern("HH:mm:ss");
 
@@ -111,9 +148,30 @@ public class WebSocketManualController {
     private int manualPort = DEFAULT_MANUAL_PORT;
 
     // ===== Состояние UI / клиентов =====
-    private final List<String> clientIds = new ArrayList<>();
-    private final Map<String, List<String>> incomingByClient = new HashMap<>();
-    private final List<String> outgoingMessages = new ArrayList<>();
+    // реестр клиентов строится из событий connect/disconnect; clients.json UI не читает
+    private final ManualClientRegistry clients = new ManualClientRegistry();
+    // входящие — свой кольцевой буфер на клиента, исходящие — один общий; счётчики общие
+    private final MessageRing.Stats bufferStats = new MessageRing.Stats();
+    private MessageRing.Limits incomingLimits = new MessageRing.Limits(DEFAULT_BUFFER_MESSAGES, DEFAULT_BUFFER_BYTES);
+    private MessageRing.Limits outgoingLimits = new MessageRing.Limits(DEFAULT_BUFFER_MESSAGES, DEFAULT_BUFFER_BYTES);
+    private final Map<String, MessageRing> incomingByClient = new HashMap<>();
+    private MessageRing outgoingMessages = new MessageRing(outgoingLimits, bufferStats);
+
+    // общая лента входящих (фильтр "все клиенты"): те же объекты, что в буферах клиентов,
+    // свой лимит; в счётчики памяти не входит, т.к. сообщения разделяются по ссылке
+    private MessageRing.Limits allIncomingLimits = new MessageRing.Limits(DEFAULT_BUFFER_MESSAGES, DEFAULT_BUFFER_BYTES);
+    private MessageRing allIncoming = new MessageRing(allIncomingLimits, null);
+
+    // ===== Поиск =====
+    // индекс держит больше сообщений, чем буферы: совпадение может быть уже вытеснено из списка
+    private final ManualSearchIndex searchIndex = new ManualSearchIndex(SEARCH_MAX_DOCS);
+    // только на выходе: runAll при каждом переключении сервера иначе останавливал бы индекс
+    private final Runnable searchIndexExitHook = searchIndex::shutdown;
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+    private List<ManualSearchIndex.Hit> searchHits = List.of();
+    private int searchPos = -1;
+    private long searchGen;
+    private long nextSeq;
 
     private boolean serverRunning    = false;
     private boolean clientConnected  = false;
@@ -124,28 +182,69 @@ public class WebSocketManualController {
     // контроллеры комбобоксов
     private ManualComboController clientComboController;      // правый
     private ManualComboController clientComboLeftController;  // левый
-    private ManualComboController templatesComboController;
 
     // ===== Node-сервер WebSocketManual =====
     private NodeServerLauncher manualNode;
+    private ManualEventIntake eventIntake;
+    private NodeIpcChannel manualIpc;
     private Path manualServerDir;
     private Path manualStateFile;
 
+    // журнал трафика: каждая копия контроллера (вход в экран) — своя сессия
+    private ManualJournal journal;
+
+    // открытая прошлая сессия: её сообщения получили seq [loadedFirstSeq, loadedFirstSeq + length),
+    // полный текст читается из её журнала по исходным seq
+    private ManualJournal loadedJournal;
+    private long loadedFirstSeq = -1;
+    private long[] loadedJournalSeqs = new long[0];
+
+    private PayloadViewerDialog payloadViewer;
+
+    // повтор исходящих из журнала; адресат читается потоком повтора
+    private final ManualReplay replay = new ManualReplay(this::sendReplayBatch);
+    private volatile String replayTarget;
+
+    // периодическая отправка шаблона; адресаты (null — всем) читаются потоком отправки
+    private final ManualPeriodicSender periodic = new ManualPeriodicSender(this::sendPeriodicBatch);
+    private volatile List<String> periodicTargets;
+    private PeriodicSendDialog.Settings periodicSettings = new PeriodicSendDialog.Settings(100, 60, 0);
+
+    // повтор и поток идут через сервер — гасятся при его переключении (runAll);
+    // журнал — только на выходе, иначе первый же запуск сервера закрыл бы сессию.
+    // Все три снимаются в dispose(), чтобы AppShutdown не держал старые контроллеры
+    private final Runnable replayStopper = replay::cancel;
+    private final Runnable periodicStopper = periodic::stop;
+    private final Runnable journalExitHook = this::closeJournals;
+
+    // RTT ping→pong по клиентам (замер на стороне сервера) и фоновый ping
+    private final ManualRttStats rttStats = new ManualRttStats();
+    private static final int DEFAULT_PING_INTERVAL_MS = 1000;
+    private int backgroundPingIntervalMs = DEFAULT_PING_INTERVAL_MS;
+    private Timeline backgroundPing;
+
+    // сообщения/байты по клиентам и направлениям; считаются при разборе пачки событий
+    private final ManualTrafficStats traffic = new ManualTrafficStats();
+    private TrafficDashboardDialog trafficDashboard;
+
     // общий mapper для настроек и clients.json
     private final ObjectMapper mapper = new ObjectMapper();
 
     // ===== НОВОЕ: индикатор клиентов ВСЕГДА через graphic =====
     private StackPane clientCountGraphic;
     private Label clientCountLabel;
+    private ClientListDialog clientListDialog;
     private Node clientCountEmptyIcon;
 
-    // ===== НОВОЕ: templates.json (outgoing templates) =====
+    // ===== Шаблоны исходящих: templates.jsonl + индекс =====
     private Path templatesFile;
-    private final List<String> templates = new ArrayList<>();
+    private ManualTemplateStore templateStore;
 
     private WatchService templatesWatch;
     private Thread templatesWatchThread;
     private volatile boolean templatesWatchRunning = false;
+    // только на выходе: runAll при каждом переключении сервера иначе закрывал бы watcher
+    private final Runnable templatesWatcherExitHook = this::stopTemplatesWatcher;
 
     // ===== Инициализация =====
     @FXML
@@ -155,18 +254,20 @@ public class WebSocketManualController {
         clearClientsJsonOnStartup();
 
         manualPort = readManualPortFromConfig();
+        readBufferLimitsFromConfig();
+        initJournal();
         txtUrl.setText("ws://localhost:" + manualPort);
 
         if (isPortInUse(manualPort)) {
             logInfo("Порт " + manualPort + " уже занят. Возможно, запущен основной WebSocket-сервер.");
         }
 
-        reloadClientsFromJson();
         updateServerButtonsUi();
 
         if (cbClient != null) {
-            clientComboController = new ManualComboController(cbClient, () -> clientIds);
-            clientComboController.refresh();
+            clientComboController = new ManualComboController(cbClient, clients.observableIds());
+            // адресат отключился — выбор сброшен, Send гаснет до явного выбора
+            cbClient.valueProperty().addListener((obs, oldV, newV) -> updateSendButtonState());
         }
 
         // NEW: реакция на чекбокс "всем" (не ломает остальное)
@@ -185,23 +286,30 @@ public class WebSocketManualController {
         }
 
         if (cbClientLeft != null) {
-            clientComboLeftController = new ManualComboController(cbClientLeft, () -> clientIds);
-            clientComboLeftController.refresh();
+            clientComboLeftController = new ManualComboController(cbClientLeft, clients.observableIds());
 
             cbClientLeft.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
                 refreshIncomingListView();
+                runSearch();
             });
         }
 
+        installMessageCellFactories();
+        installPayloadViewer(listIncoming);
+        installPayloadViewer(listOutgoingLog);
+        refreshIncomingListView();
+        initSearch();
+        initPing();
+        if (listOutgoingLog != null) listOutgoingLog.setItems(outgoingMessages);
+
         // ===== Templates: загрузка + отображение (20 символов) + hot reload =====
         if (cbTemplates != null) {
             initTemplatesFilePath();
-            loadTemplatesFromJson();
-
-            templatesComboController = new ManualComboController(cbTemplates, () -> templates);
-            templatesComboController.refresh();
+            loadTemplates();
+            cbTemplates.setItems(templateStore.view());
 
             installTemplatesCellFactory();
+            initTemplateSearch();
 
             cbTemplates.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
                 if (newV != null && txtOutgoing != null) {
@@ -264,6 +372,7 @@ public class WebSocketManualController {
         // ===== ВАЖНО: графика индикатора клиентов готовится один раз =====
         initClientCountIndicatorGraphic();
         updateClientCountLabel();
+        updateBufferStatsLabel();
 
         logInfo("WebSocket Manual: UI инициализирован.");
     }
@@ -300,6 +409,37 @@ public class WebSocketManualController {
         btnClientCount.setGraphic(clientCountGraphic);
         btnClientCount.setGraphicTextGap(0);
         btnClientCount.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+
+        // tooltip один; текст собирается только перед показом, а не на каждое подключение
+        Tooltip tt = new Tooltip();
+        tt.setWrapText(true);
+        tt.setMaxWidth(420);
+        tt.setOnShowing(e -> tt.setText(buildClientsTooltip(clients.firstIds(5), clients.size())));
+        btnClientCount.setTooltip(tt);
+    }
+
+    // список клиентов с поиском; выбор — фильтр входящих или адресат отправки
+    private void openClientList() {
+        if (clientListDialog == null) {
+            clientListDialog = new ClientListDialog(clients.observableIds(), this::describeRtt);
+            if (btnClientCount.getScene() != null) clientListDialog.initOwner(btnClientCount.getScene().getWindow());
+            clientListDialog.setOnHidden(e -> {
+                ClientListDialog.Choice choice = clientListDialog.getResult();
+                if (choice == null) return;
+                if (choice.target() == ClientListDialog.Target.INCOMING) {
+                    if (clientComboLeftController != null) clientComboLeftController.select(choice.clientId());
+                } else {
+                    if (chkSendToAll != null) chkSendToAll.setSelected(false);
+                    if (clientComboController != null) clientComboController.select(choice.clientId());
+                }
+            });
+        }
+        if (clientListDialog.isShowing()) {
+            clientListDialog.getDialogPane().getScene().getWindow().requestFocus();
+            return;
+        }
+        clientListDialog.setResult(null);
+        clientListDialog.show();
     }
 
     private void initManualNodeLauncher() {
@@ -308,68 +448,143 @@ public class WebSocketManualController {
         manualServerDir = Paths.get(System.getProperty("user.dir"), "node-server-manual");
         manualStateFile = manualServerDir.resolve("clients.json");
 
-        manualNode = new NodeServerLauncher(manualServerDir, this::onNodeLogLine);
+        // строки stdout разбираются в потоке пайпа, на FX-поток события приходят пачками раз в кадр
+        final ManualEventIntake intake = new ManualEventIntake(MAX_EVENTS_PER_FRAME, MAX_PENDING_EVENTS, this::onManualEvents);
+        eventIntake = intake;
+        intake.start();
+        if (listIncoming != null) {
+            // Router на каждый визит грузит экран заново: ушедший со сцены экран не вернётся
+            listIncoming.sceneProperty().addListener((obs, oldScene, newScene) -> {
+                if (newScene == null) dispose();
+            });
+        }
+        // типизированные события — по IPC-каналу; stdout разбирается только если канал не поднялся.
+        // Лямбды держат только intake и канал, не контроллер: процесс переживает уход с экрана
+        final NodeIpcChannel ipc = new NodeIpcChannel("manual", frame -> {
+            ManualEvent ev = ManualEventParser.fromIpc(frame);
+            if (ev != null) intake.offer(ev);
+        });
+        manualIpc = ipc;
+        manualNode = new NodeServerLauncher(manualServerDir,
+                line -> ManualEventParser.parse(line, !ipc.isConnected(), intake::offer), false);
+        manualNode.setIpcChannel(manualIpc);
 
         // ВАЖНО: инициализируем графику до первого update
         initClientCountIndicatorGraphic();
         updateClientCountLabel();
     }
 
-    private void onNodeLogLine(String line) {
-        String time = LocalTime.now().format(TIME_FMT);
-        String withTime = time + " " + line;
-
-        appendToLog(withTime);
+    /**
+     * Экран ушёл со сцены: приём событий отцепляется от процесса (он продолжает работать до
+     * следующего переключения сервера), таймеры, повтор, поток, индекс и журнал экрана
+     * останавливаются, регистрации в AppShutdown снимаются.
+     */
+    private void dispose() {
+        if (eventIntake != null) eventIntake.close();
+        if (backgroundPing != null) backgroundPing.stop();
+
+        // управлять повтором и потоком с нового экрана нельзя — останавливаем вместе с этим
+        AppShutdown.unregister(replayStopper);
+        AppShutdown.unregister(periodicStopper);
+        replay.cancel();
+        periodic.stop();
+
+        AppShutdown.unregisterOnExit(searchIndexExitHook);
+        searchIndex.shutdown();
+
+        AppShutdown.unregisterOnExit(templatesWatcherExitHook);
+        stopTemplatesWatcher();
+
+        // close() ждёт дозаписи очереди — не на FX-потоке
+        AppShutdown.unregisterOnExit(journalExitHook);
+        Thread closer = new Thread(this::closeJournals, "ws-manual-journal-close");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    // ===== События manual-сервера (пачка за кадр) =====
+
+    private void onManualEvents(List<ManualEvent> batch) {
+        StringBuilder console = new StringBuilder();
+        long lost = eventIntake.takeDropped();
+        if (lost > 0) appendLine(console, "[WARN] Очередь событий переполнена, пропущено: " + lost);
+        Map<String, List<ManualMessage>> incoming = new LinkedHashMap<>();
+        List<ManualMessage> all = new ArrayList<>();
+        List<ManualMessage> outgoing = new ArrayList<>();
+        List<ManualSearchIndex.Doc> docs = new ArrayList<>();
+        List<ManualJournal.Entry> journalEntries = new ArrayList<>();
+        long tsNanos = ManualJournal.nowNanos();
+        boolean journaled = journal != null && journal.isRecording();
+        boolean clientsChanged = false;
+
+        for (ManualEvent e : batch) {
+            switch (e) {
+                case ManualEvent.LogLine l -> appendLine(console, l.text());
+                case ManualEvent.ClientConnected c -> {
+                    clientsChanged |= clients.add(c.clientId(), System.currentTimeMillis());
+                    appendLine(console, "[INFO] Клиент подключен: " + c.clientId());
+                }
+                case ManualEvent.ClientDisconnected d -> {
+                    clientsChanged |= clients.remove(d.clientId());
+                    rttStats.remove(d.clientId());
+                    traffic.remove(d.clientId());
+                    incoming.remove(d.clientId());
+                    MessageRing ring = incomingByClient.remove(d.clientId());
+                    if (ring != null) ring.clear();
+                    appendLine(console, "[INFO] Клиент отключен: " + d.clientId());
+                }
+                case ManualEvent.ClientMessage m -> {
+                    // pong идёт во входящие ровно как обычное сообщение
+                    traffic.recordIncoming(m.clientId(), m.payload(), m.timeMs());
+                    ManualMessage msg = newMessage(m.clientId(), false, m.payload(), m.timeMs(), journaled);
+                    incoming.computeIfAbsent(m.clientId(), id -> new ArrayList<>()).add(msg);
+                    all.add(msg);
+                    docs.add(new ManualSearchIndex.Doc(msg.seq(), m.clientId(), false, m.payload()));
+                    journalEntries.add(new ManualJournal.Entry(msg.seq(), tsNanos, ManualJournal.IN, m.clientId(), m.payload()));
+                    if (m.pong() && m.rttMicros() >= 0) {
+                        rttStats.record(m.clientId(), m.rttMicros(), m.timeMs());
+                        appendLine(console, String.format("[INFO] Pong от [%s]: %.3f мс; %s", m.clientId(),
+                                m.rttMicros() / 1000.0, rttStats.summary(m.clientId(), m.timeMs()).describe()));
+                    } else {
+                        appendLine(console, "[INFO] Сообщение от [" + m.clientId() + "].");
+                    }
+                }
+                case ManualEvent.ClientRtt t -> rttStats.record(t.clientId(), t.rttMicros(), t.timeMs());
+                case ManualEvent.ServerSend s -> {
+                    traffic.recordOutgoing(s.clientId(), s.payload(), s.timeMs());
+                    ManualMessage msg = newMessage(s.clientId(), true, s.payload(), s.timeMs(), journaled);
+                    outgoing.add(msg);
+                    docs.add(new ManualSearchIndex.Doc(msg.seq(), s.clientId(), true, s.payload()));
+                    journalEntries.add(new ManualJournal.Entry(msg.seq(), tsNanos, ManualJournal.OUT, s.clientId(), s.payload()));
+                }
+            }
+        }
 
-        if (!line.startsWith("[MANUAL]")) return;
+        if (console.length() > 0) appendToLog(console.toString());
+        searchIndex.submit(docs);
+        if (journal != null) journal.append(journalEntries);
 
-        if (line.startsWith("[MANUAL] CLIENT_CONNECTED")) {
-            String id = extractId(line);
-            if (id != null && !id.isBlank()) {
-                onClientConnected(id);
-                reloadClientsFromJson();
-            }
-        } else if (line.startsWith("[MANUAL] CLIENT_DISCONNECTED")) {
-            String id = extractId(line);
-            if (id != null && !id.isBlank()) {
-                onClientDisconnected(id);
-                reloadClientsFromJson();
-            }
-        } else if (line.startsWith("[MANUAL] CLIENT_MESSAGE")) {
-            String id = extractId(line);
-            String payload = extractPayload(line);
-            if (id != null && payload != null) {
-                onClientMessage(id, payload);
-            }
-        } else if (line.startsWith("[MANUAL] CLIENT_PONG")) {
-            String id = extractId(line);
-            String payload = extractPayload(line);
-            if (id != null && payload != null) {
-                // пойдёт в incomingPane ровно как обычное сообщение
-                onClientMessage(id, payload);
-            }
-        } else if (line.startsWith("[MANUAL] SERVER_SEND")) {
-            String id = extractId(line);
-            String payload = extractPayload(line);
-            if (id != null && payload != null) {
-                logOutgoing("[" + id + "] " + payload);
-            }
+        // каждый буфер получает одно изменение на кадр
+        for (Map.Entry<String, List<ManualMessage>> en : incoming.entrySet()) {
+            incomingRing(en.getKey()).addAll(en.getValue());
+        }
+        if (!all.isEmpty()) allIncoming.addAll(all);
+        if (!outgoing.isEmpty()) {
+            outgoingMessages.addAll(outgoing);
+            refreshOutgoingLogView();
         }
-    }
 
-    private String extractId(String line) {
-        int idx = line.indexOf("id=");
-        if (idx < 0) return null;
-        int start = idx + 3;
-        int end = line.indexOf(' ', start);
-        if (end < 0) end = line.length();
-        return line.substring(start, end).trim();
+        if (clientsChanged) {
+            onClientsChanged();
+            refreshIncomingListView();
+        }
+        updateIncomingScrollButton();
+        updateBufferStatsLabel();
     }
 
-    private String extractPayload(String line) {
-        int idx = line.indexOf("payload=");
-        if (idx < 0) return null;
-        return line.substring(idx + "payload=".length()).trim();
+    private static void appendLine(StringBuilder sb, String line) {
+        if (sb.length() > 0) sb.append('\n');
+        sb.append(line);
     }
 
     private void loadWebSocketManualSettings() {
@@ -426,6 +641,32 @@ public class WebSocketManualController {
         }
     }
 
+    /**
+     * Лимиты буферов из setting.json:
+     *   "buffers": { "incoming": { "maxMessages", "maxBytes" }, "outgoing": { ... }, "all": { ... } }
+     * incoming — на каждого клиента, outgoing — на весь лог исходящих, all — общая лента входящих.
+     */
+    private void readBufferLimitsFromConfig() {
+        Path settingFile = getManualSettingFile();
+        try {
+            if (!Files.exists(settingFile)) return;
+            JsonNode buffers = mapper.readTree(settingFile.toFile()).path("buffers");
+            incomingLimits = readLimits(buffers.path("incoming"));
+            outgoingLimits = readLimits(buffers.path("outgoing"));
+            allIncomingLimits = readLimits(buffers.path("all"));
+            outgoingMessages = new MessageRing(outgoingLimits, bufferStats);
+            allIncoming = new MessageRing(allIncomingLimits, null);
+        } catch (Exception e) {
+            logWarn("Не удалось прочитать лимиты буферов из setting.json, используются дефолты: " + e.getMessage());
+        }
+    }
+
+    private MessageRing.Limits readLimits(JsonNode n) {
+        int max = n.path("maxMessages").asInt(DEFAULT_BUFFER_MESSAGES);
+        long bytes = n.path("maxBytes").asLong(DEFAULT_BUFFER_BYTES);
+        return new MessageRing.Limits(max > 0 ? max : DEFAULT_BUFFER_MESSAGES, bytes > 0 ? bytes : DEFAULT_BUFFER_BYTES);
+    }
+
     private void updateManualPortInConfig(int newPort) {
         if (newPort <= 0) return;
         Path settingFile = getManualSettingFile();
@@ -516,8 +757,8 @@ public class WebSocketManualController {
     }
 
     @FXML
-    private void noop() {
-        // кнопка используется только как индикатор
+    private void onShowClients() {
+        openClientList();
     }
 
     @FXML
@@ -568,16 +809,16 @@ public class WebSocketManualController {
     private void onOpenTemplates() {
         try {
             initTemplatesFilePath();
-            ensureTemplatesFileExists();
+            if (!Files.exists(templatesFile)) loadTemplates();
 
             if (Desktop.isDesktopSupported()) {
                 Desktop.getDesktop().open(templatesFile.toFile());
                 logInfo("Открыт файл шаблонов: " + templatesFile.toAbsolutePath());
             } else {
-                logWarn("Desktop API не поддерживается, не могу открыть templates.json");
+                logWarn("Desktop API не поддерживается, не могу открыть templates.jsonl");
             }
         } catch (Exception e) {
-            logWarn("Не удалось открыть templates.json: " + e.getMessage());
+            logWarn("Не удалось открыть templates.jsonl: " + e.getMessage());
         }
     }
 
@@ -592,6 +833,11 @@ public class WebSocketManualController {
                 logInfo("Остановка локального Node-сервера WebSocketManual...");
                 AppShutdown.runAll();
                 serverRunning = false;
+                // остановленный процесс не пришлёт disconnect — реестр чистим сами
+                clients.clear();
+                rttStats.clear();
+                traffic.clearClients();
+                onClientsChanged();
                 updateServerButtonsUi();
             } else {
                 logInfo("Остановка всех Node-серверов перед запуском WebSocketManual...");
@@ -671,7 +917,6 @@ public class WebSocketManualController {
 
         if (clientConnected) {
             logInfo("Приём клиентов включён.");
-            reloadClientsFromJson();
         } else {
             logInfo("Приём клиентов выключен.");
         }
@@ -714,53 +959,16 @@ public class WebSocketManualController {
         if (manualNode == null || !manualNode.isRunning()) {
             return;
         }
+        if (manualIpc != null && manualIpc.send(Map.of("c", "accept", "on", value))) return;
         String cmd = value ? "ACCEPT on" : "ACCEPT off";
         manualNode.sendCommandLine(cmd);
     }
 
-    private void reloadClientsFromJson() {
-        // сохраняем текущее состояние на случай race
-        List<String> oldIds = new ArrayList<>(clientIds);
-
-        List<String> parsed = new ArrayList<>();
-
-        if (manualStateFile != null && Files.exists(manualStateFile)) {
-            try {
-                JsonNode root = mapper.readTree(manualStateFile.toFile());
-                JsonNode arr = root.path("clients");
-                if (arr.isArray()) {
-                    for (JsonNode n : arr) {
-                        String id = null;
-                        if (n.isTextual()) {
-                            id = n.asText();
-                        } else if (n.isObject()) {
-                            id = n.path("id").asText(null);
-                        }
-                        if (id != null && !id.isBlank() && !parsed.contains(id)) {
-                            parsed.add(id);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                logWarn("Не удалось прочитать clients.json: " + e.getMessage());
-            }
-        }
-
-        // защита от race: если файл пустой, но в памяти уже есть клиенты — не затираем
-        if (parsed.isEmpty() && !oldIds.isEmpty()) {
-            clientIds.clear();
-            clientIds.addAll(oldIds);
-            logInfo("clients.json ещё не обновился — оставляю in-memory список клиентов (" + clientIds.size() + ").");
-        } else {
-            clientIds.clear();
-            clientIds.addAll(parsed);
-        }
-
+    // один раз на пачку событий, а не на каждое подключение
+    private void onClientsChanged() {
         updateClientCountLabel();
         updateSendButtonState();
-
-        if (clientComboController != null) clientComboController.refresh();
-        if (clientComboLeftController != null) clientComboLeftController.refresh();
+        // комбобоксы смотрят в живой список реестра и обновляются сами
     }
 
     // ===== Отправка =====
@@ -788,24 +996,21 @@ public class WebSocketManualController {
 
         boolean sendToAll = (chkSendToAll != null && chkSendToAll.isSelected());
 
-        String compactPayload = payload
-                .replaceAll("\\s+", " ")
-                .trim();
+        // в одну строку payload сжимается только для stdin-команды (см. sendToTargets)
+        String outPayload = payload.trim();
 
         if (sendToAll) {
             // отправка всем
-            if (clientIds.isEmpty()) {
+            if (clients.isEmpty()) {
                 logWarn("Нет клиентов для отправки.");
                 updateSendButtonState();
                 return;
             }
 
-            for (String id : clientIds) {
-                if (id == null || id.isBlank()) continue;
-                manualNode.sendCommandLine("SEND id=" + id + " " + compactPayload);
-            }
+            // одна строка в stdin: сервер сам раздаёт payload всем открытым клиентам
+            sendToTargets(null, outPayload);
 
-            logInfo("Отправка всем клиентам (" + clientIds.size() + "): " + trim(payload));
+            logInfo("Отправка всем клиентам (" + clients.size() + "): " + trim(payload));
 
             // NEW: автоочистка исходящего текста по настройке
             if (shouldAutoClearOutgoingAfterSend()) {
@@ -827,9 +1032,7 @@ public class WebSocketManualController {
             return;
         }
 
-        String commandLine = "SEND id=" + clientId + " " + compactPayload;
-
-        manualNode.sendCommandLine(commandLine);
+        sendToTargets(List.of(clientId), outPayload);
         logInfo("Отправка клиенту [" + clientId + "]: " + trim(payload));
 
         // NEW: автоочистка исходящего текста по настройке
@@ -839,6 +1042,141 @@ public class WebSocketManualController {
         }
     }
 
+    /**
+     * Отправка одного payload manual-серверу одной командой:
+     * ids == null — всем, иначе списку id. По IPC payload уходит как есть (с переводами строк);
+     * без канала — строкой stdin: BROADCAST, SEND id= или SEND ids=a,b,c.
+     */
+    private void sendToTargets(List<String> ids, String payload) {
+        if (manualIpc != null && manualIpc.isConnected()) {
+            Map<String, Object> cmd = (ids == null)
+                    ? Map.of("c", "broadcast", "payload", payload)
+                    : Map.of("c", "send", "ids", ids, "payload", payload);
+            if (manualIpc.send(cmd)) return;
+        }
+        String compactPayload = payload.replaceAll("\\s+", " ").trim();
+        if (ids == null) {
+            manualNode.sendCommandLine("BROADCAST " + compactPayload);
+        } else if (ids.size() == 1) {
+            manualNode.sendCommandLine("SEND id=" + ids.get(0) + " " + compactPayload);
+        } else if (!ids.isEmpty()) {
+            manualNode.sendCommandLine("SEND ids=" + String.join(",", ids) + " " + compactPayload);
+        }
+    }
+
+    private void sendPing(List<String> ids) {
+        if (manualIpc != null && manualIpc.send(Map.of("c", "ping", "ids", List.copyOf(ids)))) return;
+        if (ids.size() == 1) manualNode.sendCommandLine("PING id=" + ids.get(0));
+        else manualNode.sendCommandLine("PING ids=" + String.join(",", ids));
+    }
+
+    // ===== Трафик =====
+
+    @FXML
+    private void onTraffic() {
+        if (trafficDashboard == null) {
+            trafficDashboard = new TrafficDashboardDialog(this::trafficRows,
+                    id -> ManualTrafficStats.TOTAL_ROW.equals(id) || ManualTrafficStats.BROADCAST_ROW.equals(id));
+            if (btnTraffic != null && btnTraffic.getScene() != null) {
+                trafficDashboard.initOwner(btnTraffic.getScene().getWindow());
+            }
+        }
+        if (trafficDashboard.isShowing()) {
+            trafficDashboard.getDialogPane().getScene().getWindow().requestFocus();
+            return;
+        }
+        trafficDashboard.show();
+    }
+
+    private List<TrafficDashboardDialog.Row> trafficRows() {
+        List<ManualTrafficStats.Row> snap = traffic.snapshot(System.currentTimeMillis());
+        List<TrafficDashboardDialog.Row> rows = new ArrayList<>(snap.size());
+        for (ManualTrafficStats.Row r : snap) {
+            rows.add(new TrafficDashboardDialog.Row(r.clientId(), r.inMsgs(), r.inBytes(), r.outMsgs(), r.outBytes(),
+                    r.inMsgsPerSec(), r.inBytesPerSec(), r.outMsgsPerSec(), r.outBytesPerSec(), r.history()));
+        }
+        return rows;
+    }
+
+    // ===== RTT и фоновый ping =====
+
+    private void initPing() {
+        boolean background = false;
+        try {
+            Path settingFile = getManualSettingFile();
+            if (Files.exists(settingFile)) {
+                JsonNode p = mapper.readTree(settingFile.toFile()).path("ping");
+                background = p.path("background").asBoolean(false);
+                int interval = p.path("intervalMs").asInt(DEFAULT_PING_INTERVAL_MS);
+                if (interval > 0) backgroundPingIntervalMs = interval;
+            }
+        } catch (Exception e) {
+            logWarn("Не удалось прочитать настройки ping из setting.json: " + e.getMessage());
+        }
+        if (btnSendPing == null) return;
+
+        // подсказка с RTT выбранного клиента собирается только при показе
+        Tooltip tt = btnSendPing.getTooltip() != null ? btnSendPing.getTooltip() : new Tooltip();
+        btnSendPing.setTooltip(tt);
+        tt.setOnShowing(e -> {
+            String id = clientComboController == null ? null : clientComboController.getSelectedValue();
+            String rtt = id == null ? "" : describeRtt(id);
+            tt.setText("Отправить Ping" + (rtt.isEmpty() ? "" : "\n[" + id + "] " + rtt) + "\nПКМ — фоновый ping");
+        });
+
+        CheckMenuItem bg = new CheckMenuItem();
+        MenuItem interval = new MenuItem("Интервал фонового ping…");
+        Runnable updateText = () -> bg.setText("Фоновый ping всем (каждые " + backgroundPingIntervalMs + " мс)");
+        updateText.run();
+        bg.setOnAction(e -> setBackgroundPing(bg.isSelected()));
+        interval.setOnAction(e -> {
+            TextInputDialog dlg = new TextInputDialog(String.valueOf(backgroundPingIntervalMs));
+            dlg.setTitle("Фоновый ping");
+            dlg.setHeaderText(null);
+            dlg.setContentText("Интервал, мс:");
+            dlg.showAndWait().ifPresent(v -> {
+                try {
+                    int ms = Integer.parseInt(v.trim());
+                    if (ms < 10) throw new NumberFormatException();
+                    backgroundPingIntervalMs = ms;
+                    updateText.run();
+                    if (bg.isSelected()) setBackgroundPing(true);
+                } catch (NumberFormatException ex) {
+                    logWarn("Интервал фонового ping — целое число мс, не меньше 10.");
+                }
+            });
+        });
+        btnSendPing.setContextMenu(new ContextMenu(bg, interval));
+
+        if (background) {
+            bg.setSelected(true);
+            setBackgroundPing(true);
+        }
+    }
+
+    private void setBackgroundPing(boolean on) {
+        if (backgroundPing != null) {
+            backgroundPing.stop();
+            backgroundPing = null;
+        }
+        if (!on) return;
+        backgroundPing = new Timeline(new KeyFrame(Duration.millis(backgroundPingIntervalMs), e -> backgroundPingTick()));
+        backgroundPing.setCycleCount(Animation.INDEFINITE);
+        backgroundPing.play();
+    }
+
+    // одна команда на тик: сервер сам пингует всех открытых, pong не попадают во входящие
+    private void backgroundPingTick() {
+        if (manualNode == null || !manualNode.isRunning() || clients.isEmpty()) return;
+        if (manualIpc != null && manualIpc.send(Map.of("c", "ping", "all", true, "quiet", true))) return;
+        manualNode.sendCommandLine("PING all quiet");
+    }
+
+    private String describeRtt(String clientId) {
+        ManualRttStats.Summary s = rttStats.summary(clientId, System.currentTimeMillis());
+        return s == null ? "" : s.describe();
+    }
+
     @FXML
     private void onSendPing() {
         if (manualNode == null || !manualNode.isRunning()) {
@@ -855,16 +1193,13 @@ public class WebSocketManualController {
         boolean sendToAll = (chkSendToAll != null && chkSendToAll.isSelected());
 
         if (sendToAll) {
-            if (clientIds.isEmpty()) {
+            if (clients.isEmpty()) {
                 logWarn("Нет клиентов для ping.");
                 updateSendButtonState();
                 return;
             }
 
-            for (String id : clientIds) {
-                if (id == null || id.isBlank()) continue;
-                manualNode.sendCommandLine("PING id=" + id);
-            }
+            sendPing(clients.ids());
 
             logOutgoing("> WebSocket Ping sent (ALL)");
             String time = LocalTime.now().format(TIME_FMT);
@@ -886,7 +1221,7 @@ public class WebSocketManualController {
             return;
         }
 
-        manualNode.sendCommandLine("PING id=" + clientId);
+        sendPing(List.of(clientId));
 
         logOutgoing("> WebSocket Ping sent");
         String time = LocalTime.now().format(TIME_FMT);
@@ -1007,7 +1342,7 @@ public class WebSocketManualController {
         boolean hasClient = (clientId != null && !clientId.isBlank());
 
         // NEW: если "всем", то таргет — наличие хотя бы одного клиента
-        boolean hasTarget = sendToAll ? !clientIds.isEmpty() : hasClient;
+        boolean hasTarget = sendToAll ? !clients.isEmpty() : hasClient;
 
         String text = txtOutgoing.getText();
         boolean empty = (text == null || text.isBlank());
@@ -1020,10 +1355,15 @@ public class WebSocketManualController {
 
         // NEW: ping только в одного (и только когда НЕ sendToAll)
         if (btnSendPing != null) {
-            boolean hasPingTarget = sendToAll ? !clientIds.isEmpty() : hasClient;
+            boolean hasPingTarget = sendToAll ? !clients.isEmpty() : hasClient;
             boolean canPing = serverOk && acceptOk && hasPingTarget;
             btnSendPing.setDisable(!canPing);
         }
+
+        // идущую отправку всегда можно остановить
+        if (btnPeriodic != null) {
+            btnPeriodic.setDisable(!periodic.isRunning() && (empty || !canSend));
+        }
     }
 
     @FXML
@@ -1087,7 +1427,8 @@ public class WebSocketManualController {
             return;
         }
 
-        if (taLog.getText().isEmpty()) {
+        // getLength(), а не getText(): getText() копирует весь лог консоли
+        if (taLog.getLength() == 0) {
             taLog.appendText(line);
         } else {
             taLog.appendText("\n" + line);
@@ -1111,87 +1452,78 @@ public class WebSocketManualController {
 
     // ===== Клиенты =====
 
-    public void onClientConnected(String clientId) {
-        if (!clientIds.contains(clientId)) {
-            clientIds.add(clientId);
-        }
-        updateClientCountLabel();
-
-        if (clientComboController != null) {
-            clientComboController.refresh();
-        }
-        if (clientComboLeftController != null) {
-            clientComboLeftController.refresh();
-        }
-
-        logInfo("Клиент подключен: " + clientId);
-    }
-
-    public void onClientDisconnected(String clientId) {
-        clientIds.remove(clientId);
-        incomingByClient.remove(clientId);
-
-        updateClientCountLabel();
-
-        if (clientComboController != null) {
-            clientComboController.refresh();
-        }
-        if (clientComboLeftController != null) {
-            clientComboLeftController.refresh();
-        }
-
-        refreshIncomingListView();
-        logInfo("Клиент отключен: " + clientId);
-    }
-
-    public void onClientMessage(String clientId, String message) {
-        String formatted = formatMsg(message);
-
-        List<String> bucket = incomingByClient.computeIfAbsent(clientId, id -> new ArrayList<>());
-        bucket.add(formatted);
-
-        refreshIncomingListView();
-        logInfo("Сообщение от [" + clientId + "].");
+    private MessageRing incomingRing(String clientId) {
+        return incomingByClient.computeIfAbsent(clientId, id -> new MessageRing(incomingLimits, bufferStats));
     }
 
+    /**
+     * Переключает ListView на буфер выбранного клиента (или общую ленту).
+     * Данные не копируются: список смотрит прямо в кольцевой буфер и дальше получает только дельты.
+     */
     private void refreshIncomingListView() {
         if (listIncoming == null) return;
 
-        List<String> viewData = new ArrayList<>();
-
         String selectedClient = null;
         if (clientComboLeftController != null) {
             selectedClient = clientComboLeftController.getSelectedValue();
         }
 
+        ObservableList<ManualMessage> source;
         if (selectedClient == null || selectedClient.isBlank()) {
-            for (Map.Entry<String, List<String>> e : incomingByClient.entrySet()) {
-                String clientId = e.getKey();
-                for (String msg : e.getValue()) {
-                    viewData.add("[" + clientId + "] " + msg);
-                }
-            }
+            source = allIncoming;
+        } else if (clients.contains(selectedClient)) {
+            source = incomingRing(selectedClient);
         } else {
-            List<String> bucket = incomingByClient.get(selectedClient);
-            if (bucket != null) {
-                viewData.addAll(bucket);
-            }
+            // клиент уже отключился: новый буфер под его id никто бы не убрал
+            MessageRing ring = incomingByClient.get(selectedClient);
+            source = ring != null ? ring : FXCollections.emptyObservableList();
         }
+        if (listIncoming.getItems() != source) listIncoming.setItems(source);
 
-        listIncoming.getItems().setAll(viewData);
+        updateIncomingScrollButton();
+    }
 
-        if (btnScrollIncoming != null) {
-            boolean need = viewData.size() > 20;
+    private void updateIncomingScrollButton() {
+        if (btnScrollIncoming == null || listIncoming == null) return;
+        boolean need = listIncoming.getItems().size() > 20;
+        if (btnScrollIncoming.isVisible() != need) {
             btnScrollIncoming.setVisible(need);
             btnScrollIncoming.setManaged(need);
         }
     }
 
+    // строки форматируются только для видимых ячеек; в общей ленте — с id клиента
+    private void installMessageCellFactories() {
+        if (listIncoming != null) {
+            listIncoming.setCellFactory(lv -> new ListCell<>() {
+                @Override
+                protected void updateItem(ManualMessage item, boolean empty) {
+                    super.updateItem(item, empty);
+                    if (empty || item == null) setText(null);
+                    else if (lv.getItems() == allIncoming) setText("[" + item.clientId() + "] " + formatMsg(item));
+                    else setText(formatMsg(item));
+                }
+            });
+        }
+        if (listOutgoingLog != null) {
+            listOutgoingLog.setCellFactory(lv -> new ListCell<>() {
+                @Override
+                protected void updateItem(ManualMessage item, boolean empty) {
+                    super.updateItem(item, empty);
+                    if (empty || item == null) setText(null);
+                    else if (item.clientId() != null) setText("[" + item.clientId() + "] " + formatMsg(item));
+                    else setText(formatMsg(item));
+                }
+            });
+        }
+    }
+
     /**
      * btnClientCount — индикатор (ВСЕГДА graphic):
      * - count == 0: показываем SVG (clients-empty.svg)
      * - count > 0 : показываем Label с числом
-     * + tooltip всегда
+     * Tooltip заполняется лениво при показе (см. initClientCountIndicatorGraphic),
+     * здесь только число — O(1) на пачку подключений.
      */
     private void updateClientCountLabel() {
         if (btnClientCount == null) return;
@@ -1201,18 +1533,12 @@ public class WebSocketManualController {
             return;
         }
 
-        // tooltip всегда
-        Tooltip tt = new Tooltip(buildClientsTooltip(clientIds, 5));
-        tt.setWrapText(true);
-        tt.setMaxWidth(420);
-        btnClientCount.setTooltip(tt);
-
         // гарантируем, что graphic инициализирован
         if (clientCountGraphic == null) {
             initClientCountIndicatorGraphic();
         }
 
-        int count = clientIds.size();
+        int count = clients.size();
 
         // кнопка всегда без текста, всегда graphic-only
         btnClientCount.setText("");
@@ -1237,7 +1563,7 @@ public class WebSocketManualController {
         }
     }
 
-    private String buildClientsTooltip(List<String> ids, int limit) {
+    private String buildClientsTooltip(List<String> ids, int total) {
         if (ids == null || ids.isEmpty()) {
             return "Нет подключённых";
         }
@@ -1245,13 +1571,12 @@ public class WebSocketManualController {
         StringBuilder sb = new StringBuilder();
         sb.append("Подключены:\n");
 
-        int n = Math.min(limit, ids.size());
-        for (int i = 0; i < n; i++) {
-            sb.append("• ").append(ids.get(i)).append("\n");
+        for (String id : ids) {
+            sb.append("• ").append(id).append("\n");
         }
 
-        if (ids.size() > limit) {
-            sb.append("• ...");
+        if (total > ids.size()) {
+            sb.append("• ... всего ").append(total);
         } else {
             if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
                 sb.setLength(sb.length() - 1);
@@ -1264,16 +1589,16 @@ public class WebSocketManualController {
     // ===== Лог исходящих сообщений сервера =====
 
     public void logOutgoing(String msg) {
-        String formatted = formatMsg(msg);
-        outgoingMessages.add(formatted);
+        ManualMessage m = newMessage(null, true, msg, System.currentTimeMillis(), false);
+        outgoingMessages.add(m);
+        searchIndex.submit(List.of(new ManualSearchIndex.Doc(m.seq(), null, true, msg)));
         refreshOutgoingLogView();
+        updateBufferStatsLabel();
     }
 
     private void refreshOutgoingLogView() {
         if (listOutgoingLog == null) return;
 
-        listOutgoingLog.getItems().setAll(outgoingMessages);
-
         int size = outgoingMessages.size();
         if (size > 0) {
             listOutgoingLog.scrollTo(size - 1);
@@ -1301,14 +1626,14 @@ public class WebSocketManualController {
         }
     }
 
-    // ===== Templates: save current outgoing -> templates.json (with de-dup) =====
+    // ===== Templates: save current outgoing -> templates.jsonl (append, with de-dup) =====
 
     @FXML
     private void onSaveTemplate() {
         if (txtOutgoing == null) return;
 
-        String raw = txtOutgoing.getText();
-        String normalized = normalizeTemplate(raw);
+        initTemplatesFilePath();
+        String normalized = templateStore.normalize(txtOutgoing.getText());
 
         if (normalized.isBlank()) {
             logWarn("Шаблон пустой — сохранять нечего.");
@@ -1316,88 +1641,19 @@ public class WebSocketManualController {
         }
 
         try {
-            initTemplatesFilePath();
-            ensureTemplatesFileExists();
-
-            // всегда перечитываем, чтобы не потерять изменения, сделанные через внешний редактор
-            loadTemplatesFromJson();
-
-            boolean exists = templates.contains(normalized);
-            if (exists) {
-                logInfo("Шаблон уже есть в templates.json — дубликат не добавляю.");
+            // одна строка в конец файла; внешние правки подтягивает watcher
+            if (!templateStore.append(normalized)) {
+                logInfo("Шаблон уже есть в templates.jsonl — дубликат не добавляю.");
                 selectTemplateInCombo(normalized);
                 return;
             }
-
-            templates.add(normalized);
-            writeTemplatesToJson();
-            refreshTemplatesComboOnFx();
             selectTemplateInCombo(normalized);
-
-            logInfo("Шаблон сохранён в templates.json.");
+            logInfo("Шаблон сохранён в templates.jsonl (" + templateStore.size() + ").");
         } catch (Exception e) {
-            logWarn("Не удалось сохранить шаблон в templates.json: " + e.getMessage());
-        }
-    }
-
-
-    //111111111111111
-
-    private String normalizeTemplate(String s) {
-        if (s == null) return "";
-        String t = s.replace("\r\n", "\n").replace("\r", "\n").trim();
-        if (t.isBlank()) return "";
-
-        // Если это валидный JSON — канонизируем в компактную строку без лишних пробелов.
-        try {
-            JsonNode n = mapper.readTree(t);
-            return mapper.writeValueAsString(n);
-        } catch (Exception ignore) {
-            // Если это не JSON — оставляем как есть (но тогда при записи уйдёт строкой, с экранированием).
-            return t;
+            logWarn("Не удалось сохранить шаблон в templates.jsonl: " + e.getMessage());
         }
     }
 
-    private void writeTemplatesToJson() throws IOException {
-        initTemplatesFilePath();
-        ensureTemplatesFileExists();
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\"templates\":[\n");
-
-        boolean first = true;
-        for (String t : templates) {
-            if (t == null) continue;
-            String n = normalizeTemplate(t);
-            if (n.isBlank()) continue;
-
-            if (!first) sb.append(",\n");
-
-            // JSON (object/array/number/bool/null) пишем как JSON-узел в одну строку
-            // Иначе (любой текст) пишем как JSON-строку
-            try {
-                JsonNode node = mapper.readTree(n);
-                String oneLine = mapper.writeValueAsString(node);
-                sb.append(oneLine);
-            } catch (Exception ex) {
-                // это не JSON → сохраняем как строку
-                sb.append(mapper.writeValueAsString(n));
-            }
-
-            first = false;
-        }
-
-        sb.append("\n]}");
-
-        Files.writeString(
-                templatesFile,
-                sb.toString(),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING
-        );
-    }
-
 
     // ===== Templates helpers =====
 
@@ -1407,97 +1663,38 @@ public class WebSocketManualController {
         if (manualServerDir == null) {
             manualServerDir = Paths.get(System.getProperty("user.dir"), "node-server-manual");
         }
-        templatesFile = manualServerDir.resolve("setting").resolve("templates.json");
-    }
-
-    private void ensureTemplatesFileExists() throws IOException {
-        Path dir = templatesFile.getParent();
-        if (dir != null && !Files.exists(dir)) {
-            Files.createDirectories(dir);
-        }
-        if (!Files.exists(templatesFile)) {
-            String minimal = "{\n  \"templates\": []\n}\n";
-            Files.writeString(
-                    templatesFile,
-                    minimal,
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING
-            );
-        }
+        templatesFile = manualServerDir.resolve("setting").resolve("templates.jsonl");
+        templateStore = new ManualTemplateStore(templatesFile);
     }
 
-    private void loadTemplatesFromJson() {
+    // первое чтение (и перенос старого templates.json) — синхронно: это один проход по файлу
+    private void loadTemplates() {
         try {
-            initTemplatesFilePath();
-            ensureTemplatesFileExists();
-
-            String json = Files.readString(templatesFile, StandardCharsets.UTF_8).trim();
-            if (json.isEmpty()) {
-                templates.clear();
-                return; // FIX: не трогаем UI здесь
-            }
-
-            JsonNode root = mapper.readTree(json);
-            List<String> loaded = new ArrayList<>();
-
-            // Поддерживаем форматы:
-            // 1) { "templates": [ "...", {...}, ... ] }
-            // 2) [ "...", {...}, ... ]
-            JsonNode arr;
-            if (root.isArray()) {
-                arr = root;
-            } else if (root.isObject()) {
-                arr = root.path("templates");
-            } else {
-                arr = null;
-            }
-
-            if (arr != null && arr.isArray()) {
-                for (JsonNode n : arr) {
-                    if (n == null || n.isNull()) continue;
-
-                    if (n.isTextual()) {
-                        String s = normalizeTemplate(n.asText());
-                        if (!s.isBlank()) loaded.add(s);
-                    } else {
-                        // объект/массив/число/boolean — превращаем в компактный JSON
-                        String s = normalizeTemplate(mapper.writeValueAsString(n));
-                        if (!s.isBlank()) loaded.add(s);
-                    }
-                }
-            }
-
-            templates.clear();
-            templates.addAll(loaded);
-
-            // FIX: никакого refreshTemplatesComboOnFx() тут
+            templateStore.apply(templateStore.open());
         } catch (Exception e) {
-            logWarn("Не удалось прочитать templates.json: " + e.getMessage());
+            logWarn("Не удалось прочитать templates.jsonl: " + e.getMessage());
         }
     }
 
-    private void refreshTemplatesComboOnFx() {
-        Platform.runLater(() -> {
-            if (templatesComboController != null) {
-                templatesComboController.refresh();
-            } else if (cbTemplates != null) {
-                cbTemplates.getItems().setAll(templates);
+    private void initTemplateSearch() {
+        if (txtTemplateSearch == null) return;
+        txtTemplateSearch.textProperty().addListener((obs, oldV, newV) -> {
+            templateStore.filter(newV);
+            if (newV != null && !newV.isBlank() && !cbTemplates.isShowing() && !templateStore.view().isEmpty()) {
+                cbTemplates.show();
             }
         });
     }
 
-
     private void selectTemplateInCombo(String normalizedTemplate) {
         if (cbTemplates == null) return;
 
         Platform.runLater(() -> {
-            for (String item : cbTemplates.getItems()) {
-                if (normalizeTemplate(item).equals(normalizedTemplate)) {
-                    cbTemplates.getSelectionModel().select(item);
-                    break;
-                }
+            // отфильтрованный список может не содержать шаблон — сбрасываем фильтр
+            if (txtTemplateSearch != null && !templateStore.view().contains(normalizedTemplate)) {
+                txtTemplateSearch.clear();
             }
+            cbTemplates.getSelectionModel().select(normalizedTemplate);
         });
     }
 
@@ -1511,7 +1708,7 @@ public class WebSocketManualController {
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    setText(truncTemplate(item));
+                    setText(ManualTemplateStore.preview(item, TEMPLATE_PREVIEW_LEN));
                 }
             }
         });
@@ -1521,24 +1718,16 @@ public class WebSocketManualController {
             protected void updateItem(String item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) setText(null);
-                else setText(truncTemplate(item));
+                else setText(ManualTemplateStore.preview(item, TEMPLATE_PREVIEW_LEN));
             }
         });
     }
 
-    private String truncTemplate(String s) {
-        if (s == null) return "";
-        String t = s.replace("\r", " ").replace("\n", " ").trim();
-        if (t.length() <= TEMPLATE_PREVIEW_LEN) return t;
-        return t.substring(0, TEMPLATE_PREVIEW_LEN) + "...";
-    }
-
     private void startTemplatesWatcher() {
         if (templatesWatchRunning) return;
 
         try {
             initTemplatesFilePath();
-            ensureTemplatesFileExists();
 
             templatesWatch = FileSystems.getDefault().newWatchService();
             Path dir = templatesFile.getParent();
@@ -1581,9 +1770,13 @@ public class WebSocketManualController {
                     if (touched) {
                         // редакторы часто пишут файл в несколько проходов — чуть подождём
                         try { Thread.sleep(120); } catch (InterruptedException ignored) {}
-                        loadTemplatesFromJson();
-                        // FIX: UI обновляем здесь, а не внутри loadTemplatesFromJson()
-                        refreshTemplatesComboOnFx();
+                        // в UI уходит только дельта; своё сохранение даёт пустую дельту
+                        try {
+                            ManualTemplateStore.Diff diff = templateStore.readExternalChanges();
+                            if (!diff.isEmpty()) Platform.runLater(() -> templateStore.apply(diff));
+                        } catch (IOException e) {
+                            Platform.runLater(() -> logWarn("Не удалось перечитать templates.jsonl: " + e.getMessage()));
+                        }
                     }
                 }
             }, "ws-manual-templates-watch");
@@ -1592,10 +1785,10 @@ public class WebSocketManualController {
             templatesWatchThread.start();
 
             // гарантированно выключаем watcher при закрытии приложения
-            AppShutdown.register(this::stopTemplatesWatcher);
+            AppShutdown.registerOnExit(templatesWatcherExitHook);
 
         } catch (Exception e) {
-            logWarn("Не удалось запустить watcher templates.json: " + e.getMessage());
+            logWarn("Не удалось запустить watcher templates.jsonl: " + e.getMessage());
         }
     }
 
@@ -1605,15 +1798,491 @@ public class WebSocketManualController {
         templatesWatch = null;
     }
 
-    private String formatMsg(String raw) {
+    /**
+     * @param journaled полный текст есть в текущем журнале — в буфере
+     *                  остаётся только превью; иначе текст хранится целиком, его больше негде взять
+     */
+    private ManualMessage newMessage(String clientId, boolean outgoing, String raw, long timeMs, boolean journaled) {
         if (raw == null) raw = "";
         raw = raw.trim();
-        if (raw.length() > 500) {
-            raw = raw.substring(0, 500) + "...";
+        String preview = journaled && raw.length() > MESSAGE_PREVIEW_LEN ? raw.substring(0, MESSAGE_PREVIEW_LEN) : raw;
+        return new ManualMessage(nextSeq++, clientId, outgoing, timeMs, preview, raw.length());
+    }
+
+    private String formatMsgTime(ManualMessage m) {
+        return LocalTime.ofInstant(Instant.ofEpochMilli(m.timeMs()), ZoneId.systemDefault()).format(TIME_FMT);
+    }
+
+    private String formatMsg(ManualMessage m) {
+        return formatMsgTime(m) + " " + m.text() + (m.truncated() ? "... [" + m.fullLength() + " симв.]" : "");
+    }
+
+    // ===== Журнал трафика =====
+
+    private void initJournal() {
+        boolean enabled = true;
+        int segmentBytes = DEFAULT_JOURNAL_SEGMENT_BYTES;
+        try {
+            Path settingFile = getManualSettingFile();
+            if (Files.exists(settingFile)) {
+                JsonNode j = mapper.readTree(settingFile.toFile()).path("journal");
+                enabled = j.path("enabled").asBoolean(true);
+                segmentBytes = j.path("segmentBytes").asInt(DEFAULT_JOURNAL_SEGMENT_BYTES);
+            }
+        } catch (Exception e) {
+            logWarn("Не удалось прочитать настройки журнала из setting.json: " + e.getMessage());
         }
+        AppShutdown.register(replayStopper);
+        AppShutdown.register(periodicStopper);
 
-        String time = LocalTime.now().format(TIME_FMT);
-        return time + " " + raw;
+        // выключенный журнал не пишет, но прошлые сессии через кнопку открыть можно
+        if (!enabled) return;
+
+        journal = ManualJournal.createSession(getJournalRoot(), segmentBytes);
+        AppShutdown.registerOnExit(journalExitHook);
+    }
+
+    private void closeJournals() {
+        if (journal != null) journal.close();
+        if (loadedJournal != null && loadedJournal != journal) loadedJournal.close();
+    }
+
+    private Path getJournalRoot() {
+        if (manualServerDir == null) {
+            manualServerDir = Paths.get(System.getProperty("user.dir"), "node-server-manual");
+        }
+        return manualServerDir.resolve("journal");
+    }
+
+    @FXML
+    private void onJournal() {
+        if (btnJournal == null) return;
+
+        MenuItem open = new MenuItem("Открыть сессию…");
+        open.setOnAction(e -> chooseJournalSession("Открыть сессию журнала").ifPresent(this::loadJournalSession));
+
+        MenuItem export = new MenuItem("Экспорт сессии в JSONL…");
+        export.setOnAction(e -> chooseJournalSession("Экспорт сессии журнала").ifPresent(this::exportJournalSession));
+
+        MenuItem replayItem = replay.isPlaying()
+                ? new MenuItem("Остановить повтор")
+                : new MenuItem("Повторить исходящие клиенту…");
+        replayItem.setOnAction(e -> {
+            if (replay.isPlaying()) replay.cancel();
+            else chooseJournalSession("Повтор исходящих").ifPresent(this::startReplay);
+        });
+
+        MenuItem folder = new MenuItem("Открыть папку журнала");
+        folder.setOnAction(e -> {
+            try {
+                Path root = getJournalRoot();
+                Files.createDirectories(root);
+                if (Desktop.isDesktopSupported()) Desktop.getDesktop().open(root.toFile());
+                else logWarn("Desktop API не поддерживается, папка журнала: " + root.toAbsolutePath());
+            } catch (Exception ex) {
+                logWarn("Не удалось открыть папку журнала: " + ex.getMessage());
+            }
+        });
+
+        new ContextMenu(open, export, replayItem, folder).show(btnJournal, Side.BOTTOM, 0, 0);
+    }
+
+    private Optional<Path> chooseJournalSession(String title) {
+        List<Path> sessions;
+        try {
+            sessions = ManualJournal.listSessions(getJournalRoot());
+        } catch (IOException e) {
+            logWarn("Не удалось прочитать папку журнала: " + e.getMessage());
+            return Optional.empty();
+        }
+        if (sessions.isEmpty()) {
+            logInfo("В журнале пока нет сессий.");
+            return Optional.empty();
+        }
+
+        Map<String, Path> byName = new LinkedHashMap<>();
+        for (Path p : sessions) {
+            boolean current = journal != null && p.equals(journal.sessionDir());
+            byName.put(p.getFileName() + (current ? " (текущая)" : ""), p);
+        }
+        List<String> names = new ArrayList<>(byName.keySet());
+        ChoiceDialog<String> dlg = new ChoiceDialog<>(names.get(0), names);
+        dlg.setTitle(title);
+        dlg.setHeaderText(null);
+        dlg.setContentText("Сессия:");
+        return dlg.showAndWait().map(byName::get);
+    }
+
+    private void exportJournalSession(Path sessionDir) {
+        Path target = sessionDir.resolveSibling(sessionDir.getFileName() + ".jsonl");
+        Thread t = new Thread(() -> {
+            try {
+                long n = ManualJournal.exportJsonl(sessionDir, target);
+                Platform.runLater(() -> logInfo("Экспорт журнала: " + n + " записей → " + target.toAbsolutePath()));
+            } catch (IOException e) {
+                Platform.runLater(() -> logWarn("Экспорт журнала не удался: " + e.getMessage()));
+            }
+        }, "ws-manual-journal-export");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Запись прошлой сессии для показа: превью и токены для поиска вместо полного текста.
+     * Полный payload остаётся на диске и читается по seq (ManualJournal.readPayload).
+     */
+    private record LoadedEntry(long seq, long timeMs, boolean outgoing, String clientId,
+                               String preview, int fullLength, String[] tokens) {}
+
+    // сегменты читаются в фоне; в UI попадает только хвост, который всё равно поместится в буферы.
+    // Payload каждой записи разбирается сразу при чтении и в хвосте не хранится
+    private void loadJournalSession(Path sessionDir) {
+        ManualJournal live = journal;
+        Thread t = new Thread(() -> {
+            ArrayDeque<LoadedEntry> tail = new ArrayDeque<>();
+            // имена полей и частые значения повторяются в каждой записи — храним по одному экземпляру
+            Map<String, String> tokenPool = new HashMap<>();
+            try {
+                long total = ManualJournal.scan(sessionDir, e -> {
+                    String raw = e.payload() == null ? "" : e.payload().trim();
+                    String[] tokens = ManualSearchIndex.tokens(raw);
+                    for (int i = 0; i < tokens.length; i++) tokens[i] = tokenPool.computeIfAbsent(tokens[i], k -> k);
+                    String preview = raw.length() > MESSAGE_PREVIEW_LEN ? raw.substring(0, MESSAGE_PREVIEW_LEN) : raw;
+                    tail.addLast(new LoadedEntry(e.seq(), e.tsNanos() / 1_000_000L, e.outgoing(), e.clientId(),
+                            preview, raw.length(), tokens));
+                    if (tail.size() > SEARCH_MAX_DOCS) tail.removeFirst();
+                });
+                ManualJournal reader = (live != null && sessionDir.equals(live.sessionDir()))
+                        ? live
+                        : ManualJournal.openExisting(sessionDir);
+                Platform.runLater(() -> showJournalEntries(sessionDir, reader, tail, total));
+            } catch (IOException e) {
+                Platform.runLater(() -> logWarn("Не удалось прочитать журнал: " + e.getMessage()));
+            }
+        }, "ws-manual-journal-load");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void showJournalEntries(Path sessionDir, ManualJournal reader, ArrayDeque<LoadedEntry> entries, long total) {
+        for (MessageRing ring : incomingByClient.values()) ring.clear();
+        incomingByClient.clear();
+        allIncoming.clear();
+        outgoingMessages.clear();
+        searchIndex.clear();
+
+        Map<String, List<ManualMessage>> incoming = new LinkedHashMap<>();
+        List<ManualMessage> all = new ArrayList<>();
+        List<ManualMessage> outgoing = new ArrayList<>();
+        List<ManualSearchIndex.Doc> docs = new ArrayList<>(entries.size());
+
+        if (loadedJournal != null && loadedJournal != journal) loadedJournal.close();
+        loadedJournal = reader;
+        loadedFirstSeq = nextSeq;
+        loadedJournalSeqs = new long[entries.size()];
+        int k = 0;
+        for (LoadedEntry e : entries) {
+            loadedJournalSeqs[k++] = e.seq();
+            ManualMessage msg = new ManualMessage(nextSeq++, e.clientId(), e.outgoing(), e.timeMs(),
+                    e.preview(), e.fullLength());
+            if (e.outgoing()) {
+                outgoing.add(msg);
+            } else {
+                incoming.computeIfAbsent(e.clientId(), id -> new ArrayList<>()).add(msg);
+                all.add(msg);
+            }
+            docs.add(new ManualSearchIndex.Doc(msg.seq(), e.clientId(), e.outgoing(), null, e.tokens()));
+        }
+
+        for (Map.Entry<String, List<ManualMessage>> en : incoming.entrySet()) {
+            incomingRing(en.getKey()).addAll(en.getValue());
+        }
+        allIncoming.addAll(all);
+        outgoingMessages.addAll(outgoing);
+        searchIndex.submit(docs);
+
+        refreshIncomingListView();
+        refreshOutgoingLogView();
+        updateBufferStatsLabel();
+        runSearch();
+        logInfo("Открыта сессия журнала " + sessionDir.getFileName() + ": " + total + " записей"
+                + (total > entries.size() ? ", показаны последние " + entries.size() : "")
+                + ". Новые сообщения добавляются следом.");
+    }
+
+    // ===== Полный текст сообщения =====
+
+    private void installPayloadViewer(ListView<ManualMessage> list) {
+        if (list == null) return;
+        list.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) openPayloadViewer(list.getSelectionModel().getSelectedItem());
+        });
+        // открытый вьюер следует за выделением
+        list.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
+            if (newV != null && payloadViewer != null && payloadViewer.isShowing()) openPayloadViewer(newV);
+        });
+    }
+
+    private void openPayloadViewer(ManualMessage m) {
+        if (m == null) return;
+        if (payloadViewer == null) {
+            payloadViewer = new PayloadViewerDialog();
+            if (listIncoming != null && listIncoming.getScene() != null) {
+                payloadViewer.initOwner(listIncoming.getScene().getWindow());
+            }
+        }
+        String who = m.clientId() == null ? "" : (m.outgoing() ? " → [" : " ← [") + m.clientId() + "]";
+        payloadViewer.showPayload(formatMsgTime(m) + who, fullPayload(m));
+    }
+
+    private CompletableFuture<String> fullPayload(ManualMessage m) {
+        if (!m.truncated()) return CompletableFuture.completedFuture(m.text());
+
+        CompletableFuture<String> f;
+        long i = m.seq() - loadedFirstSeq;
+        if (loadedJournal != null && loadedFirstSeq >= 0 && i >= 0 && i < loadedJournalSeqs.length) {
+            f = loadedJournal.readPayload(loadedJournalSeqs[(int) i]);
+        } else if (journal != null) {
+            f = journal.readPayload(m.seq());
+        } else {
+            f = CompletableFuture.completedFuture(null);
+        }
+        // нет в журнале (выключен/удалён) — хотя бы превью
+        return f.exceptionally(err -> null).thenApply(full -> full != null
+                ? full
+                : m.text() + "\n\n[полный текст недоступен: сообщения нет в журнале]");
+    }
+
+    // ===== Повтор исходящих =====
+
+    private void startReplay(Path sessionDir) {
+        List<String> ids = clients.ids();
+        if (ids.isEmpty()) {
+            logWarn("Повтор: нет подключённых клиентов.");
+            return;
+        }
+        ChoiceDialog<String> who = new ChoiceDialog<>(ids.get(ids.size() - 1), ids);
+        who.setTitle("Повтор исходящих");
+        who.setHeaderText(null);
+        who.setContentText("Клиент:");
+        Optional<String> target = who.showAndWait();
+        if (target.isEmpty()) return;
+
+        TextInputDialog rateDlg = new TextInputDialog("0");
+        rateDlg.setTitle("Повтор исходящих");
+        rateDlg.setHeaderText(null);
+        rateDlg.setContentText("Сообщений в секунду (0 — исходные интервалы):");
+        Optional<String> rateText = rateDlg.showAndWait();
+        if (rateText.isEmpty()) return;
+        double rate;
+        try {
+            rate = Double.parseDouble(rateText.get().trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            logWarn("Повтор: темп должен быть числом.");
+            return;
+        }
+
+        Thread t = new Thread(() -> {
+            List<ManualJournal.Entry> sent = new ArrayList<>();
+            try {
+                ManualJournal.scan(sessionDir, e -> { if (e.outgoing()) sent.add(e); });
+            } catch (IOException e) {
+                Platform.runLater(() -> logWarn("Повтор: не удалось прочитать журнал: " + e.getMessage()));
+                return;
+            }
+            Platform.runLater(() -> runReplay(target.get(), ManualReplay.fromJournal(sent), rate));
+        }, "ws-manual-replay-load");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void runReplay(String clientId, List<ManualReplay.Step> steps, double rate) {
+        if (steps.isEmpty()) {
+            logInfo("Повтор: в сессии нет исходящих сообщений.");
+            return;
+        }
+        if (replay.isPlaying()) {
+            logWarn("Повтор уже идёт.");
+            return;
+        }
+        replayTarget = clientId;
+        logInfo("Повтор: " + steps.size() + " сообщений → [" + clientId + "], "
+                + (rate > 0 ? rate + " сообщ/с" : "исходные интервалы"));
+        replay.play(steps, rate, r -> Platform.runLater(() -> logInfo("Повтор: " + r.describe())))
+                .thenAccept(r -> Platform.runLater(() -> logInfo("Повтор завершён: " + r.describe())));
+    }
+
+    // поток повтора
+    private boolean sendReplayBatch(List<String> payloads) {
+        String id = replayTarget;
+        return id != null && sendBatch(List.of(id), payloads);
+    }
+
+    /**
+     * Пачка payload одним и тем же адресатам (ids == null — всем) из фонового потока.
+     * IPC — одна запись в сокет на пачку, stdin — построчно.
+     */
+    private boolean sendBatch(List<String> ids, List<String> payloads) {
+        if (payloads.isEmpty()) return false;
+        if (manualIpc != null && manualIpc.isConnected()) {
+            List<Map<String, Object>> cmds = new ArrayList<>(payloads.size());
+            for (String p : payloads) {
+                cmds.add(ids == null
+                        ? Map.of("c", "broadcast", "payload", p)
+                        : Map.of("c", "send", "ids", ids, "payload", p));
+            }
+            return manualIpc.sendAll(cmds);
+        }
+        if (manualNode == null || !manualNode.isRunning()) return false;
+        String prefix = ids == null ? "BROADCAST "
+                : ids.size() == 1 ? "SEND id=" + ids.get(0) + " "
+                : "SEND ids=" + String.join(",", ids) + " ";
+        for (String p : payloads) manualNode.sendCommandLine(prefix + p.replaceAll("\\s+", " ").trim());
+        return true;
+    }
+
+    // ===== Периодическая отправка =====
+
+    @FXML
+    private void onPeriodic() {
+        if (periodic.isRunning()) {
+            periodic.stop();
+            return;
+        }
+        String template = txtOutgoing == null ? null : txtOutgoing.getText();
+        if (template == null || template.isBlank()) {
+            logWarn("Периодическая отправка: пустой шаблон.");
+            return;
+        }
+        boolean toAll = chkSendToAll != null && chkSendToAll.isSelected();
+        String clientId = clientComboController == null ? null : clientComboController.getSelectedValue();
+        if (!toAll && (clientId == null || clientId.isBlank())) {
+            logWarn("Периодическая отправка: не выбран клиент.");
+            return;
+        }
+        String targetText = toAll ? "все клиенты (" + clients.size() + ")" : "[" + clientId + "]";
+
+        PeriodicSendDialog dlg = new PeriodicSendDialog(periodicSettings, targetText, ManualPeriodicSender.MAX_RATE_PER_SEC);
+        if (btnPeriodic != null && btnPeriodic.getScene() != null) dlg.initOwner(btnPeriodic.getScene().getWindow());
+        Optional<PeriodicSendDialog.Settings> res = dlg.showAndWait();
+        if (res.isEmpty()) return;
+        periodicSettings = res.get();
+
+        // шаблон фиксируется на запуск: правка поля не влияет на идущую отправку
+        ManualPeriodicSender.Config cfg;
+        try {
+            cfg = new ManualPeriodicSender.Config(
+                    periodicSettings.ratePerSec(),
+                    (long) (periodicSettings.durationSec() * 1_000_000_000L),
+                    periodicSettings.jitterPercent() / 100.0,
+                    template.trim());
+        } catch (IllegalArgumentException e) {
+            logWarn("Периодическая отправка: " + e.getMessage());
+            return;
+        }
+        periodicTargets = toAll ? null : List.of(clientId);
+
+        logInfo("Периодическая отправка → " + targetText + ": " + cfg.ratePerSec() + " сообщ/с, "
+                + (cfg.durationNanos() > 0 ? periodicSettings.durationSec() + " с" : "до остановки")
+                + (cfg.jitter() > 0 ? ", jitter " + periodicSettings.jitterPercent() + "%" : ""));
+        periodic.start(cfg, r -> Platform.runLater(() -> showPeriodicReport(r)))
+                .thenAccept(r -> Platform.runLater(() -> {
+                    showPeriodicReport(r);
+                    logInfo("Периодическая отправка завершена: " + r.describe());
+                    updatePeriodicButton();
+                }));
+        updatePeriodicButton();
+    }
+
+    // поток периодической отправки
+    private boolean sendPeriodicBatch(List<String> payloads) {
+        return sendBatch(periodicTargets, payloads);
+    }
+
+    private void showPeriodicReport(ManualPeriodicSender.Report r) {
+        if (lblPeriodic == null) return;
+        lblPeriodic.setText(String.format("%.0f/с · lag %.1f мс · drop %d",
+                r.finished() ? r.achievedRate() : r.windowRate(), r.lagMs(), r.dropped() + r.failed()));
+        lblPeriodic.setTooltip(new Tooltip(r.describe()));
+    }
+
+    private void updatePeriodicButton() {
+        if (btnPeriodic == null) return;
+        btnPeriodic.setText(periodic.isRunning() ? "Стоп" : "Поток");
+        updateSendButtonState();
+    }
+
+    // ===== Поиск по сообщениям =====
+
+    private void initSearch() {
+        AppShutdown.registerOnExit(searchIndexExitHook);
+        if (txtSearch == null) return;
+
+        searchDebounce.setOnFinished(e -> runSearch());
+        txtSearch.textProperty().addListener((obs, oldV, newV) -> searchDebounce.playFromStart());
+        // Enter — к следующему (более старому) совпадению
+        txtSearch.setOnAction(e -> jumpToNextHit());
+    }
+
+    private void runSearch() {
+        if (txtSearch == null) return;
+        String q = txtSearch.getText();
+        long gen = ++searchGen;
+        if (q == null || q.isBlank()) {
+            searchHits = List.of();
+            searchPos = -1;
+            if (lblSearch != null) lblSearch.setText("");
+            return;
+        }
+
+        String client = clientComboLeftController == null ? null : clientComboLeftController.getSelectedValue();
+        if (client != null && client.isBlank()) client = null;
+
+        searchIndex.query(q, client, SEARCH_MAX_HITS).thenAccept(r -> Platform.runLater(() -> {
+            if (gen != searchGen) return; // пришёл ответ на устаревший запрос
+            searchHits = r.hits();
+            searchPos = -1;
+            if (lblSearch != null) {
+                String more = r.total() > r.hits().size() ? " (показаны последние " + r.hits().size() + ")" : "";
+                lblSearch.setText(r.total() == 0 ? "нет совпадений" : "Найдено: " + r.total() + more);
+            }
+            jumpToNextHit();
+        }));
+    }
+
+    private void jumpToNextHit() {
+        if (searchHits.isEmpty()) return;
+        searchPos = (searchPos + 1) % searchHits.size();
+        ManualSearchIndex.Hit h = searchHits.get(searchPos);
+
+        ListView<ManualMessage> list = h.outgoing() ? listOutgoingLog : listIncoming;
+        if (list == null || !(list.getItems() instanceof MessageRing ring)) return;
+
+        int idx = ring.indexOfSeq(h.seq());
+        String pos = (searchPos + 1) + "/" + searchHits.size();
+        if (idx < 0) {
+            list.getSelectionModel().clearSelection();
+            if (lblSearch != null) lblSearch.setText(pos + " — уже вытеснено из буфера");
+            return;
+        }
+        list.getSelectionModel().clearAndSelect(idx);
+        list.scrollTo(Math.max(0, idx - 3));
+        if (lblSearch != null) lblSearch.setText(pos + (h.outgoing() ? " (ответ сервера)" : ""));
+    }
+
+    // ===== Счётчики буферов сообщений =====
+
+    private void updateBufferStatsLabel() {
+        if (lblBufferStats == null) return;
+        lblBufferStats.setText("Буфер: " + bufferStats.messages() + " сообщ., "
+                + formatBytes(bufferStats.bytes())
+                + " | вытеснено: " + bufferStats.evictedMessages() + " (" + formatBytes(bufferStats.evictedBytes()) + ")");
+    }
+
+    private static String formatBytes(long b) {
+        if (b < 1024) return b + " Б";
+        if (b < 1024 * 1024) return (b / 1024) + " КБ";
+        return String.format("%.1f МБ", b / (1024.0 * 1024.0));
     }
 
     // ===== ниже у тебя в проекте ещё есть методы (selectTemplateInCombo, etc.) =====
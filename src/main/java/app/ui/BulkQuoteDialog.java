@@ -0,0 +1,92 @@
+package app.ui;
+
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Ввод пачки уровней для manualQuote: вставка текста или выбор CSV/JSON-файла.
+ * Файл не читается в диалоге — его разбирает вызывающий код потоково.
+ */
+public class BulkQuoteDialog extends Dialog<BulkQuoteDialog.Source> {
+
+    /** Либо текст из поля, либо путь к файлу (file != null имеет приоритет). */
+    public record Source(String text, Path file) {}
+
+    private Path chosenFile;
+
+    public BulkQuoteDialog(Path initialDir) {
+
+        setTitle("Bulk manualQuote");
+        ButtonType send = new ButtonType("Отправить", ButtonBar.ButtonData.OK_DONE);
+        getDialogPane().getButtonTypes().addAll(send, ButtonType.CANCEL);
+
+        Label title = new Label("Пакетная отправка уровней");
+        title.getStyleClass().add("section-title");
+
+        Label hint = new Label("CSV: side,price,volume или price,volume (ask — отрицательная цена)\n"
+                + "JSON: [{\"side\":\"bid\",\"price\":1.5,\"volume\":10}] или {\"bid\":[...],\"ask\":[...]}");
+        hint.getStyleClass().add("form-label");
+        hint.setWrapText(true);
+
+        TextArea area = new TextArea();
+        area.setPromptText("Вставьте уровни сюда или выберите файл");
+        area.setPrefSize(520, 280);
+        area.getStyleClass().add("console");
+
+        Label fileLabel = new Label("Файл не выбран");
+        fileLabel.getStyleClass().add("form-label");
+        HBox.setHgrow(fileLabel, Priority.ALWAYS);
+
+        Button pick = new Button("Файл…");
+        pick.getStyleClass().add("chip-button");
+        pick.setOnAction(e -> {
+            FileChooser fc = new FileChooser();
+            fc.setTitle("Уровни для manualQuote");
+            fc.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("CSV / JSON", "*.csv", "*.json", "*.txt"),
+                    new FileChooser.ExtensionFilter("Все файлы", "*.*"));
+            if (initialDir != null && initialDir.toFile().isDirectory()) fc.setInitialDirectory(initialDir.toFile());
+            File f = fc.showOpenDialog(getDialogPane().getScene().getWindow());
+            if (f != null) {
+                chosenFile = f.toPath();
+                fileLabel.setText(f.getName() + " (" + f.length() / 1024 + " КБ)");
+                area.clear();
+                area.setDisable(true);
+            }
+        });
+
+        HBox fileRow = new HBox(8, pick, fileLabel);
+
+        VBox box = new VBox(8, title, hint, area, fileRow);
+        box.getStyleClass().add("workspace-card");
+        box.setFillWidth(true);
+
+        getDialogPane().setContent(box);
+
+        setResultConverter(bt -> {
+            if (bt != send) return null;
+            if (chosenFile != null) return new Source(null, chosenFile);
+            String text = area.getText();
+            return (text == null || text.isBlank()) ? null : new Source(text, null);
+        });
+
+        styleDialog(send);
+    }
+
+    private void styleDialog(ButtonType send) {
+        DialogPane pane = getDialogPane();
+
+        pane.getStyleClass().add("app-dialog");
+
+        for (ButtonType bt : new ButtonType[]{ send, ButtonType.CANCEL }) {
+            Button b = (Button) pane.lookupButton(bt);
+            if (b != null) b.getStyleClass().add("chip-button");
+        }
+    }
+}
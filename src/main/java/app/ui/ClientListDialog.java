@@ -1,49 +1,135 @@
 package app.ui;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.binding.Bindings;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.util.Duration;
 
-import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
 
-public class ClientListDialog extends Dialog<Void> {
+/**
+ * Подключённые клиенты с поиском. Список не копируется: диалог смотрит в живой
+ * ObservableList реестра через FilteredList, подключения/отключения видны сразу.
+ * Результат — выбранный id и что с ним сделать.
+ *
+ * details (если задан) — строка справа от id, например RTT; пока диалог открыт,
+ * видимые строки перерисовываются раз в секунду.
+ */
+public class ClientListDialog extends Dialog<ClientListDialog.Choice> {
 
-    public ClientListDialog(List<String> clientIds) {
+    public enum Target { INCOMING, SEND }
+
+    public record Choice(String clientId, Target target) {}
+
+    public ClientListDialog(ObservableList<String> clientIds, Function<String, String> details) {
 
         setTitle("Подключённые клиенты");
-        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        initModality(Modality.NONE);
+        ButtonType showIncoming = new ButtonType("Показать входящие", ButtonBar.ButtonData.OTHER);
+        ButtonType sendTo = new ButtonType("Отправлять ему", ButtonBar.ButtonData.OK_DONE);
+        getDialogPane().getButtonTypes().addAll(showIncoming, sendTo, ButtonType.CLOSE);
 
         // Заголовок
         Label title = new Label("Подключённые клиенты");
         title.getStyleClass().add("section-title");
 
+        FilteredList<String> filtered = new FilteredList<>(clientIds);
+
         Label subtitle = new Label();
         subtitle.getStyleClass().add("form-label");
+        subtitle.textProperty().bind(Bindings.createStringBinding(() -> {
+            if (clientIds.isEmpty()) return "Нет подключённых клиентов";
+            if (filtered.size() == clientIds.size()) return "Всего: " + clientIds.size();
+            return "Найдено: " + filtered.size() + " из " + clientIds.size();
+        }, clientIds, filtered));
 
-        if (clientIds.isEmpty()) {
-            subtitle.setText("Нет подключённых клиентов");
-        } else {
-            subtitle.setText("Всего: " + clientIds.size());
-        }
+        TextField search = new TextField();
+        search.setPromptText("Поиск по id");
+        search.getStyleClass().add("input-lg");
+        search.textProperty().addListener((obs, oldV, newV) -> {
+            String q = newV == null ? "" : newV.trim().toLowerCase(Locale.ROOT);
+            filtered.setPredicate(q.isEmpty() ? null : id -> id.toLowerCase(Locale.ROOT).contains(q));
+        });
 
-        // Список клиентов
-        ListView<String> listView = new ListView<>();
-        if (!clientIds.isEmpty()) {
-            listView.getItems().setAll(clientIds);
-        }
-        listView.setPrefSize(360, 260);
+        // Список клиентов (виртуализирован — рисуются только видимые строки)
+        ListView<String> listView = new ListView<>(filtered);
+        listView.setPrefSize(360, 320);
+        listView.setFixedCellSize(22);
         listView.getStyleClass().add("console");
+        if (details != null) {
+            listView.setCellFactory(lv -> new DetailsCell(details));
+            // refresh() пересоздаёт только видимые ячейки — цена не зависит от числа клиентов
+            Timeline tick = new Timeline(new KeyFrame(Duration.seconds(1), e -> listView.refresh()));
+            tick.setCycleCount(Animation.INDEFINITE);
+            setOnShown(e -> {
+                search.requestFocus();
+                tick.play();
+            });
+            setOnHidden(e -> tick.stop());
+        } else {
+            setOnShown(e -> search.requestFocus());
+        }
 
         // Контейнер
-        VBox box = new VBox(8, title, subtitle, listView);
+        VBox box = new VBox(8, title, subtitle, search, listView);
         box.getStyleClass().add("workspace-card");
         box.setFillWidth(true);
 
         getDialogPane().setContent(box);
 
-        styleDialog();
+        Button incomingBtn = (Button) getDialogPane().lookupButton(showIncoming);
+        Button sendBtn = (Button) getDialogPane().lookupButton(sendTo);
+        incomingBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull());
+        sendBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull());
+
+        setResultConverter(bt -> {
+            String id = listView.getSelectionModel().getSelectedItem();
+            if (id == null) return null;
+            if (bt == showIncoming) return new Choice(id, Target.INCOMING);
+            if (bt == sendTo) return new Choice(id, Target.SEND);
+            return null;
+        });
+        styleDialog(incomingBtn, sendBtn);
+    }
+
+    private static final class DetailsCell extends ListCell<String> {
+        private final Function<String, String> details;
+        private final Label id = new Label();
+        private final Label info = new Label();
+        private final HBox row = new HBox(8, id, info);
+
+        DetailsCell(Function<String, String> details) {
+            this.details = details;
+            info.getStyleClass().add("form-label");
+            info.setMaxWidth(Double.MAX_VALUE);
+            HBox.setHgrow(info, Priority.ALWAYS);
+        }
+
+        @Override
+        protected void updateItem(String item, boolean empty) {
+            super.updateItem(item, empty);
+            setText(null);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+            id.setText(item);
+            String d = details.apply(item);
+            info.setText(d == null ? "" : d);
+            setGraphic(row);
+        }
     }
 
-    private void styleDialog() {
+    private void styleDialog(Button... extra) {
         DialogPane pane = getDialogPane();
 
         pane.getStyleClass().add("app-dialog");
@@ -52,5 +138,8 @@ public class ClientListDialog extends Dialog<Void> {
         if (closeBtn != null) {
             closeBtn.getStyleClass().add("chip-button");
         }
+        for (Button b : extra) {
+            if (b != null) b.getStyleClass().add("chip-button");
+        }
     }
 }
@@ -0,0 +1,135 @@
+package app.ui;
+
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры группы экземпляров движка: сколько процессов, с какого порта
+ * и какой сценарий у каждого. Порты идут подряд от первого.
+ */
+public class EngineGroupDialog extends Dialog<EngineGroupDialog.Plan> {
+
+    /** scenarios — по одному на экземпляр, i-й слушает basePort + i. */
+    public record Plan(int basePort, List<String> scenarios) {}
+
+    private final List<ComboBox<String>> scenarioBoxes = new ArrayList<>();
+    private final GridPane rows = new GridPane();
+
+    public EngineGroupDialog(List<String> scenarios, String defaultScenario, int count, int basePort, int maxCount) {
+
+        setTitle("Группа серверов");
+        ButtonType start = new ButtonType("Запустить группу", ButtonBar.ButtonData.OK_DONE);
+        getDialogPane().getButtonTypes().addAll(start, ButtonType.CANCEL);
+
+        Label title = new Label("Группа экземпляров движка");
+        title.getStyleClass().add("section-title");
+
+        Label hint = new Label("Каждый экземпляр — отдельный процесс Node на своём порту, со своим сценарием и логом "
+                + "(log/node-output-<порт>.log). Один процесс занимает одно ядро.");
+        hint.getStyleClass().add("form-label");
+        hint.setWrapText(true);
+        hint.setMaxWidth(440);
+
+        TextField countField = numberField(count);
+        TextField portField = numberField(basePort);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(8);
+        grid.setVgap(6);
+        grid.addRow(0, formLabel("Экземпляров (до " + maxCount + ")"), countField);
+        grid.addRow(1, formLabel("Первый порт"), portField);
+
+        rows.setHgap(8);
+        rows.setVgap(4);
+        ScrollPane scroll = new ScrollPane(rows);
+        scroll.setFitToWidth(true);
+        scroll.setPrefViewportHeight(220);
+
+        VBox box = new VBox(8, title, hint, grid, formLabel("Сценарии"), scroll);
+        box.getStyleClass().add("workspace-card");
+        box.setFillWidth(true);
+        getDialogPane().setContent(box);
+
+        Button startBtn = (Button) getDialogPane().lookupButton(start);
+        Runnable rebuild = () -> {
+            Integer n = parse(countField.getText());
+            Integer p = parse(portField.getText());
+            boolean ok = n != null && n >= 1 && n <= maxCount && p != null && p > 0 && p + n - 1 <= 65535;
+            startBtn.setDisable(!ok);
+            if (ok) rebuildRows(n, p, scenarios, defaultScenario);
+        };
+        countField.textProperty().addListener((o, a, b) -> rebuild.run());
+        portField.textProperty().addListener((o, a, b) -> rebuild.run());
+        rebuild.run();
+
+        setResultConverter(bt -> {
+            if (bt != start) return null;
+            List<String> chosen = new ArrayList<>(scenarioBoxes.size());
+            for (ComboBox<String> cb : scenarioBoxes) {
+                chosen.add(cb.getValue() == null ? defaultScenario : cb.getValue());
+            }
+            return new Plan(parse(portField.getText()), chosen);
+        });
+        setOnShown(e -> countField.requestFocus());
+
+        styleDialog(startBtn);
+    }
+
+    // строки "порт — сценарий"; уже выбранные сценарии сохраняются при изменении числа
+    private void rebuildRows(int count, int basePort, List<String> scenarios, String defaultScenario) {
+        while (scenarioBoxes.size() > count) scenarioBoxes.remove(scenarioBoxes.size() - 1);
+        while (scenarioBoxes.size() < count) {
+            ComboBox<String> cb = new ComboBox<>();
+            cb.getItems().setAll(scenarios);
+            cb.setValue(defaultScenario);
+            cb.getStyleClass().add("input-lg");
+            cb.setPrefWidth(200);
+            scenarioBoxes.add(cb);
+        }
+        rows.getChildren().clear();
+        for (int i = 0; i < count; i++) {
+            rows.addRow(i, formLabel(":" + (basePort + i)), scenarioBoxes.get(i));
+        }
+    }
+
+    private static TextField numberField(int value) {
+        TextField f = new TextField(String.valueOf(value));
+        f.getStyleClass().add("input-lg");
+        f.setPrefColumnCount(8);
+        return f;
+    }
+
+    private static Label formLabel(String text) {
+        Label l = new Label(text);
+        l.getStyleClass().add("form-label");
+        return l;
+    }
+
+    private static Integer parse(String s) {
+        if (s == null || s.isBlank()) return null;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void styleDialog(Button startBtn) {
+        DialogPane pane = getDialogPane();
+
+        pane.getStyleClass().add("app-dialog");
+
+        if (startBtn != null) {
+            startBtn.getStyleClass().add("chip-button");
+        }
+
+        Button cancelBtn = (Button) pane.lookupButton(ButtonType.CANCEL);
+        if (cancelBtn != null) {
+            cancelBtn.getStyleClass().add("chip-button");
+        }
+    }
+}
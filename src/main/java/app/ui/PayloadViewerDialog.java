@@ -0,0 +1,222 @@
+package app.ui;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import javafx.application.Platform;
+import javafx.scene.control.*;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Немодальный просмотр полного payload: JSON форматируется потоково в фоне,
+ * строки уходят в ListView пачками — на экране рисуются только видимые строки,
+ * поэтому сообщение в несколько мегабайт открывается без подвисания FX-потока.
+ * Не-JSON показывается как есть, построчно.
+ */
+public class PayloadViewerDialog extends Dialog<Void> {
+
+    private static final int CHUNK_LINES = 2000;
+    private static final int MAX_LINE_CHARS = 2000; // длинная строка режется на куски
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ExecutorService FORMATTER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "payload-viewer-format");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Label header = new Label();
+    private final Label info = new Label();
+    private final ListView<String> lines = new ListView<>();
+    private final Button copy = new Button("Копировать");
+
+    private volatile long generation;
+    private String raw;
+
+    public PayloadViewerDialog() {
+        setTitle("Сообщение");
+        initModality(Modality.NONE);
+        setResizable(true);
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        header.getStyleClass().add("section-title");
+        info.getStyleClass().add("form-label");
+        HBox.setHgrow(info, Priority.ALWAYS);
+        info.setMaxWidth(Double.MAX_VALUE);
+
+        copy.getStyleClass().add("chip-button");
+        copy.setDisable(true);
+        copy.setOnAction(e -> {
+            if (raw == null) return;
+            ClipboardContent c = new ClipboardContent();
+            c.putString(raw);
+            Clipboard.getSystemClipboard().setContent(c);
+        });
+
+        lines.setPrefSize(720, 460);
+        lines.getStyleClass().add("console");
+        lines.setFixedCellSize(18);
+        VBox.setVgrow(lines, Priority.ALWAYS);
+
+        VBox box = new VBox(8, header, new HBox(8, info, copy), lines);
+        box.getStyleClass().add("workspace-card");
+        box.setFillWidth(true);
+        getDialogPane().setContent(box);
+
+        styleDialog();
+        setOnHidden(e -> {
+            generation++;
+            raw = null;
+            lines.getItems().clear();
+        });
+    }
+
+    /**
+     * Показать payload (текст может прийти позже — например, из журнала).
+     * Повторный вызов отменяет форматирование предыдущего.
+     */
+    public void showPayload(String title, CompletableFuture<String> payload) {
+        long gen = ++generation;
+        raw = null;
+        header.setText(title);
+        info.setText("Загрузка…");
+        copy.setDisable(true);
+        lines.getItems().clear();
+        if (!isShowing()) show();
+
+        payload.whenComplete((text, err) -> Platform.runLater(() -> {
+            if (gen != generation) return;
+            if (err != null || text == null) {
+                info.setText("Не удалось получить сообщение" + (err != null ? ": " + err.getMessage() : ""));
+                return;
+            }
+            raw = text;
+            copy.setDisable(false);
+            info.setText(text.length() + " симв., форматирование…");
+            FORMATTER.execute(() -> format(gen, text));
+        }));
+    }
+
+    // ===== Форматирование (фоновый поток) =====
+
+    private void format(long gen, String text) {
+        boolean json = looksLikeJson(text);
+        if (json) {
+            ChunkWriter w = new ChunkWriter(gen, batch -> publish(gen, batch));
+            try (JsonParser p = JSON.createParser(text);
+                 JsonGenerator g = JSON.createGenerator(w).useDefaultPrettyPrinter()) {
+                while (p.nextToken() != null && gen == generation) g.copyCurrentStructure(p);
+            } catch (IOException e) {
+                // обрезанный/невалидный JSON — показываем исходник
+                json = false;
+            }
+            if (gen != generation) return;
+            if (json) {
+                w.finish();
+                publishDone(gen, w.total, "JSON");
+                return;
+            }
+        }
+
+        Platform.runLater(() -> { if (gen == generation) lines.getItems().clear(); });
+        ChunkWriter w = new ChunkWriter(gen, batch -> publish(gen, batch));
+        try {
+            w.write(text);
+            w.finish();
+        } catch (IOException ignore) {
+        }
+        publishDone(gen, w.total, "текст");
+    }
+
+    private static boolean looksLikeJson(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            return c == '{' || c == '[';
+        }
+        return false;
+    }
+
+    private void publish(long gen, List<String> batch) {
+        Platform.runLater(() -> {
+            if (gen == generation) lines.getItems().addAll(batch);
+        });
+    }
+
+    private void publishDone(long gen, long total, String kind) {
+        Platform.runLater(() -> {
+            if (gen != generation || raw == null) return;
+            info.setText(raw.length() + " симв., " + total + " строк (" + kind + ")");
+        });
+    }
+
+    /** Writer, режущий поток на строки и отдающий их пачками по CHUNK_LINES. */
+    private final class ChunkWriter extends Writer {
+        private final long gen;
+        private final Consumer<List<String>> sink;
+        private final StringBuilder line = new StringBuilder();
+        private List<String> batch = new ArrayList<>(CHUNK_LINES);
+        long total;
+
+        ChunkWriter(long gen, Consumer<List<String>> sink) {
+            this.gen = gen;
+            this.sink = sink;
+        }
+
+        @Override public void write(char[] cbuf, int off, int len) throws IOException {
+            if (gen != generation) throw new IOException("cancelled");
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                if (c == '\n') endLine();
+                else if (c != '\r') {
+                    line.append(c);
+                    if (line.length() >= MAX_LINE_CHARS) endLine();
+                }
+            }
+        }
+
+        private void endLine() {
+            batch.add(line.toString());
+            line.setLength(0);
+            total++;
+            if (batch.size() >= CHUNK_LINES) {
+                sink.accept(batch);
+                batch = new ArrayList<>(CHUNK_LINES);
+            }
+        }
+
+        void finish() {
+            if (line.length() > 0) endLine();
+            if (!batch.isEmpty()) sink.accept(batch);
+            batch = new ArrayList<>();
+        }
+
+        @Override public void flush() {}
+
+        @Override public void close() {}
+    }
+
+    private void styleDialog() {
+        DialogPane pane = getDialogPane();
+        pane.getStyleClass().add("app-dialog");
+
+        Button closeBtn = (Button) pane.lookupButton(ButtonType.CLOSE);
+        if (closeBtn != null) {
+            closeBtn.getStyleClass().add("chip-button");
+        }
+    }
+}
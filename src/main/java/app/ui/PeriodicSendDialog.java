@@ -0,0 +1,108 @@
+package app.ui;
+
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+
+/**
+ * Параметры периодической отправки: темп, длительность, jitter.
+ * Шаблон берётся из поля исходящего сообщения, адресат — из текущего выбора клиента.
+ */
+public class PeriodicSendDialog extends Dialog<PeriodicSendDialog.Settings> {
+
+    /** durationSec {@code <= 0} — до остановки; jitterPercent 0..100. */
+    public record Settings(double ratePerSec, double durationSec, double jitterPercent) {}
+
+    /** @param maxRate верхняя граница темпа, сообщений в секунду */
+    public PeriodicSendDialog(Settings initial, String targetText, double maxRate) {
+
+        setTitle("Периодическая отправка");
+        ButtonType start = new ButtonType("Запустить", ButtonBar.ButtonData.OK_DONE);
+        getDialogPane().getButtonTypes().addAll(start, ButtonType.CANCEL);
+
+        Label title = new Label("Периодическая отправка");
+        title.getStyleClass().add("section-title");
+
+        Label hint = new Label("Адресат: " + targetText + "\n"
+                + "Подстановки в шаблоне: {{seq}}, {{ts}} (epoch ms), {{iso}}, {{uuid}}");
+        hint.getStyleClass().add("form-label");
+        hint.setWrapText(true);
+
+        TextField rate = numberField(initial.ratePerSec());
+        TextField duration = numberField(initial.durationSec());
+        TextField jitter = numberField(initial.jitterPercent());
+
+        GridPane grid = new GridPane();
+        grid.setHgap(8);
+        grid.setVgap(6);
+        grid.addRow(0, formLabel("Сообщений в секунду (до " + (long) maxRate + ")"), rate);
+        grid.addRow(1, formLabel("Длительность, с (0 — до остановки)"), duration);
+        grid.addRow(2, formLabel("Jitter, %"), jitter);
+
+        VBox box = new VBox(8, title, hint, grid);
+        box.getStyleClass().add("workspace-card");
+        box.setFillWidth(true);
+
+        getDialogPane().setContent(box);
+
+        Button startBtn = (Button) getDialogPane().lookupButton(start);
+        Runnable validate = () -> {
+            Double r = parse(rate.getText());
+            Double d = parse(duration.getText());
+            Double j = parse(jitter.getText());
+            startBtn.setDisable(r == null || r <= 0 || r > maxRate
+                    || d == null || d < 0 || j == null || j < 0 || j > 100);
+        };
+        rate.textProperty().addListener((o, a, b) -> validate.run());
+        duration.textProperty().addListener((o, a, b) -> validate.run());
+        jitter.textProperty().addListener((o, a, b) -> validate.run());
+        validate.run();
+
+        setResultConverter(bt -> {
+            if (bt != start) return null;
+            return new Settings(parse(rate.getText()), parse(duration.getText()), parse(jitter.getText()));
+        });
+        setOnShown(e -> rate.requestFocus());
+
+        styleDialog(startBtn);
+    }
+
+    private static TextField numberField(double value) {
+        TextField f = new TextField(value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value));
+        f.getStyleClass().add("input-lg");
+        f.setPrefColumnCount(8);
+        return f;
+    }
+
+    private static Label formLabel(String text) {
+        Label l = new Label(text);
+        l.getStyleClass().add("form-label");
+        return l;
+    }
+
+    // только конечные числа: parseDouble принимает и "Infinity", "NaN"
+    private static Double parse(String s) {
+        if (s == null || s.isBlank()) return null;
+        try {
+            double v = Double.parseDouble(s.trim().replace(',', '.'));
+            return Double.isFinite(v) ? v : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void styleDialog(Button startBtn) {
+        DialogPane pane = getDialogPane();
+
+        pane.getStyleClass().add("app-dialog");
+
+        if (startBtn != null) {
+            startBtn.getStyleClass().add("chip-button");
+        }
+
+        Button cancelBtn = (Button) pane.lookupButton(ButtonType.CANCEL);
+        if (cancelBtn != null) {
+            cancelBtn.getStyleClass().add("chip-button");
+        }
+    }
+}
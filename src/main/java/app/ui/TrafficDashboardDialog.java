@@ -0,0 +1,214 @@
+package app.ui;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.*;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Modality;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Немодальная сводка трафика по клиентам: темп за последнюю секунду, итоги и спарклайн
+ * за минуту. Данные берутся из source раз в секунду, пока окно открыто; сортировка — по
+ * любому столбцу, по умолчанию самые активные сверху. Строки, отмеченные pinned
+ * (итоги), показываются отдельно над таблицей и в сортировке не участвуют.
+ */
+public class TrafficDashboardDialog extends Dialog<Void> {
+
+    /** Строка таблицы; history — сообщений в секунду, старые слева. */
+    public record Row(String clientId,
+                      long inMsgs, long inBytes, long outMsgs, long outBytes,
+                      long inMsgsPerSec, long inBytesPerSec, long outMsgsPerSec, long outBytesPerSec,
+                      int[] history) {
+
+        long msgsPerSec() {
+            return inMsgsPerSec + outMsgsPerSec;
+        }
+    }
+
+    private static final Color SPARK = Color.web("#f50049");
+    private static final Color SPARK_BASE = Color.web("#aab1c2", 0.35);
+    private static final double SPARK_W = 120;
+    private static final double SPARK_H = 16;
+    private static final int PINNED_ROWS_VISIBLE = 2;
+
+    private final ObservableList<Row> rows = FXCollections.observableArrayList();
+    private final ObservableList<Row> pinnedRows = FXCollections.observableArrayList();
+    private final Label summary = new Label();
+
+    public TrafficDashboardDialog(Supplier<List<Row>> source, Predicate<String> pinned) {
+        setTitle("Трафик клиентов");
+        initModality(Modality.NONE);
+        setResizable(true);
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        Label title = new Label("Трафик клиентов (обновление раз в секунду)");
+        title.getStyleClass().add("section-title");
+        summary.getStyleClass().add("form-label");
+
+        // итоги — отдельная таблица без сортировки над основной
+        TableView<Row> totals = table(pinnedRows);
+        totals.setFixedCellSize(24);
+        totals.setPrefHeight(24 * (PINNED_ROWS_VISIBLE + 1) + 4);
+        totals.setMinHeight(totals.getPrefHeight());
+        totals.getColumns().forEach(c -> c.setSortable(false));
+
+        SortedList<Row> sorted = new SortedList<>(rows);
+        TableView<Row> clients = table(sorted);
+        sorted.comparatorProperty().bind(clients.comparatorProperty());
+        clients.setPrefHeight(360);
+        VBox.setVgrow(clients, Priority.ALWAYS);
+
+        // по умолчанию — топ по суммарному темпу
+        TableColumn<Row, Long> rate = numberColumn("Сообщ/с", Row::msgsPerSec, false);
+        rate.setSortType(TableColumn.SortType.DESCENDING);
+        clients.getColumns().add(1, rate);
+        clients.getSortOrder().add(rate);
+        totals.getColumns().add(1, numberColumn("Сообщ/с", Row::msgsPerSec, false));
+
+        // ширины столбцов итогов следуют за основной таблицей
+        for (int i = 0; i < clients.getColumns().size(); i++) {
+            totals.getColumns().get(i).prefWidthProperty().bind(clients.getColumns().get(i).widthProperty());
+        }
+
+        VBox box = new VBox(8, title, summary, totals, clients);
+        box.getStyleClass().add("workspace-card");
+        box.setFillWidth(true);
+        box.setPrefWidth(940);
+        getDialogPane().setContent(box);
+
+        Timeline tick = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh(source, pinned)));
+        tick.setCycleCount(Animation.INDEFINITE);
+        setOnShown(e -> {
+            refresh(source, pinned);
+            tick.play();
+        });
+        setOnHidden(e -> tick.stop());
+
+        styleDialog();
+    }
+
+    private void refresh(Supplier<List<Row>> source, Predicate<String> pinned) {
+        List<Row> top = new ArrayList<>(PINNED_ROWS_VISIBLE);
+        List<Row> rest = new ArrayList<>();
+        for (Row r : source.get()) (pinned.test(r.clientId()) ? top : rest).add(r);
+        pinnedRows.setAll(top);
+        rows.setAll(rest);
+        summary.setText("Клиентов: " + rest.size());
+    }
+
+    // ===== Таблица =====
+
+    private static TableView<Row> table(ObservableList<Row> items) {
+        TableView<Row> t = new TableView<>(items);
+        t.setColumnResizePolicy(TableView.UNCONSTRAINED_RESIZE_POLICY);
+        t.setFixedCellSize(24);
+
+        TableColumn<Row, String> id = new TableColumn<>("Клиент");
+        id.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().clientId()));
+        id.setPrefWidth(170);
+
+        TableColumn<Row, int[]> spark = new TableColumn<>("Минута");
+        spark.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().history()));
+        spark.setCellFactory(c -> new SparklineCell());
+        spark.setSortable(false);
+        spark.setPrefWidth(SPARK_W + 16);
+
+        t.getColumns().add(id);
+        t.getColumns().add(numberColumn("Вх/с", Row::inMsgsPerSec, false));
+        t.getColumns().add(numberColumn("Вх байт/с", Row::inBytesPerSec, true));
+        t.getColumns().add(numberColumn("Исх/с", Row::outMsgsPerSec, false));
+        t.getColumns().add(numberColumn("Исх байт/с", Row::outBytesPerSec, true));
+        t.getColumns().add(numberColumn("Вх всего", Row::inMsgs, false));
+        t.getColumns().add(numberColumn("Вх байт", Row::inBytes, true));
+        t.getColumns().add(numberColumn("Исх всего", Row::outMsgs, false));
+        t.getColumns().add(numberColumn("Исх байт", Row::outBytes, true));
+        t.getColumns().add(spark);
+        return t;
+    }
+
+    private static TableColumn<Row, Long> numberColumn(String title, Function<Row, Long> value, boolean bytes) {
+        TableColumn<Row, Long> col = new TableColumn<>(title);
+        col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(value.apply(c.getValue())));
+        col.setComparator(Comparator.naturalOrder());
+        col.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(Long v, boolean empty) {
+                super.updateItem(v, empty);
+                setText(empty || v == null ? null : bytes ? formatBytes(v) : String.valueOf(v));
+            }
+        });
+        col.setPrefWidth(bytes ? 84 : 68);
+        return col;
+    }
+
+    static String formatBytes(long b) {
+        if (b < 1024) return b + " Б";
+        if (b < 1024 * 1024) return String.format("%.1f КБ", b / 1024.0);
+        if (b < 1024L * 1024 * 1024) return String.format("%.1f МБ", b / (1024.0 * 1024));
+        return String.format("%.2f ГБ", b / (1024.0 * 1024 * 1024));
+    }
+
+    /** Спарклайн на Canvas: один узел на ячейку, перерисовка только при смене данных. */
+    private static final class SparklineCell extends TableCell<Row, int[]> {
+        private final Canvas canvas = new Canvas(SPARK_W, SPARK_H);
+
+        @Override
+        protected void updateItem(int[] h, boolean empty) {
+            super.updateItem(h, empty);
+            setText(null);
+            if (empty || h == null || h.length < 2) {
+                setGraphic(null);
+                return;
+            }
+            GraphicsContext g = canvas.getGraphicsContext2D();
+            g.clearRect(0, 0, SPARK_W, SPARK_H);
+
+            int max = 1;
+            for (int v : h) max = Math.max(max, v);
+            double step = SPARK_W / (h.length - 1);
+
+            g.setStroke(SPARK_BASE);
+            g.setLineWidth(1);
+            g.strokeLine(0, SPARK_H - 0.5, SPARK_W, SPARK_H - 0.5);
+
+            g.setStroke(SPARK);
+            g.setLineWidth(1.2);
+            g.beginPath();
+            for (int i = 0; i < h.length; i++) {
+                double x = i * step;
+                double y = SPARK_H - 1 - (SPARK_H - 2) * h[i] / (double) max;
+                if (i == 0) g.moveTo(x, y);
+                else g.lineTo(x, y);
+            }
+            g.stroke();
+            setGraphic(canvas);
+        }
+    }
+
+    private void styleDialog() {
+        DialogPane pane = getDialogPane();
+        pane.getStyleClass().add("app-dialog");
+
+        Button closeBtn = (Button) pane.lookupButton(ButtonType.CLOSE);
+        if (closeBtn != null) {
+            closeBtn.getStyleClass().add("chip-button");
+        }
+    }
+}